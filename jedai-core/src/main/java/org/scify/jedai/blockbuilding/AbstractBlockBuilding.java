@@ -18,21 +18,39 @@ package org.scify.jedai.blockbuilding;
 import org.scify.jedai.datamodel.AbstractBlock;
 import org.scify.jedai.datamodel.Attribute;
 import org.scify.jedai.datamodel.BilateralBlock;
+import org.scify.jedai.datamodel.BlockCollection;
 import org.scify.jedai.datamodel.EntityProfile;
 import org.scify.jedai.datamodel.UnilateralBlock;
+import org.scify.jedai.datawriter.BlockCollectionWriter;
+import org.scify.jedai.utilities.datastructures.BlockingKeyDictionary;
+import org.scify.jedai.utilities.HashingTokenizer;
+import org.scify.jedai.utilities.RangeExecutor;
+import org.scify.jedai.utilities.datastructures.BloomFilter;
+import org.scify.jedai.utilities.datastructures.CompactInvertedIndex;
+import org.scify.jedai.utilities.datastructures.CountMinSketch;
+import org.scify.jedai.utilities.datastructures.ExternalInvertedIndex;
+import org.scify.jedai.utilities.datastructures.TokenStore;
 
 import com.esotericsoftware.minlog.Log;
 
+import gnu.trove.iterator.TIntIterator;
 import gnu.trove.list.TIntList;
 import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TLongIntMap;
 import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.set.TIntSet;
+import gnu.trove.set.hash.TIntHashSet;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.function.LongConsumer;
 
 /**
  *
@@ -40,37 +58,273 @@ import java.util.Set;
  */
 public abstract class AbstractBlockBuilding implements IBlockBuilding {
 
+    private final static int SKETCH_DEPTH = 4;
+    private final static int SKETCH_WIDTH = 1 << 20;
+    private final static int SEMI_JOIN_KEYS = 1 << 22;
+    private final static double SEMI_JOIN_FPP = 0.01;
+
+    protected boolean approximateFrequencies;
+    protected boolean caching;
+    protected boolean cleanCleanER;
+    protected boolean compactIndexing;
+    protected boolean semiJoinIndexing;
+
+    protected int maxPostingsInMemory;
+    protected int noOfThreads;
+    protected int purgingLimit;
+    protected int semiJoinDatasetId;
+
     protected double noOfEntitiesD1;
     protected double noOfEntitiesD2;
 
     protected List<AbstractBlock> blocks;
     protected List<EntityProfile> entityProfilesD1;
     protected List<EntityProfile> entityProfilesD2;
+    protected List<EntityProfile> indexedProfilesD1;
+    protected List<EntityProfile> indexedProfilesD2;
+    protected BloomFilter semiJoinFilter;
+    protected BlockingKeyDictionary keyDictionary;
+    protected CountMinSketch[] keySketches;
+    protected CompactInvertedIndex compactIndexD1;
+    protected CompactInvertedIndex compactIndexD2;
+    protected ExternalInvertedIndex externalIndexD1;
+    protected ExternalInvertedIndex externalIndexD2;
     protected Map<String, TIntList> invertedIndexD1;
     protected Map<String, TIntList> invertedIndexD2;
+    protected Map<String, TIntList> semiJoinIndex;
+    protected TLongIntMap[] keyFrequencies;
+    protected TObjectIntMap<String>[] indexedClusters;
     protected TObjectIntMap<String>[] schemaClusters;
+    protected String indexedConfiguration;
+    protected TokenStore tokenCache;
+    protected TokenStore tokenStore;
 
     public AbstractBlockBuilding() {
+        caching = false;
+        compactIndexing = false;
+        maxPostingsInMemory = 0;
+        noOfThreads = 1;
+        purgingLimit = 0;
+        approximateFrequencies = false;
+        semiJoinIndexing = false;
+        semiJoinDatasetId = -1;
+    }
+
+    //appends the given profiles to the inverted indices of the last call to getBlocks
+    //and returns only the blocks that contain at least one of the new entities
+    public List<AbstractBlock> addEntities(List<EntityProfile> newProfiles) {
+        return this.addEntities(newProfiles, null);
+    }
+
+    public List<AbstractBlock> addEntities(List<EntityProfile> newProfilesD1, List<EntityProfile> newProfilesD2) {
+        if (!supportsIncrementalBlocking()) {
+            Log.error(getMethodName() + " does not support incremental block building!");
+            return null;
+        }
+
+        if (compactIndexing) {
+            Log.error("Incremental block building is not supported by compact indexing, whose dictionary and posting lists are finalized by getBlocks!");
+            return null;
+        }
+
+        if (0 < maxPostingsInMemory) {
+            Log.error("Incremental block building is not supported by the external-memory inverted index, whose runs are merged by getBlocks!");
+            return null;
+        }
+
+        if (invertedIndexD1 == null) {
+            Log.error("Incremental block building requires a previous call to getBlocks with the default inverted index!");
+            return null;
+        }
+
+        if (!cleanCleanER && newProfilesD2 != null) {
+            Log.error("The second list of entity profiles is applicable only to Clean-Clean ER!");
+            return null;
+        }
+
+        if (cleanCleanER && semiJoinIndexing) {
+            Log.error("Incremental block building requires the complete inverted indices, which are not created by semi-join indexing!");
+            return null;
+        }
+
+        //the updated indices no longer correspond to the input of the last call to getBlocks
+        indexedConfiguration = null;
+
+        //with fused purging, the key frequencies are updated before indexing the new profiles,
+        //so that the keys exceeding the purging limit are removed from the indices instead of yielding blocks
+        if (keyFrequencies != null || keySketches != null) {
+            final Set<String> countedKeys = new HashSet<>();
+            countNewKeyFrequencies(DATASET_1, newProfilesD1, countedKeys);
+            countNewKeyFrequencies(DATASET_2, newProfilesD2, countedKeys);
+            for (String key : countedKeys) {
+                if (isPurgedKey(key)) {
+                    invertedIndexD1.remove(key);
+                    if (invertedIndexD2 != null) {
+                        invertedIndexD2.remove(key);
+                    }
+                }
+            }
+        }
+
+        final Set<String> updatedKeys = new HashSet<>();
+        if (newProfilesD1 != null) {
+            noOfEntitiesD1 = indexNewEntities(invertedIndexD1, newProfilesD1, schemaClusters == null ? null : schemaClusters[DATASET_1], (int) noOfEntitiesD1, updatedKeys);
+        }
+        if (newProfilesD2 != null) {
+            noOfEntitiesD2 = indexNewEntities(invertedIndexD2, newProfilesD2, schemaClusters == null ? null : schemaClusters[DATASET_2], (int) noOfEntitiesD2, updatedKeys);
+        }
+
+        final List<AbstractBlock> updatedBlocks = new ArrayList<>();
+        for (String key : updatedKeys) {
+            final TIntList entityIdsD1 = invertedIndexD1.get(key);
+            if (!cleanCleanER) {
+                if (1 < entityIdsD1.size()) {
+                    updatedBlocks.add(new UnilateralBlock(entityIdsD1.toArray()));
+                }
+                continue;
+            }
+
+            final TIntList entityIdsD2 = invertedIndexD2.get(key);
+            if (entityIdsD1 != null && !entityIdsD1.isEmpty() && entityIdsD2 != null && !entityIdsD2.isEmpty()) {
+                updatedBlocks.add(new BilateralBlock(entityIdsD1.toArray(), entityIdsD2.toArray()));
+            }
+        }
+        return updatedBlocks;
     }
 
     protected void buildBlocks() {
-        if (schemaClusters == null) {
-            indexEntities(invertedIndexD1, entityProfilesD1);
+        if (0 < purgingLimit) {
+            countKeyFrequencies();
+        }
+
+        if (cleanCleanER && semiJoinIndexing) {
+            //the smaller dataset is indexed first, so that the larger one creates postings only for the keys they share
+            int firstDatasetId = noOfEntitiesD2 < noOfEntitiesD1 ? DATASET_2 : DATASET_1;
+            indexDataset(firstDatasetId);
+            startSemiJoin(firstDatasetId);
+            try {
+                indexDataset(1 - firstDatasetId);
+            } finally {
+                stopSemiJoin();
+            }
         } else {
-            indexEntities(invertedIndexD1, entityProfilesD1, schemaClusters[0]);
+            indexDataset(DATASET_1);
+            if (cleanCleanER) {
+                indexDataset(DATASET_2);
+            }
+        }
+
+        if (compactIndexing) {
+            finalizeCompactIndices();
         }
+    }
 
-        if (invertedIndexD2 != null) {
-            if (schemaClusters == null) {
-                indexEntities(invertedIndexD2, entityProfilesD2);
+    //the first pass of fused purging: it counts the number of entities per key in every dataset, without creating any posting
+    protected void countKeyFrequencies() {
+        final int noOfDatasets = cleanCleanER ? 2 : 1;
+        keyFrequencies = null;
+        keySketches = null;
+        if (approximateFrequencies) {
+            keySketches = new CountMinSketch[noOfDatasets];
+        } else {
+            keyFrequencies = new TLongIntMap[noOfDatasets];
+        }
+
+        for (int datasetId = 0; datasetId < noOfDatasets; datasetId++) {
+            if (approximateFrequencies) {
+                keySketches[datasetId] = new CountMinSketch(SKETCH_WIDTH, SKETCH_DEPTH);
+            } else {
+                keyFrequencies[datasetId] = new TLongIntHashMap();
+            }
+
+            final List<EntityProfile> profiles = datasetId == DATASET_1 ? entityProfilesD1 : entityProfilesD2;
+            final TObjectIntMap<String> clusters = schemaClusters == null ? null : schemaClusters[datasetId];
+            if (compactIndexing) {
+                //the key ids assigned in this pass are reused in the second one
+                final TIntSet allKeyIds = new TIntHashSet();
+                final KeyIdCollector keyIdCollector = new KeyIdCollector(allKeyIds);
+                for (EntityProfile profile : profiles) {
+                    getProfileKeyIds(profile, clusters, keyIdCollector);
+                    for (TIntIterator iterator = allKeyIds.iterator(); iterator.hasNext();) {
+                        countKeyFrequency(datasetId, iterator.next());
+                    }
+                }
             } else {
-                indexEntities(invertedIndexD2, entityProfilesD2, schemaClusters[1]);
+                for (EntityProfile profile : profiles) {
+                    for (String key : getProfileKeys(profile, clusters)) {
+                        countKeyFrequency(datasetId, HashingTokenizer.hash(key));
+                    }
+                }
+            }
+        }
+    }
+
+    protected void countNewKeyFrequencies(int datasetId, List<EntityProfile> newProfiles, Set<String> countedKeys) {
+        if (newProfiles == null) {
+            return;
+        }
+
+        final TObjectIntMap<String> clusters = schemaClusters == null ? null : schemaClusters[datasetId];
+        for (EntityProfile profile : newProfiles) {
+            for (String key : getProfileKeys(profile, clusters)) {
+                countKeyFrequency(datasetId, HashingTokenizer.hash(key));
+                countedKeys.add(key);
             }
         }
     }
 
+    protected void countKeyFrequency(int datasetId, long key) {
+        if (approximateFrequencies) {
+            keySketches[datasetId].add(key);
+        } else {
+            keyFrequencies[datasetId].adjustOrPutValue(key, 1, 1);
+        }
+    }
+
+    protected void finalizeCompactIndices() {
+        //both indices share the same dictionary, so that a key has the same id in both of them
+        compactIndexD1.finalizeIndex(keyDictionary.getNoOfKeys());
+        if (compactIndexD2 != null) {
+            compactIndexD2.finalizeIndex(keyDictionary.getNoOfKeys());
+        }
+    }
+
     protected abstract Set<String> getBlockingKeys(String attributeValue);
 
+    //derives the blocking keys from the tokens of an attribute value; the subclasses supporting the token store
+    //override it to avoid joining the tokens into a new value
+    protected Set<String> getBlockingKeys(String[] tokens) {
+        return getBlockingKeys(String.join(" ", tokens));
+    }
+
+    //emits the hashes of the blocking keys; the subclasses supporting hashed keys override it to avoid materializing them
+    protected void getBlockingKeys(CharSequence attributeValue, LongConsumer keyHashConsumer) {
+        for (String key : getBlockingKeys(attributeValue.toString().toLowerCase())) {
+            String normalizedKey = key.trim();
+            if (0 < normalizedKey.length()) {
+                keyHashConsumer.accept(HashingTokenizer.hash(normalizedKey));
+            }
+        }
+    }
+
+    @Override
+    public BlockCollection getBlockCollection(List<EntityProfile> profiles) {
+        return this.getBlockCollection(profiles, null);
+    }
+
+    @Override
+    public BlockCollection getBlockCollection(List<EntityProfile> profilesD1, List<EntityProfile> profilesD2) {
+        return this.getBlockCollection(profilesD1, profilesD2, null);
+    }
+
+    @Override
+    public BlockCollection getBlockCollection(List<EntityProfile> profilesD1, List<EntityProfile> profilesD2, TObjectIntMap<String>[] sClusters) {
+        if (!indexProfiles(profilesD1, profilesD2, sClusters)) {
+            return null;
+        }
+        return readBlockCollection();
+    }
+
     @Override
     public List<AbstractBlock> getBlocks(List<EntityProfile> profiles) {
         return this.getBlocks(profiles, null);
@@ -83,56 +337,332 @@ public abstract class AbstractBlockBuilding implements IBlockBuilding {
 
     @Override
     public List<AbstractBlock> getBlocks(List<EntityProfile> profilesD1, List<EntityProfile> profilesD2, TObjectIntMap<String>[] sClusters) {
+        if (!indexProfiles(profilesD1, profilesD2, sClusters)) {
+            return null;
+        }
+        return readBlocks();
+    }
+
+    @Override
+    public List<AbstractBlock> getBlocks(Iterator<EntityProfile> profiles) {
+        return this.getBlocks(profiles, null);
+    }
+
+    @Override
+    public List<AbstractBlock> getBlocks(Iterator<EntityProfile> profilesD1, Iterator<EntityProfile> profilesD2) {
+        return this.getBlocks(profilesD1, profilesD2, null);
+    }
+
+    @Override
+    public List<AbstractBlock> getBlocks(Iterator<EntityProfile> profilesD1, Iterator<EntityProfile> profilesD2, TObjectIntMap<String>[] sClusters) {
+        if (!indexProfiles(profilesD1, profilesD2, sClusters)) {
+            return null;
+        }
+        return readBlocks();
+    }
+
+    //the blocks are written to the given writer as soon as they are read, so that with an external index,
+    //neither the profiles nor the blocks are ever held in memory in their entirety;
+    //without it, the blocks are built in memory as usual and are then written
+    public void writeBlocks(Iterator<EntityProfile> profilesD1, Iterator<EntityProfile> profilesD2, TObjectIntMap<String>[] sClusters, BlockCollectionWriter writer) {
+        if (maxPostingsInMemory <= 0) {
+            final List<AbstractBlock> blocksList = getBlocks(profilesD1, profilesD2, sClusters);
+            if (blocksList != null) {
+                blocksList.forEach(writer::addBlock);
+            }
+            return;
+        }
+
+        if (!indexProfiles(profilesD1, profilesD2, sClusters)) {
+            return;
+        }
+        try {
+            readBlockIterator().forEachRemaining(writer::addBlock);
+        } finally {
+            if (externalIndexD1 != null) {
+                closeExternalIndices();
+            }
+        }
+    }
+
+    protected boolean indexProfiles(Iterator<EntityProfile> profilesD1, Iterator<EntityProfile> profilesD2, TObjectIntMap<String>[] sClusters) {
         Log.info("Applying " + getMethodName() + " with the following configuration : " + getMethodConfiguration());
 
         if (profilesD1 == null) {
-            Log.error("First list of entity profiles is null! The first argument should always contain entities.");
-            return null;
+            Log.error("First iterator of entity profiles is null! The first argument should always contain entities.");
+            return false;
         }
 
-        blocks = new ArrayList<>();
-        schemaClusters = sClusters;
-        invertedIndexD1 = new HashMap<>();
-        entityProfilesD1 = profilesD1;
-        noOfEntitiesD1 = entityProfilesD1.size();
-        if (profilesD2 != null) {
-            invertedIndexD2 = new HashMap<>();
-            entityProfilesD2 = profilesD2;
-            noOfEntitiesD2 = entityProfilesD2.size();
+        if (0 < purgingLimit) {
+            Log.warn("Fused block purging requires two passes over the entities and is not applied to iterators!");
         }
 
-        buildBlocks();
-        return readBlocks();
+        //every profile is indexed as soon as it is read and is not retained afterwards
+        initializeIndices(profilesD2 != null, sClusters);
+        final TObjectIntMap<String> clustersD1 = schemaClusters == null ? null : schemaClusters[DATASET_1];
+        final TObjectIntMap<String> clustersD2 = schemaClusters == null ? null : schemaClusters[DATASET_2];
+        if (compactIndexing) {
+            noOfEntitiesD1 = indexEntities(compactIndexD1, profilesD1, clustersD1);
+        } else if (0 < maxPostingsInMemory) {
+            noOfEntitiesD1 = indexEntities(externalIndexD1, profilesD1, clustersD1);
+        } else {
+            noOfEntitiesD1 = indexEntities(invertedIndexD1, profilesD1, clustersD1, 0);
+        }
+
+        //the sizes of the datasets are unknown in advance, thus the first one is always indexed first
+        if (cleanCleanER) {
+            if (semiJoinIndexing) {
+                startSemiJoin(DATASET_1);
+            }
+            try {
+                if (compactIndexing) {
+                    noOfEntitiesD2 = indexEntities(compactIndexD2, profilesD2, clustersD2);
+                } else if (0 < maxPostingsInMemory) {
+                    noOfEntitiesD2 = indexEntities(externalIndexD2, profilesD2, clustersD2);
+                } else {
+                    noOfEntitiesD2 = indexEntities(invertedIndexD2, profilesD2, clustersD2, 0);
+                }
+            } finally {
+                stopSemiJoin();
+            }
+        }
+
+        if (compactIndexing) {
+            finalizeCompactIndices();
+        }
+        return true;
+    }
+
+    protected int getKeyFrequency(int datasetId, long key) {
+        if (approximateFrequencies) {
+            return keySketches[datasetId].getCount(key);
+        }
+        return keyFrequencies[datasetId].get(key);
     }
 
     public double getBruteForceComparisons() {
-        if (entityProfilesD2 == null) {
+        if (!cleanCleanER) {
             return noOfEntitiesD1 * (noOfEntitiesD1 - 1) / 2;
         }
         return noOfEntitiesD1 * noOfEntitiesD2;
     }
 
+    //replaces the key ids of the given collector with those of the given profile; the keys are materialized as strings,
+    //unless the method supports hashed keys and no token store is used
+    protected void getProfileKeyIds(EntityProfile profile, TObjectIntMap<String> schemaClusters, KeyIdCollector keyIdCollector) {
+        final String[][] valueTokens = getValueTokens(profile);
+        final boolean hashedKeys = valueTokens == null && supportsHashedKeys();
+        keyIdCollector.keyIds.clear();
+
+        int attributeIndex = 0;
+        for (Attribute attribute : profile.getAttributes()) {
+            int clusterId = schemaClusters == null ? -1 : schemaClusters.get(attribute.getName());
+            if (hashedKeys) {
+                keyIdCollector.clusterId = clusterId;
+                getBlockingKeys(attribute.getValue(), keyIdCollector);
+                continue;
+            }
+
+            final Set<String> keys = valueTokens == null ? getBlockingKeys(attribute.getValue().toLowerCase()) : getBlockingKeys(valueTokens[attributeIndex++]);
+            for (String key : keys) {
+                String normalizedKey = key.trim();
+                if (0 < normalizedKey.length()) {
+                    keyIdCollector.add(schemaClusters == null ? keyDictionary.getKeyId(normalizedKey) : keyDictionary.getKeyId(normalizedKey, clusterId));
+                }
+            }
+        }
+    }
+
+    //the parameters that determine the contents of the inverted indices, or null, if they should not be reused
+    //by the next call to getBlocks; the other parameters are applied only when the blocks are read from the indices
+    protected String getIndexingConfiguration() {
+        return null;
+    }
+
+    private String getIndexingSignature() {
+        final String configuration = getIndexingConfiguration();
+        if (configuration == null) {
+            return null;
+        }
+        return configuration + ",\t" + compactIndexing + ",\t" + maxPostingsInMemory + ",\t" + semiJoinIndexing + ",\t" + purgingLimit + ",\t" + approximateFrequencies;
+    }
+
+    protected Set<String> getProfileKeys(EntityProfile profile, TObjectIntMap<String> schemaClusters) {
+        final Set<String> allKeys = new HashSet<>();
+        final String[][] valueTokens = getValueTokens(profile);
+
+        int attributeIndex = 0;
+        for (Attribute attribute : profile.getAttributes()) {
+            String clusterSuffix = null;
+            if (schemaClusters != null) {
+                clusterSuffix = CLUSTER_PREFIX + schemaClusters.get(attribute.getName());
+            }
+
+            final Set<String> keys = valueTokens == null ? getBlockingKeys(attribute.getValue().toLowerCase()) : getBlockingKeys(valueTokens[attributeIndex++]);
+            for (String key : keys) {
+                String normalizedKey = key.trim();
+                if (0 < normalizedKey.length()) {
+                    allKeys.add(clusterSuffix == null ? normalizedKey : normalizedKey + clusterSuffix);
+                }
+            }
+        }
+        return allKeys;
+    }
+
+    //the given token store takes precedence over the internal cache of the tokens
+    protected TokenStore getTokenStore() {
+        if (!supportsTokenStore()) {
+            return null;
+        }
+        return tokenStore == null ? tokenCache : tokenStore;
+    }
+
+    //the tokens of every attribute value in the iteration order of the profile's attributes, or null, if no token store is used
+    protected String[][] getValueTokens(EntityProfile profile) {
+        final TokenStore store = getTokenStore();
+        if (store == null) {
+            return null;
+        }
+        return store.getValueTokens(profile);
+    }
+
     public double getTotalNoOfEntities() {
-        if (entityProfilesD2 == null) {
+        if (!cleanCleanER) {
             return noOfEntitiesD1;
         }
         return noOfEntitiesD1 + noOfEntitiesD2;
     }
 
+    protected boolean indexProfiles(List<EntityProfile> profilesD1, List<EntityProfile> profilesD2, TObjectIntMap<String>[] sClusters) {
+        Log.info("Applying " + getMethodName() + " with the following configuration : " + getMethodConfiguration());
+
+        if (profilesD1 == null) {
+            Log.error("First list of entity profiles is null! The first argument should always contain entities.");
+            return false;
+        }
+
+        //in grid and random search, the same profiles are processed repeatedly with different parameters
+        if (caching && isCachedIndex(profilesD1, profilesD2, sClusters)) {
+            Log.info("The inverted indices of the previous configuration are reused.");
+            blocks = new ArrayList<>();
+            return true;
+        }
+
+        //the cached tokens are kept only for the same input, so that they do not accumulate the profiles of every input
+        final TokenStore previousCache = isIndexedInput(profilesD1, profilesD2, sClusters) ? tokenCache : null;
+        initializeIndices(profilesD2 != null, sClusters);
+        //the hashed keys of compact indexing are faster than any stored tokens
+        if (caching && tokenStore == null && supportsTokenStore() && !(compactIndexing && supportsHashedKeys())) {
+            tokenCache = previousCache == null ? new TokenStore() : previousCache;
+        }
+
+        final TokenStore store = getTokenStore();
+        if (store != null) {
+            //the profiles are tokenized before any parallel indexing, which only reads the store
+            store.addProfiles(profilesD1);
+            store.addProfiles(profilesD2);
+        }
+
+        entityProfilesD1 = profilesD1;
+        noOfEntitiesD1 = entityProfilesD1.size();
+        if (profilesD2 != null) {
+            entityProfilesD2 = profilesD2;
+            noOfEntitiesD2 = entityProfilesD2.size();
+        }
+
+        buildBlocks();
+        if (caching) {
+            indexedConfiguration = getIndexingSignature();
+            indexedProfilesD1 = profilesD1;
+            indexedProfilesD2 = profilesD2;
+            indexedClusters = sClusters;
+        }
+        return true;
+    }
+
+    protected void indexDataset(int datasetId) {
+        final TObjectIntMap<String> clusters = schemaClusters == null ? null : schemaClusters[datasetId];
+        final List<EntityProfile> entities = datasetId == DATASET_1 ? entityProfilesD1 : entityProfilesD2;
+        if (compactIndexing) {
+            indexEntities(datasetId == DATASET_1 ? compactIndexD1 : compactIndexD2, entities, clusters);
+        } else if (0 < maxPostingsInMemory) {
+            indexEntities(datasetId == DATASET_1 ? externalIndexD1 : externalIndexD2, entities, clusters);
+        } else {
+            indexEntities(datasetId == DATASET_1 ? invertedIndexD1 : invertedIndexD2, entities, clusters);
+        }
+    }
+
     protected void indexEntities(Map<String, TIntList> index, List<EntityProfile> entities) {
+        indexEntities(index, entities, null);
+    }
+
+    protected void indexEntities(Map<String, TIntList> index, List<EntityProfile> entities, TObjectIntMap<String> schemaClusters) {
+        if (!RangeExecutor.isParallel(entities.size(), noOfThreads)) {
+            indexEntities(index, entities, schemaClusters, 0, entities.size());
+            return;
+        }
+
+        final List<Map<String, TIntList>> partialIndices = RangeExecutor.processRanges(0, entities.size(), noOfThreads, "indexing of entities", (rangeStart, rangeEnd) -> {
+            final Map<String, TIntList> partialIndex = new HashMap<>();
+            indexEntities(partialIndex, entities, schemaClusters, rangeStart, rangeEnd);
+            return partialIndex;
+        });
+
+        //merging the partial indices in the order of their entity ranges keeps every posting list sorted
+        for (Map<String, TIntList> partialIndex : partialIndices) {
+            mergeIndices(index, partialIndex);
+        }
+    }
+
+    protected void indexEntities(CompactInvertedIndex index, List<EntityProfile> entities, TObjectIntMap<String> schemaClusters) {
+        indexEntities(index, entities.iterator(), schemaClusters);
+    }
+
+    protected int indexEntities(CompactInvertedIndex index, Iterator<EntityProfile> entities, TObjectIntMap<String> schemaClusters) {
         int counter = 0;
-        for (EntityProfile profile : entities) {
-            final Set<String> allKeys = new HashSet<>();
-            for (Attribute attribute : profile.getAttributes()) {
-                for (String key : getBlockingKeys(attribute.getValue().toLowerCase())) {
-                    String normalizedKey = key.trim();
-                    if (0 < normalizedKey.length()) {
-                        allKeys.add(normalizedKey);
-                    }
+        final TIntSet allKeyIds = new TIntHashSet();
+        final KeyIdCollector keyIdCollector = new KeyIdCollector(allKeyIds);
+        while (entities.hasNext()) {
+            getProfileKeyIds(entities.next(), schemaClusters, keyIdCollector);
+            for (TIntIterator iterator = allKeyIds.iterator(); iterator.hasNext();) {
+                int keyId = iterator.next();
+                if (isJoinedKey(keyId) && !isPurgedKey(keyId)) {
+                    index.addPosting(keyId, counter);
+                }
+            }
+            counter++;
+        }
+        return counter;
+    }
+
+    protected void indexEntities(ExternalInvertedIndex index, List<EntityProfile> entities, TObjectIntMap<String> schemaClusters) {
+        indexEntities(index, entities.iterator(), schemaClusters);
+    }
+
+    protected int indexEntities(ExternalInvertedIndex index, Iterator<EntityProfile> entities, TObjectIntMap<String> schemaClusters) {
+        int counter = 0;
+        while (entities.hasNext()) {
+            for (String key : getProfileKeys(entities.next(), schemaClusters)) {
+                if (semiJoinFilter != null && semiJoinDatasetId < 0) {
+                    semiJoinFilter.add(HashingTokenizer.hash(key));
+                }
+                if (isJoinedKey(key) && !isPurgedKey(key)) {
+                    index.addPosting(key, counter);
                 }
             }
+            counter++;
+        }
+        return counter;
+    }
+
+    protected int indexEntities(Map<String, TIntList> index, Iterator<EntityProfile> entities, TObjectIntMap<String> schemaClusters, int firstId) {
+        int counter = firstId;
+        while (entities.hasNext()) {
+            for (String key : getProfileKeys(entities.next(), schemaClusters)) {
+                if (!isJoinedKey(key) || isPurgedKey(key)) {
+                    continue;
+                }
 
-            for (String key : allKeys) {
                 TIntList entityList = index.get(key);
                 if (entityList == null) {
                     entityList = new TIntArrayList();
@@ -142,32 +672,180 @@ public abstract class AbstractBlockBuilding implements IBlockBuilding {
             }
             counter++;
         }
+        return counter;
     }
 
-    protected void indexEntities(Map<String, TIntList> index, List<EntityProfile> entities, TObjectIntMap<String> schemaClusters) {
-        int counter = 0;
-        for (EntityProfile profile : entities) {
-            final Set<String> allKeys = new HashSet<>();
-            for (Attribute attribute : profile.getAttributes()) {
-                int clusterId = schemaClusters.get(attribute.getName());
-                for (String key : getBlockingKeys(attribute.getValue().toLowerCase())) {
-                    String normalizedKey = key.trim();
-                    if (0 < normalizedKey.length()) {
-                        allKeys.add(normalizedKey + CLUSTER_PREFIX + clusterId);
-                    }
+    protected void indexEntities(Map<String, TIntList> index, List<EntityProfile> entities, TObjectIntMap<String> schemaClusters, int firstId, int lastId) {
+        indexEntities(index, entities.subList(firstId, lastId).iterator(), schemaClusters, firstId);
+    }
+
+    protected int indexNewEntities(Map<String, TIntList> index, List<EntityProfile> newEntities, TObjectIntMap<String> schemaClusters, int firstId, Set<String> updatedKeys) {
+        int counter = firstId;
+        for (EntityProfile profile : newEntities) {
+            for (String key : getProfileKeys(profile, schemaClusters)) {
+                if (isPurgedKey(key)) {
+                    continue;
                 }
-            }
 
-            for (String key : allKeys) {
                 TIntList entityList = index.get(key);
                 if (entityList == null) {
                     entityList = new TIntArrayList();
                     index.put(key, entityList);
                 }
                 entityList.add(counter);
+                updatedKeys.add(key);
             }
             counter++;
         }
+        return counter;
+    }
+
+    protected void initializeIndices(boolean ccER, TObjectIntMap<String>[] sClusters) {
+        blocks = new ArrayList<>();
+        indexedConfiguration = null;
+        indexedClusters = null;
+        indexedProfilesD1 = null;
+        indexedProfilesD2 = null;
+        tokenCache = null;
+        cleanCleanER = ccER;
+        schemaClusters = sClusters;
+        entityProfilesD1 = null;
+        entityProfilesD2 = null;
+        noOfEntitiesD1 = 0;
+        noOfEntitiesD2 = 0;
+
+        keyDictionary = null;
+        keyFrequencies = null;
+        keySketches = null;
+        compactIndexD1 = null;
+        compactIndexD2 = null;
+        externalIndexD1 = null;
+        externalIndexD2 = null;
+        invertedIndexD1 = null;
+        invertedIndexD2 = null;
+        semiJoinDatasetId = -1;
+        semiJoinFilter = null;
+        semiJoinIndex = null;
+        if (compactIndexing) {
+            keyDictionary = new BlockingKeyDictionary();
+            compactIndexD1 = new CompactInvertedIndex();
+            if (cleanCleanER) {
+                compactIndexD2 = new CompactInvertedIndex();
+            }
+        } else if (0 < maxPostingsInMemory) {
+            externalIndexD1 = new ExternalInvertedIndex(maxPostingsInMemory);
+            if (cleanCleanER) {
+                externalIndexD2 = new ExternalInvertedIndex(maxPostingsInMemory);
+                if (semiJoinIndexing) {
+                    semiJoinFilter = new BloomFilter(SEMI_JOIN_KEYS, SEMI_JOIN_FPP);
+                }
+            }
+        } else {
+            invertedIndexD1 = new HashMap<>();
+            if (cleanCleanER) {
+                invertedIndexD2 = new HashMap<>();
+            }
+        }
+    }
+
+    //the inverted indices in memory are reused, if they were built from the same input with the same indexing configuration
+    protected boolean isCachedIndex(List<EntityProfile> profilesD1, List<EntityProfile> profilesD2, TObjectIntMap<String>[] sClusters) {
+        if (indexedConfiguration == null || externalIndexD1 != null) {
+            return false;
+        }
+        return isIndexedInput(profilesD1, profilesD2, sClusters) && indexedConfiguration.equals(getIndexingSignature());
+    }
+
+    //the input is compared by reference, as in grid and random search the same lists are passed to every call
+    protected boolean isIndexedInput(List<EntityProfile> profilesD1, List<EntityProfile> profilesD2, TObjectIntMap<String>[] sClusters) {
+        return indexedProfilesD1 == profilesD1 && indexedProfilesD2 == profilesD2 && indexedClusters == sClusters;
+    }
+
+    //a key is purged, if its block would exceed the purging limit, as in SizeBasedBlockPurging
+    protected boolean isPurgedKey(long key) {
+        if (keyFrequencies == null && keySketches == null) {
+            return false;
+        }
+
+        if (!cleanCleanER) {
+            return purgingLimit < getKeyFrequency(DATASET_1, key);
+        }
+        return purgingLimit < Math.min(getKeyFrequency(DATASET_1, key), getKeyFrequency(DATASET_2, key));
+    }
+
+    protected boolean isPurgedKey(String key) {
+        if (keyFrequencies == null && keySketches == null) {
+            return false;
+        }
+        return isPurgedKey(HashingTokenizer.hash(key));
+    }
+
+    //during semi-join indexing, a key of the second side is indexed only if it appears in the first one, too;
+    //with fused purging, the compact dictionary contains the keys of both sides, hence their frequencies are checked, as well
+    protected boolean isJoinedKey(int keyId) {
+        if (keyId < 0) {
+            return false;
+        }
+        if (semiJoinDatasetId < 0 || (keyFrequencies == null && keySketches == null)) {
+            return true;
+        }
+        return 0 < getKeyFrequency(semiJoinDatasetId, keyId);
+    }
+
+    //the external indices are probed through a bloom filter, which yields a few false positives, but no false negatives
+    protected boolean isJoinedKey(String key) {
+        if (semiJoinDatasetId < 0) {
+            return true;
+        }
+        if (semiJoinIndex != null) {
+            return semiJoinIndex.containsKey(key);
+        }
+        if (semiJoinFilter != null) {
+            return semiJoinFilter.mightContain(HashingTokenizer.hash(key));
+        }
+        return true;
+    }
+
+    //the same criteria as in parseCompactIndex and parseCompactIndices
+    protected boolean isCompactBlock(int keyId) {
+        if (compactIndexD2 == null) {
+            return 1 < compactIndexD1.getPostingsSize(keyId);
+        }
+        return 0 < compactIndexD1.getPostingsSize(keyId) && 0 < compactIndexD2.getPostingsSize(keyId);
+    }
+
+    protected void mergeIndices(Map<String, TIntList> index, Map<String, TIntList> partialIndex) {
+        partialIndex.entrySet().forEach((entry) -> {
+            final TIntList entityList = index.get(entry.getKey());
+            if (entityList == null) {
+                index.put(entry.getKey(), entry.getValue());
+            } else {
+                entityList.addAll(entry.getValue());
+            }
+        });
+    }
+
+    protected void closeExternalIndices() {
+        externalIndexD1.close();
+        if (externalIndexD2 != null) {
+            externalIndexD2.close();
+        }
+    }
+
+    protected void parseCompactIndex() {
+        for (int keyId = 0; keyId < compactIndexD1.getNoOfKeys(); keyId++) {
+            if (1 < compactIndexD1.getPostingsSize(keyId)) {
+                blocks.add(new UnilateralBlock(compactIndexD1.getPostings(keyId)));
+            }
+        }
+    }
+
+    protected void parseCompactIndices() {
+        for (int keyId = 0; keyId < compactIndexD1.getNoOfKeys(); keyId++) {
+            if (0 < compactIndexD1.getPostingsSize(keyId) && 0 < compactIndexD2.getPostingsSize(keyId)) {
+                blocks.add(new BilateralBlock(compactIndexD1.getPostings(keyId), compactIndexD2.getPostings(keyId)));
+            }
+        }
     }
 
     protected void parseIndex() {
@@ -185,9 +863,60 @@ public abstract class AbstractBlockBuilding implements IBlockBuilding {
         });
     }
 
+    //the posting lists of the compact indices are copied directly into the block collection, without creating any block object;
+    //for the other indices, the blocks are converted into a block collection
+    public BlockCollection readBlockCollection() {
+        if (compactIndexD1 == null) {
+            return new BlockCollection(readBlocks(), cleanCleanER);
+        }
+
+        int noOfBlocks = 0;
+        int noOfPostingsD1 = 0;
+        int noOfPostingsD2 = 0;
+        for (int keyId = 0; keyId < compactIndexD1.getNoOfKeys(); keyId++) {
+            if (isCompactBlock(keyId)) {
+                noOfBlocks++;
+                noOfPostingsD1 += compactIndexD1.getPostingsSize(keyId);
+                if (compactIndexD2 != null) {
+                    noOfPostingsD2 += compactIndexD2.getPostingsSize(keyId);
+                }
+            }
+        }
+
+        int blockId = 0;
+        final int[] entityIdsD1 = new int[noOfPostingsD1];
+        final int[] offsetsD1 = new int[noOfBlocks + 1];
+        final int[] entityIdsD2 = compactIndexD2 == null ? null : new int[noOfPostingsD2];
+        final int[] offsetsD2 = compactIndexD2 == null ? null : new int[noOfBlocks + 1];
+        for (int keyId = 0; keyId < compactIndexD1.getNoOfKeys(); keyId++) {
+            if (isCompactBlock(keyId)) {
+                offsetsD1[blockId + 1] = offsetsD1[blockId] + compactIndexD1.copyPostings(keyId, entityIdsD1, offsetsD1[blockId]);
+                if (compactIndexD2 != null) {
+                    offsetsD2[blockId + 1] = offsetsD2[blockId] + compactIndexD2.copyPostings(keyId, entityIdsD2, offsetsD2[blockId]);
+                }
+                blockId++;
+            }
+        }
+        return new BlockCollection(offsetsD1, entityIdsD1, offsetsD2, entityIdsD2);
+    }
+
     //read blocks from the inverted index
     public List<AbstractBlock> readBlocks() {
-        if (entityProfilesD2 == null) { //Dirty ER
+        if (compactIndexD1 != null) {
+            if (compactIndexD2 == null) { //Dirty ER
+                parseCompactIndex();
+            } else { // Clean-Clean ER
+                parseCompactIndices();
+            }
+            return blocks;
+        }
+
+        if (externalIndexD1 != null) {
+            new ExternalBlockIterator().forEachRemaining(blocks::add);
+            return blocks;
+        }
+
+        if (!cleanCleanER) { //Dirty ER
             parseIndex();
         } else { // Clean-Clean ER
             parseIndices();
@@ -195,4 +924,226 @@ public abstract class AbstractBlockBuilding implements IBlockBuilding {
 
         return blocks;
     }
+
+    //the blocks of the external indices are merged lazily, one at a time, so that they need not be held in memory;
+    //for the other indices, the blocks are read in their entirety
+    public Iterator<AbstractBlock> readBlockIterator() {
+        if (externalIndexD1 != null) {
+            return new ExternalBlockIterator();
+        }
+        return readBlocks().iterator();
+    }
+
+    // discards the cached tokens and indices; a different input is detected by reference, but changes to the contents
+    // of the same lists are not, so this should be called after modifying the input of a caching method
+    @Override
+    public void resetCache() {
+        indexedConfiguration = null;
+        indexedClusters = null;
+        indexedProfilesD1 = null;
+        indexedProfilesD2 = null;
+        tokenCache = null;
+    }
+
+    // keeps the tokens of the last input and, for the methods whose indices are independent of some parameters, the indices, too,
+    // so that the repeated calls of grid and random search only perform the steps that depend on the changed parameters;
+    // the cached data are reused for every call with the same input lists and schema clusters
+    @Override
+    public void setCaching(boolean cache) {
+        caching = cache;
+        if (!caching) {
+            resetCache();
+        }
+    }
+
+    // the blocking keys are encoded as integers and the posting lists are stored in primitive arrays,
+    // thus reducing the memory footprint of block building; the key strings are interned only once.
+    // Only the methods that support hashed keys (i.e., Standard, Q-Grams and Extended Q-Grams Blocking) derive the key ids
+    // through the HashingTokenizer without materializing the keys; the rest still lower-case and split every value
+    // and create the set of its keys, so that only the memory of the index, not the time of key derivation, is reduced
+    public void setCompactIndexing(boolean compact) {
+        if (compact && !supportsCompactIndexing()) {
+            Log.warn(getMethodName() + " does not support compact indexing!");
+            return;
+        }
+        compactIndexing = compact;
+    }
+
+    // when the inverted index exceeds the given number of postings, it is sorted and spilled to temporary files,
+    // which are merged when reading the blocks; a non-positive value keeps the entire index in memory
+    public void setExternalIndexing(int maxPostings) {
+        if (0 < maxPostings && !supportsExternalIndexing()) {
+            Log.warn(getMethodName() + " does not support external indexing!");
+            return;
+        }
+        maxPostingsInMemory = Math.max(0, maxPostings);
+    }
+
+    public void setNoOfThreads(int threads) {
+        noOfThreads = Math.max(1, threads);
+    }
+
+    // fuses block building with size-based block purging: a first pass counts the entities per key, either exactly or
+    // through a count-min sketch, and the second one creates no postings for the keys whose blocks would exceed the limit;
+    // the approximate counts never underestimate, so a few keys close to the limit might be purged, as well
+    public void setPurgingLimit(int maxEntitiesPerBlock, boolean approximate) {
+        purgingLimit = Math.max(0, maxEntitiesPerBlock);
+        approximateFrequencies = approximate;
+    }
+
+    // for Clean-Clean ER, the smaller dataset is indexed first and the other one creates postings only for the keys of the former,
+    // as all other keys yield no bilateral block; the keys of the second side are checked against the first inverted index,
+    // the read-only key dictionary in case of compact indexing, or a bloom filter in case of external indexing
+    public void setSemiJoinIndexing(boolean semiJoin) {
+        if (semiJoin && !supportsSemiJoinIndexing()) {
+            Log.warn(getMethodName() + " does not support semi-join indexing!");
+            return;
+        }
+        semiJoinIndexing = semiJoin;
+    }
+
+    // the attribute values are tokenized once by the given store and the tokens are shared with all other workflow steps using it;
+    // it takes precedence over the hashed keys, as the tokens are already materialized
+    @Override
+    public void setTokenStore(TokenStore store) {
+        if (store != null && !supportsTokenStore()) {
+            Log.warn(getMethodName() + " does not support a token store!");
+            return;
+        }
+        tokenStore = store;
+    }
+
+    protected void startSemiJoin(int firstDatasetId) {
+        semiJoinDatasetId = firstDatasetId;
+        if (keyDictionary != null) {
+            keyDictionary.setReadOnly(true);
+        }
+        if (!compactIndexing && maxPostingsInMemory <= 0) {
+            semiJoinIndex = firstDatasetId == DATASET_1 ? invertedIndexD1 : invertedIndexD2;
+        }
+    }
+
+    protected void stopSemiJoin() {
+        semiJoinDatasetId = -1;
+        semiJoinFilter = null;
+        semiJoinIndex = null;
+        if (keyDictionary != null) {
+            keyDictionary.setReadOnly(false);
+        }
+    }
+
+    protected boolean supportsCompactIndexing() {
+        return true;
+    }
+
+    protected boolean supportsExternalIndexing() {
+        return true;
+    }
+
+    protected boolean supportsHashedKeys() {
+        return false;
+    }
+
+    protected boolean supportsIncrementalBlocking() {
+        return true;
+    }
+
+    protected boolean supportsSemiJoinIndexing() {
+        return true;
+    }
+
+    protected boolean supportsTokenStore() {
+        return false;
+    }
+
+    //both indices are traversed in lexicographic order of their keys, so they are joined through a merge;
+    //the indices are closed as soon as the merge is exhausted
+    protected class ExternalBlockIterator implements Iterator<AbstractBlock> {
+
+        protected AbstractBlock nextBlock;
+
+        public ExternalBlockIterator() {
+            nextBlock = mergeNextBlock();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextBlock != null;
+        }
+
+        @Override
+        public AbstractBlock next() {
+            if (nextBlock == null) {
+                throw new NoSuchElementException();
+            }
+
+            final AbstractBlock block = nextBlock;
+            nextBlock = mergeNextBlock();
+            return block;
+        }
+
+        private AbstractBlock mergeNextBlock() {
+            try {
+                final AbstractBlock block = cleanCleanER ? mergeNextBilateralBlock() : mergeNextUnilateralBlock();
+                if (block != null) {
+                    return block;
+                }
+            } catch (RuntimeException ex) {
+                closeExternalIndices();
+                throw ex;
+            }
+
+            closeExternalIndices();
+            return null;
+        }
+
+        private AbstractBlock mergeNextBilateralBlock() {
+            boolean hasNextD1 = externalIndexD1.nextKey();
+            boolean hasNextD2 = externalIndexD2.nextKey();
+            while (hasNextD1 && hasNextD2) {
+                int comparison = externalIndexD1.getKey().compareTo(externalIndexD2.getKey());
+                if (comparison < 0) {
+                    hasNextD1 = externalIndexD1.nextKey();
+                } else if (0 < comparison) {
+                    hasNextD2 = externalIndexD2.nextKey();
+                } else {
+                    return new BilateralBlock(externalIndexD1.getPostings(), externalIndexD2.getPostings());
+                }
+            }
+            return null;
+        }
+
+        private AbstractBlock mergeNextUnilateralBlock() {
+            while (externalIndexD1.nextKey()) {
+                if (1 < externalIndexD1.getPostingsSize()) {
+                    return new UnilateralBlock(externalIndexD1.getPostings());
+                }
+            }
+            return null;
+        }
+    }
+
+    //reused for all attribute values, so that no object is allocated per blocking key
+    protected class KeyIdCollector implements LongConsumer {
+
+        protected int clusterId;
+        protected final TIntSet keyIds;
+
+        public KeyIdCollector(TIntSet ids) {
+            clusterId = -1;
+            keyIds = ids;
+        }
+
+        @Override
+        public void accept(long keyHash) {
+            add(clusterId < 0 ? keyDictionary.getKeyId(keyHash) : keyDictionary.getKeyId(keyHash, clusterId));
+        }
+
+        //a read-only dictionary returns a negative id for the keys it does not contain
+        public void add(int keyId) {
+            if (0 <= keyId) {
+                keyIds.add(keyId);
+            }
+        }
+    }
 }
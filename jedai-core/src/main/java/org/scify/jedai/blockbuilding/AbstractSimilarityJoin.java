@@ -0,0 +1,190 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package org.scify.jedai.blockbuilding;
+
+import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.Attribute;
+import org.scify.jedai.datamodel.BlockCollection;
+import org.scify.jedai.datamodel.DecomposedBlock;
+import org.scify.jedai.datamodel.EntityProfile;
+import org.scify.jedai.textmodels.ITextModel;
+import org.scify.jedai.utilities.enumerations.RepresentationModel;
+import org.scify.jedai.utilities.datastructures.TokenStore;
+import org.scify.jedai.utilities.enumerations.SimilarityMetric;
+
+import com.esotericsoftware.minlog.Log;
+
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TObjectIntMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ * @author gap2
+ */
+public abstract class AbstractSimilarityJoin implements IBlockBuilding {
+
+    protected boolean cleanCleanER;
+
+    protected int datasetLimit;
+    protected int noOfEntities;
+
+    protected RepresentationModel representationModel;
+    protected SimilarityMetric simMetric;
+    protected TIntList entityIdsD1;
+    protected TIntList entityIdsD2;
+    protected TokenStore tokenStore;
+
+    public AbstractSimilarityJoin(RepresentationModel model, SimilarityMetric metric) {
+        representationModel = model;
+        simMetric = metric;
+    }
+
+    //every candidate pair is stored only once; in Dirty ER, the first entity has the smaller id
+    protected void addPair(int entityId1, int entityId2) {
+        if (!cleanCleanER) {
+            entityIdsD1.add(Math.min(entityId1, entityId2));
+            entityIdsD2.add(Math.max(entityId1, entityId2));
+        } else if (entityId1 < datasetLimit) {
+            entityIdsD1.add(entityId1);
+            entityIdsD2.add(entityId2 - datasetLimit);
+        } else {
+            entityIdsD1.add(entityId2);
+            entityIdsD2.add(entityId1 - datasetLimit);
+        }
+    }
+
+    protected abstract void applyJoin(List<EntityProfile> profilesD1, List<EntityProfile> profilesD2);
+
+    @Override
+    public BlockCollection getBlockCollection(List<EntityProfile> profiles) {
+        return this.getBlockCollection(profiles, null, null);
+    }
+
+    @Override
+    public BlockCollection getBlockCollection(List<EntityProfile> profilesD1, List<EntityProfile> profilesD2) {
+        return this.getBlockCollection(profilesD1, profilesD2, null);
+    }
+
+    //decomposed blocks have no columnar representation, thus every candidate pair forms a block of its own
+    @Override
+    public BlockCollection getBlockCollection(List<EntityProfile> profilesD1, List<EntityProfile> profilesD2, TObjectIntMap<String>[] schemaClusters) {
+        if (!joinProfiles(profilesD1, profilesD2, schemaClusters)) {
+            return null;
+        }
+
+        final int noOfPairs = entityIdsD1.size();
+        if (cleanCleanER) {
+            final int[] offsets = new int[noOfPairs + 1];
+            for (int i = 0; i < noOfPairs; i++) {
+                offsets[i + 1] = i + 1;
+            }
+            return new BlockCollection(offsets, entityIdsD1.toArray(), offsets.clone(), entityIdsD2.toArray());
+        }
+
+        final int[] offsets = new int[noOfPairs + 1];
+        final int[] entityIds = new int[2 * noOfPairs];
+        for (int i = 0; i < noOfPairs; i++) {
+            offsets[i + 1] = 2 * (i + 1);
+            entityIds[2 * i] = entityIdsD1.get(i);
+            entityIds[2 * i + 1] = entityIdsD2.get(i);
+        }
+        return new BlockCollection(offsets, entityIds);
+    }
+
+    @Override
+    public List<AbstractBlock> getBlocks(List<EntityProfile> profiles) {
+        return this.getBlocks(profiles, null, null);
+    }
+
+    @Override
+    public List<AbstractBlock> getBlocks(List<EntityProfile> profilesD1, List<EntityProfile> profilesD2) {
+        return this.getBlocks(profilesD1, profilesD2, null);
+    }
+
+    @Override
+    public List<AbstractBlock> getBlocks(List<EntityProfile> profilesD1, List<EntityProfile> profilesD2, TObjectIntMap<String>[] schemaClusters) {
+        if (!joinProfiles(profilesD1, profilesD2, schemaClusters)) {
+            return null;
+        }
+
+        final List<AbstractBlock> blocks = new ArrayList<>();
+        if (!entityIdsD1.isEmpty()) {
+            blocks.add(new DecomposedBlock(cleanCleanER, entityIdsD1.toArray(), entityIdsD2.toArray()));
+        }
+        return blocks;
+    }
+
+    protected ITextModel[] getModels(int datasetId, List<EntityProfile> profiles) {
+        int counter = 0;
+        final ITextModel[] models = new ITextModel[profiles.size()];
+        RepresentationModel.resetGlobalValues(datasetId, representationModel);
+        for (EntityProfile profile : profiles) {
+            models[counter] = RepresentationModel.getModel(datasetId, representationModel, simMetric, profile.getEntityUrl());
+            if (tokenStore == null) {
+                for (Attribute attribute : profile.getAttributes()) {
+                    models[counter].updateModel(attribute.getValue());
+                }
+            } else {
+                tokenStore.updateModel(models[counter], profile);
+            }
+            models[counter].finalizeModel();
+            counter++;
+        }
+        return models;
+    }
+
+    protected boolean joinProfiles(List<EntityProfile> profilesD1, List<EntityProfile> profilesD2, TObjectIntMap<String>[] schemaClusters) {
+        Log.info("Applying " + getMethodName() + " with the following configuration : " + getMethodConfiguration());
+
+        if (profilesD1 == null) {
+            Log.error("First list of entity profiles is null! The first argument should always contain entities.");
+            return false;
+        }
+
+        if (schemaClusters != null) {
+            Log.warn(getMethodName() + " compares entire profiles and ignores the schema clusters!");
+        }
+
+        cleanCleanER = profilesD2 != null;
+        datasetLimit = profilesD1.size();
+        noOfEntities = datasetLimit + (cleanCleanER ? profilesD2.size() : 0);
+        entityIdsD1 = new TIntArrayList();
+        entityIdsD2 = new TIntArrayList();
+        applyJoin(profilesD1, profilesD2);
+        Log.info("Candidate pairs\t:\t" + entityIdsD1.size());
+        return true;
+    }
+
+    //similarity joins keep no data between calls, as every configuration changes the joined representations
+    @Override
+    public void resetCache() {
+    }
+
+    @Override
+    public void setCaching(boolean cache) {
+    }
+
+    @Override
+    public void setTokenStore(TokenStore store) {
+        tokenStore = store;
+    }
+}
@@ -0,0 +1,399 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package org.scify.jedai.blockbuilding;
+
+import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.BlockCollection;
+import org.scify.jedai.datamodel.DecomposedBlock;
+
+import gnu.trove.iterator.TIntIterator;
+import gnu.trove.list.TIntList;
+import gnu.trove.map.TObjectIntMap;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.jena.atlas.json.JsonArray;
+import org.apache.jena.atlas.json.JsonObject;
+import org.scify.jedai.configuration.gridsearch.DblGridSearchConfiguration;
+import org.scify.jedai.configuration.gridsearch.IntGridSearchConfiguration;
+import org.scify.jedai.configuration.randomsearch.DblRandomSearchConfiguration;
+import org.scify.jedai.configuration.randomsearch.IntRandomSearchConfiguration;
+
+/**
+ *
+ * @author gap2
+ */
+public class AdaptiveSortedNeighborhoodBlocking extends SortedNeighborhoodBlocking {
+
+    private final static int MAX_WINDOW_SIZE = 50;
+
+    protected double overlapThreshold;
+
+    protected int datasetLimit;
+    protected int maximumWindowSize;
+    protected int[] entityKeys;
+    protected int[] keyOffsets;
+    protected int[] sortedEntities;
+
+    protected final DblGridSearchConfiguration gridThreshold;
+    protected final DblRandomSearchConfiguration randomThreshold;
+
+    public AdaptiveSortedNeighborhoodBlocking() {
+        this(0.5, 4);
+    }
+
+    public AdaptiveSortedNeighborhoodBlocking(double t, int w) {
+        super(w);
+        overlapThreshold = t;
+        maximumWindowSize = MAX_WINDOW_SIZE;
+
+        gridWindow = new IntGridSearchConfiguration(10, 2, 1);
+        randomWindow = new IntRandomSearchConfiguration(10, 2);
+        gridThreshold = new DblGridSearchConfiguration(0.9, 0.1, 0.1);
+        randomThreshold = new DblRandomSearchConfiguration(0.9, 0.1);
+    }
+
+    //the window of every position starts with the given size: if its last entity shares enough blocking keys with the first one,
+    //it grows as long as the next entity does so, too, up to the maximum window size; otherwise, it shrinks until its last entity
+    //does so, down to two entities. The first entity of every window is compared with all the others, hence the window pairs are
+    //collected directly, without creating any block per position, and every distinct pair is emitted once in a decomposed block
+    protected void applyAdaptiveWindow() {
+        int noOfPairs = 0;
+        long[] pairs = new long[Math.max(16, sortedEntities.length)];
+        for (int i = 0; i < sortedEntities.length - 1; i++) {
+            int end = Math.min(sortedEntities.length - 1, i + Math.max(2, windowSize) - 1);
+            int maxEnd = Math.min(sortedEntities.length - 1, i + Math.max(windowSize, maximumWindowSize) - 1);
+            if (isSimilarPair(sortedEntities[i], sortedEntities[end])) {
+                while (end < maxEnd && (!isCandidatePair(sortedEntities[i], sortedEntities[end + 1])
+                        || isSimilarPair(sortedEntities[i], sortedEntities[end + 1]))) {
+                    end++;
+                }
+            } else {
+                while (i + 1 < end && !isSimilarPair(sortedEntities[i], sortedEntities[end])) {
+                    end--;
+                }
+            }
+
+            if (pairs.length < noOfPairs + end - i) {
+                pairs = Arrays.copyOf(pairs, Math.max(2 * pairs.length, noOfPairs + end - i));
+            }
+            for (int j = i + 1; j <= end; j++) {
+                if (isCandidatePair(sortedEntities[i], sortedEntities[j])) {
+                    pairs[noOfPairs++] = getPairKey(sortedEntities[i], sortedEntities[j]);
+                }
+            }
+        }
+
+        //the pairs found in several windows are removed through a primitive sort of their keys
+        Arrays.sort(pairs, 0, noOfPairs);
+        int noOfDistinctPairs = 0;
+        for (int i = 0; i < noOfPairs; i++) {
+            if (i == 0 || pairs[noOfDistinctPairs - 1] != pairs[i]) {
+                pairs[noOfDistinctPairs++] = pairs[i];
+            }
+        }
+
+        if (0 < noOfDistinctPairs) {
+            final int[] entityIds1 = new int[noOfDistinctPairs];
+            final int[] entityIds2 = new int[noOfDistinctPairs];
+            for (int i = 0; i < noOfDistinctPairs; i++) {
+                entityIds1[i] = (int) (pairs[i] >>> 32);
+                entityIds2[i] = (int) pairs[i];
+            }
+            blocks.add(new DecomposedBlock(cleanCleanER, entityIds1, entityIds2));
+        }
+    }
+
+    //the entities of both datasets are sorted together, with the ids of the second one following those of the first one;
+    //every entity also stores the ranks of its blocking keys in ascending order, so that the key overlap is computed through a merge
+    protected void buildSortedEntities() {
+        final String[] sortedTerms = getSortedTerms();
+
+        datasetLimit = (int) noOfEntitiesD1;
+        keyOffsets = new int[(int) getTotalNoOfEntities() + 1];
+        int noOfPostings = 0;
+        for (String blockingKey : sortedTerms) {
+            noOfPostings += countPostings(invertedIndexD1.get(blockingKey), 0);
+            if (cleanCleanER) {
+                noOfPostings += countPostings(invertedIndexD2.get(blockingKey), datasetLimit);
+            }
+        }
+        for (int i = 0; i < keyOffsets.length - 1; i++) {
+            keyOffsets[i + 1] += keyOffsets[i];
+        }
+
+        int position = 0;
+        entityKeys = new int[noOfPostings];
+        sortedEntities = new int[noOfPostings];
+        final int[] keyPositions = Arrays.copyOf(keyOffsets, keyOffsets.length - 1);
+        for (int rank = 0; rank < sortedTerms.length; rank++) {
+            int keyStart = position;
+            position = addPostings(invertedIndexD1.get(sortedTerms[rank]), 0, rank, position, keyPositions);
+            if (cleanCleanER) {
+                position = addPostings(invertedIndexD2.get(sortedTerms[rank]), datasetLimit, rank, position, keyPositions);
+            }
+            shuffle(keyStart, position);
+        }
+    }
+
+    private int addPostings(TIntList entityIds, int idOffset, int rank, int position, int[] keyPositions) {
+        if (entityIds == null) {
+            return position;
+        }
+
+        for (TIntIterator iterator = entityIds.iterator(); iterator.hasNext();) {
+            int entityId = idOffset + iterator.next();
+            entityKeys[keyPositions[entityId]++] = rank;
+            sortedEntities[position++] = entityId;
+        }
+        return position;
+    }
+
+    private int countPostings(TIntList entityIds, int idOffset) {
+        if (entityIds == null) {
+            return 0;
+        }
+
+        for (TIntIterator iterator = entityIds.iterator(); iterator.hasNext();) {
+            keyOffsets[idOffset + iterator.next() + 1]++;
+        }
+        return entityIds.size();
+    }
+
+    //the portion of the keys of the entity with the fewest keys that are shared with the other entity
+    protected double getKeyOverlap(int entityId1, int entityId2) {
+        int i = keyOffsets[entityId1];
+        int j = keyOffsets[entityId2];
+        int commonKeys = 0;
+        while (i < keyOffsets[entityId1 + 1] && j < keyOffsets[entityId2 + 1]) {
+            if (entityKeys[i] < entityKeys[j]) {
+                i++;
+            } else if (entityKeys[j] < entityKeys[i]) {
+                j++;
+            } else {
+                commonKeys++;
+                i++;
+                j++;
+            }
+        }
+
+        int minKeys = Math.min(keyOffsets[entityId1 + 1] - keyOffsets[entityId1], keyOffsets[entityId2 + 1] - keyOffsets[entityId2]);
+        return ((double) commonKeys) / minKeys;
+    }
+
+    //in Dirty ER, the first entity of a pair has the smaller id; in Clean-Clean ER, it belongs to the first dataset
+    private long getPairKey(int entityId1, int entityId2) {
+        if (!cleanCleanER) {
+            return ((long) Math.min(entityId1, entityId2)) << 32 | Math.max(entityId1, entityId2);
+        } else if (entityId1 < datasetLimit) {
+            return ((long) entityId1) << 32 | (entityId2 - datasetLimit);
+        }
+        return ((long) entityId2) << 32 | (entityId1 - datasetLimit);
+    }
+
+    @Override
+    public String getMethodConfiguration() {
+        return getParameterName(0) + "=" + windowSize + ",\t"
+                + getParameterName(1) + "=" + overlapThreshold;
+    }
+
+    @Override
+    public String getMethodInfo() {
+        return getMethodName() + ": it improves " + super.getMethodName() + " by adapting the size of the window to the sorted list of entities:\n"
+                + "the window of every entity grows while its last entity shares enough blocking keys with it, up to a maximum size, and shrinks otherwise;\n"
+                + "every entity is compared with the others in its window and every distinct candidate pair is returned once, in a single decomposed block.";
+    }
+
+    @Override
+    public String getMethodName() {
+        return "Adaptive Sorted Neighborhood Blocking";
+    }
+
+    @Override
+    public String getMethodParameters() {
+        return getMethodName() + " involves two parameters:\n"
+                + "1)" + getParameterDescription(0) + ".\n"
+                + "2)" + getParameterDescription(1) + ".";
+    }
+
+    @Override
+    public int getNumberOfGridConfigurations() {
+        return gridWindow.getNumberOfConfigurations() * gridThreshold.getNumberOfConfigurations();
+    }
+
+    @Override
+    public JsonArray getParameterConfiguration() {
+        final JsonObject obj1 = new JsonObject();
+        obj1.put("class", "java.lang.Integer");
+        obj1.put("name", getParameterName(0));
+        obj1.put("defaultValue", "4");
+        obj1.put("minValue", "2");
+        obj1.put("maxValue", "10");
+        obj1.put("stepValue", "1");
+        obj1.put("description", getParameterDescription(0));
+
+        final JsonObject obj2 = new JsonObject();
+        obj2.put("class", "java.lang.Double");
+        obj2.put("name", getParameterName(1));
+        obj2.put("defaultValue", "0.5");
+        obj2.put("minValue", "0.1");
+        obj2.put("maxValue", "0.9");
+        obj2.put("stepValue", "0.1");
+        obj2.put("description", getParameterDescription(1));
+
+        final JsonArray array = new JsonArray();
+        array.add(obj1);
+        array.add(obj2);
+        return array;
+    }
+
+    @Override
+    public String getParameterDescription(int parameterId) {
+        switch (parameterId) {
+            case 0:
+                return "The " + getParameterName(0) + " determines the initial size of the window that slides over the sorted list of entities.";
+            case 1:
+                return "The " + getParameterName(1) + " determines the minimum portion of blocking keys that the last entity of the window should share "
+                        + "with the first one in order to grow the window instead of shrinking it.";
+            default:
+                return "invalid parameter id";
+        }
+    }
+
+    @Override
+    public String getParameterName(int parameterId) {
+        switch (parameterId) {
+            case 0:
+                return "Window Size";
+            case 1:
+                return "Overlap Threshold";
+            default:
+                return "invalid parameter id";
+        }
+    }
+
+    //the entities of the same key are shuffled, as in Sorted Neighborhood
+    private void shuffle(int start, int end) {
+        for (int i = end - 1; start < i; i--) {
+            int j = start + random.nextInt(i - start + 1);
+            int entityId = sortedEntities[i];
+            sortedEntities[i] = sortedEntities[j];
+            sortedEntities[j] = entityId;
+        }
+    }
+
+    //in Clean-Clean ER, only entities from different datasets are compared
+    @Override
+    protected void initializeIndices(boolean ccER, TObjectIntMap<String>[] sClusters) {
+        super.initializeIndices(ccER, sClusters);
+        releaseSortedEntities();
+    }
+
+    private boolean isCandidatePair(int entityId1, int entityId2) {
+        if (entityId1 == entityId2) {
+            return false;
+        }
+        return !cleanCleanER || (entityId1 < datasetLimit) != (entityId2 < datasetLimit);
+    }
+
+    private boolean isSimilarPair(int entityId1, int entityId2) {
+        return isCandidatePair(entityId1, entityId2) && overlapThreshold <= getKeyOverlap(entityId1, entityId2);
+    }
+
+    @Override
+    protected void parseIndex() {
+        //with caching, the sorted entities and their key ranks are independent of the window parameters and are reused
+        if (sortedEntities == null) {
+            buildSortedEntities();
+        }
+        applyAdaptiveWindow();
+        if (!caching) {
+            releaseSortedEntities();
+        }
+    }
+
+    @Override
+    protected void parseIndices() {
+        parseIndex();
+    }
+
+    //decomposed blocks have no columnar representation, thus every candidate pair forms a block of its own
+    @Override
+    public BlockCollection readBlockCollection() {
+        final List<AbstractBlock> pairBlocks = readBlocks();
+        if (pairBlocks.isEmpty()) {
+            return new BlockCollection(pairBlocks, cleanCleanER);
+        }
+
+        final DecomposedBlock pairs = (DecomposedBlock) pairBlocks.get(0);
+        final int noOfPairs = pairs.getEntities1().length;
+        final int[] offsets = new int[noOfPairs + 1];
+        if (cleanCleanER) {
+            for (int i = 0; i < noOfPairs; i++) {
+                offsets[i + 1] = i + 1;
+            }
+            return new BlockCollection(offsets, pairs.getEntities1(), offsets.clone(), pairs.getEntities2());
+        }
+
+        final int[] entityIds = new int[2 * noOfPairs];
+        for (int i = 0; i < noOfPairs; i++) {
+            offsets[i + 1] = 2 * (i + 1);
+            entityIds[2 * i] = pairs.getEntities1()[i];
+            entityIds[2 * i + 1] = pairs.getEntities2()[i];
+        }
+        return new BlockCollection(offsets, entityIds);
+    }
+
+    private void releaseSortedEntities() {
+        entityKeys = null;
+        keyOffsets = null;
+        sortedEntities = null;
+    }
+
+    @Override
+    public void resetCache() {
+        super.resetCache();
+        releaseSortedEntities();
+    }
+
+    public void setMaximumWindowSize(int maxSize) {
+        maximumWindowSize = Math.max(2, maxSize);
+    }
+
+    @Override
+    public void setNextRandomConfiguration() {
+        super.setNextRandomConfiguration();
+        overlapThreshold = (Double) randomThreshold.getNextRandomValue();
+    }
+
+    @Override
+    public void setNumberedGridConfiguration(int iterationNumber) {
+        int windowIteration = iterationNumber / gridThreshold.getNumberOfConfigurations();
+        windowSize = (Integer) gridWindow.getNumberedValue(windowIteration);
+
+        int thrIteration = iterationNumber - windowIteration * gridThreshold.getNumberOfConfigurations();
+        overlapThreshold = (Double) gridThreshold.getNumberedValue(thrIteration);
+    }
+
+    @Override
+    public void setNumberedRandomConfiguration(int iterationNumber) {
+        super.setNumberedRandomConfiguration(iterationNumber);
+        overlapThreshold = (Double) randomThreshold.getNumberedRandom(iterationNumber);
+    }
+}
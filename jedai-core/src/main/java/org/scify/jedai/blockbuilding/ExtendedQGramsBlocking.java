@@ -15,15 +15,20 @@
  */
 package org.scify.jedai.blockbuilding;
 
-import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.function.LongConsumer;
+
+import com.esotericsoftware.minlog.Log;
+
+import gnu.trove.map.TObjectIntMap;
 
 import org.apache.jena.atlas.json.JsonArray;
 import org.apache.jena.atlas.json.JsonObject;
 import org.scify.jedai.configuration.gridsearch.DblGridSearchConfiguration;
 import org.scify.jedai.configuration.randomsearch.DblRandomSearchConfiguration;
+import org.scify.jedai.utilities.HashingTokenizer;
 
 /**
  *
@@ -31,8 +36,12 @@ import org.scify.jedai.configuration.randomsearch.DblRandomSearchConfiguration;
  */
 public class ExtendedQGramsBlocking extends QGramsBlocking {
 
+    private final static int MAX_COMBINATIONS = 1024;
     private final static int MAX_Q_GRAMS = 15;
 
+    protected int maxCombinations;
+    protected int maximumBlockSize;
+
     private double threshold;
 
     private final DblGridSearchConfiguration gridThreshold;
@@ -44,15 +53,57 @@ public class ExtendedQGramsBlocking extends QGramsBlocking {
      public ExtendedQGramsBlocking(double t, int n) {
         super(n);
         threshold = t;
+        maxCombinations = MAX_COMBINATIONS;
+        maximumBlockSize = Integer.MAX_VALUE;
         
         randomThreshold = new DblRandomSearchConfiguration(0.99, 0.8);
         gridThreshold = new DblGridSearchConfiguration(0.95, 0.8, 0.05);
     }
 
+    //adds to the given set up to maxNoOfCombinations concatenations of sublistLength sublists in lexicographic order of their positions
+    protected int addCombinations(List<String> sublists, int sublistLength, int maxNoOfCombinations, Set<String> combinations) {
+        if (sublistLength == 0 || sublists.size() < sublistLength) {
+            return 0;
+        }
+
+        final int[] combination = new int[sublistLength];
+        final int[] prefixLengths = new int[sublistLength + 1];
+        for (int i = 0; i < sublistLength; i++) {
+            combination[i] = i;
+        }
+
+        int changedPosition = 0;
+        int noOfCombinations = 0;
+        final StringBuilder key = new StringBuilder();
+        while (noOfCombinations < maxNoOfCombinations) {
+            key.setLength(prefixLengths[changedPosition]);
+            for (int i = changedPosition; i < sublistLength; i++) {
+                key.append(sublists.get(combination[i]));
+                prefixLengths[i + 1] = key.length();
+            }
+            combinations.add(key.toString());
+            noOfCombinations++;
+
+            changedPosition = sublistLength - 1;
+            while (0 <= changedPosition && combination[changedPosition] == sublists.size() - sublistLength + changedPosition) {
+                changedPosition--;
+            }
+            if (changedPosition < 0) {
+                break;
+            }
+
+            combination[changedPosition]++;
+            for (int i = changedPosition + 1; i < sublistLength; i++) {
+                combination[i] = combination[i - 1] + 1;
+            }
+        }
+        return noOfCombinations;
+    }
+
     @Override
-    protected Set<String> getBlockingKeys(String attributeValue) {
+    protected Set<String> getBlockingKeys(String[] tokens) {
         final Set<String> keys = new HashSet<>();
-        for (String token : getTokens(attributeValue)) {
+        for (String token : tokens) {
             List<String> nGrams = getNGrams(nGramSize, token);
             if (nGrams.size() == 1) {
                 keys.add(nGrams.get(0));
@@ -61,36 +112,26 @@ public class ExtendedQGramsBlocking extends QGramsBlocking {
                     nGrams = nGrams.subList(0, MAX_Q_GRAMS);
                 }
 
+                //the largest combinations are generated first, so that they are retained when the limit is reached
+                int noOfCombinations = 0;
                 int minimumLength = (int) Math.max(1, Math.floor(nGrams.size() * threshold));
-                for (int i = minimumLength; i <= nGrams.size(); i++) {
-                    keys.addAll(getCombinationsFor(nGrams, i));
+                for (int i = nGrams.size(); minimumLength <= i && noOfCombinations < maxCombinations; i--) {
+                    noOfCombinations += addCombinations(nGrams, i, maxCombinations - noOfCombinations, keys);
                 }
             }
         }
         return keys;
     }
 
-    protected Set<String> getCombinationsFor(List<String> sublists, int sublistLength) {
-        if (sublistLength == 0 || sublists.size() < sublistLength) {
-            return new HashSet<>();
-        }
-
-        final List<String> remainingElements = new ArrayList<>(sublists);
-        final String lastSublist = remainingElements.remove(sublists.size() - 1);
-
-        final Set<String> combinationsExclusiveX = getCombinationsFor(remainingElements, sublistLength);
-        final Set<String> combinationsInclusiveX = getCombinationsFor(remainingElements, sublistLength - 1);
+    @Override
+    protected void getBlockingKeys(CharSequence attributeValue, LongConsumer keyHashConsumer) {
+        HashingTokenizer.getInstance().qGramCombinations(attributeValue, nGramSize, threshold, MAX_Q_GRAMS, maxCombinations, keyHashConsumer);
+    }
 
-        final Set<String> resultingCombinations = new HashSet<>();
-        resultingCombinations.addAll(combinationsExclusiveX);
-        if (combinationsInclusiveX.isEmpty()) {
-            resultingCombinations.add(lastSublist);
-        } else {
-            combinationsInclusiveX.stream().forEach((combination) -> {
-                resultingCombinations.add(combination + lastSublist);
-            });
-        }
-        return resultingCombinations;
+    protected Set<String> getCombinationsFor(List<String> sublists, int sublistLength) {
+        final Set<String> combinations = new HashSet<>();
+        addCombinations(sublists, sublistLength, Integer.MAX_VALUE, combinations);
+        return combinations;
     }
 
     @Override
@@ -174,6 +215,29 @@ public class ExtendedQGramsBlocking extends QGramsBlocking {
         }
     }
     
+    @Override
+    protected void initializeIndices(boolean ccER, TObjectIntMap<String>[] sClusters) {
+        super.initializeIndices(ccER, sClusters);
+        if (maximumBlockSize < Integer.MAX_VALUE && !compactIndexing) {
+            Log.warn("The maximum block size of " + getMethodName() + " applies only to compact indexing and is ignored!");
+        }
+        if (compactIndexD1 != null) {
+            compactIndexD1.setMaxPostings(maximumBlockSize);
+        }
+        if (compactIndexD2 != null) {
+            compactIndexD2.setMaxPostings(maximumBlockSize);
+        }
+    }
+
+    public void setMaxCombinations(int combinations) {
+        maxCombinations = Math.max(1, combinations);
+    }
+
+    //with compact indexing, the keys with more postings than the given size are not indexed any further and yield no block
+    public void setMaximumBlockSize(int blockSize) {
+        maximumBlockSize = Math.max(1, blockSize);
+    }
+
     @Override
     public void setNextRandomConfiguration() {
         super.setNextRandomConfiguration();
@@ -194,4 +258,9 @@ public class ExtendedQGramsBlocking extends QGramsBlocking {
         super.setNumberedRandomConfiguration(iterationNumber);
         threshold = (Double) randomThreshold.getNumberedRandom(iterationNumber);
     }
+
+    @Override
+    protected boolean supportsHashedKeys() {
+        return true;
+    }
 }
@@ -22,9 +22,6 @@ import gnu.trove.list.TIntList;
 import gnu.trove.set.TIntSet;
 import gnu.trove.set.hash.TIntHashSet;
 
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
 import org.apache.jena.atlas.json.JsonArray;
 import org.apache.jena.atlas.json.JsonObject;
 import org.scify.jedai.configuration.gridsearch.IntGridSearchConfiguration;
@@ -85,9 +82,7 @@ public class ExtendedSortedNeighborhoodBlocking extends SortedNeighborhoodBlocki
     
     @Override
     protected void parseIndex() {
-        final Set<String> blockingKeysSet = invertedIndexD1.keySet();
-        final String[] sortedTerms = blockingKeysSet.toArray(new String[blockingKeysSet.size()]);
-        Arrays.sort(sortedTerms);
+        final String[] sortedTerms = getSortedTerms();
 
         //slide window over the sorted list of blocking keys
         int upperLimit = sortedTerms.length - windowSize;
@@ -105,11 +100,7 @@ public class ExtendedSortedNeighborhoodBlocking extends SortedNeighborhoodBlocki
 
     @Override
     protected void parseIndices() {
-        final Set<String> blockingKeysSet = new HashSet<>();
-        blockingKeysSet.addAll(invertedIndexD1.keySet());
-        blockingKeysSet.addAll(invertedIndexD2.keySet());
-        final String[] sortedTerms = blockingKeysSet.toArray(new String[blockingKeysSet.size()]);
-        Arrays.sort(sortedTerms);
+        final String[] sortedTerms = getSortedTerms();
 
         //slide window over the sorted list of blocking keys
         int upperLimit = sortedTerms.length - windowSize;
@@ -35,9 +35,9 @@ public class ExtendedSuffixArraysBlocking extends SuffixArraysBlocking {
     }
 
     @Override
-    protected Set<String> getBlockingKeys(String attributeValue) {
+    protected Set<String> getBlockingKeys(String[] tokens) {
         final Set<String> suffixes = new HashSet<>();
-        for (String token : getTokens(attributeValue)) {
+        for (String token : tokens) {
             suffixes.addAll(getExtendedSuffixes(minimumSuffixLength, token));
         }
         return suffixes;
@@ -119,4 +119,9 @@ public class ExtendedSuffixArraysBlocking extends SuffixArraysBlocking {
                 return "invalid parameter id";
         }
     }
+
+    @Override
+    protected boolean isSubstringIndexing() {
+        return true;
+    }
 }
@@ -17,9 +17,13 @@ package org.scify.jedai.blockbuilding;
 
 import gnu.trove.map.TObjectIntMap;
 import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.BlockCollection;
 import org.scify.jedai.datamodel.EntityProfile;
 import org.scify.jedai.utilities.IDocumentation;
+import org.scify.jedai.utilities.datastructures.TokenStore;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import org.scify.jedai.configuration.IConfiguration;
 
@@ -34,10 +38,63 @@ public interface IBlockBuilding extends IConfiguration, IDocumentation {
 
     String CLUSTER_PREFIX = "#$!cl";
     
+    public default BlockCollection getBlockCollection(List<EntityProfile> profiles) {
+        return getBlockCollection(profiles, null);
+    }
+
+    public default BlockCollection getBlockCollection(List<EntityProfile> profilesD1, List<EntityProfile> profilesD2) {
+        return getBlockCollection(profilesD1, profilesD2, null);
+    }
+
+    //the methods that cannot build a block collection directly convert their list of blocks
+    public default BlockCollection getBlockCollection(List<EntityProfile> profilesD1, List<EntityProfile> profilesD2, TObjectIntMap<String>[] schemaClusters) {
+        final List<AbstractBlock> blocks = getBlocks(profilesD1, profilesD2, schemaClusters);
+        if (blocks == null) {
+            return null;
+        }
+        return new BlockCollection(blocks, profilesD2 != null);
+    }
+
     public List<AbstractBlock> getBlocks(List<EntityProfile> profiles);
 
     public List<AbstractBlock> getBlocks(List<EntityProfile> profilesD1, List<EntityProfile> profilesD2);
 
     public List<AbstractBlock> getBlocks(List<EntityProfile> profilesD1, List<EntityProfile> profilesD2, TObjectIntMap<String>[] schemaClusters);
+
+    public default List<AbstractBlock> getBlocks(Iterator<EntityProfile> profiles) {
+        return getBlocks(profiles, null);
+    }
+
+    public default List<AbstractBlock> getBlocks(Iterator<EntityProfile> profilesD1, Iterator<EntityProfile> profilesD2) {
+        return getBlocks(profilesD1, profilesD2, null);
+    }
+
+    //the methods that cannot index the profiles as they are read materialize the iterators into lists
+    public default List<AbstractBlock> getBlocks(Iterator<EntityProfile> profilesD1, Iterator<EntityProfile> profilesD2, TObjectIntMap<String>[] schemaClusters) {
+        List<EntityProfile> profilesListD1 = null;
+        if (profilesD1 != null) {
+            profilesListD1 = new ArrayList<>();
+            profilesD1.forEachRemaining(profilesListD1::add);
+        }
+
+        List<EntityProfile> profilesListD2 = null;
+        if (profilesD2 != null) {
+            profilesListD2 = new ArrayList<>();
+            profilesD2.forEachRemaining(profilesListD2::add);
+        }
+        return getBlocks(profilesListD1, profilesListD2, schemaClusters);
+    }
+    
+    //a no-op for the methods that keep no data between calls
+    public default void resetCache() {
+    }
+    
+    //a no-op for the methods that keep no data between calls
+    public default void setCaching(boolean cache) {
+    }
+    
+    //a no-op for the methods that cannot use a token store
+    public default void setTokenStore(TokenStore tokenStore) {
+    }
     
 }
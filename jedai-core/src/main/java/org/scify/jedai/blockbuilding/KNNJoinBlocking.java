@@ -0,0 +1,451 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package org.scify.jedai.blockbuilding;
+
+import org.scify.jedai.datamodel.EntityProfile;
+import org.scify.jedai.textmodels.CharacterNGramsWithGlobalWeights;
+import org.scify.jedai.textmodels.ITextModel;
+import org.scify.jedai.textmodels.TokenNGramsWithGlobalWeights;
+import org.scify.jedai.utilities.enumerations.RepresentationModel;
+import org.scify.jedai.utilities.enumerations.SimilarityMetric;
+
+import com.esotericsoftware.minlog.Log;
+
+import gnu.trove.impl.Constants;
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.jena.atlas.json.JsonArray;
+import org.apache.jena.atlas.json.JsonObject;
+import org.scify.jedai.configuration.gridsearch.IntGridSearchConfiguration;
+import org.scify.jedai.configuration.randomsearch.IntRandomSearchConfiguration;
+
+/**
+ *
+ * @author gap2
+ */
+public class KNNJoinBlocking extends AbstractSimilarityJoin {
+
+    protected int noOfNeighbors;
+    protected int noOfTopEntities;
+
+    protected double[] bounds;
+    protected double[] distinctBounds;
+    protected double[] topScores;
+    protected double[][] vectorWeights;
+
+    protected int[] stamps;
+    protected int[] topEntities;
+    protected int[][] vectorTokens;
+
+    protected long[] sortingKeys;
+
+    protected final IntGridSearchConfiguration gridNeighbors;
+    protected final IntRandomSearchConfiguration randomNeighbors;
+
+    public KNNJoinBlocking() {
+        this(5);
+    }
+
+    public KNNJoinBlocking(int k) {
+        this(k, RepresentationModel.TOKEN_UNIGRAMS_TF_IDF);
+    }
+
+    public KNNJoinBlocking(int k, RepresentationModel model) {
+        super(model, SimilarityMetric.COSINE_SIMILARITY);
+        if (!isWeightedModel(model)) {
+            Log.error(getMethodName() + " supports only the TF-IDF bag representation models!");
+            throw new IllegalArgumentException("Unsupported representation model : " + model);
+        }
+        noOfNeighbors = Math.max(1, k);
+
+        gridNeighbors = new IntGridSearchConfiguration(10, 1, 1);
+        randomNeighbors = new IntRandomSearchConfiguration(10, 1);
+    }
+
+    //in Clean-Clean ER, every entity retrieves its nearest neighbors from the other dataset, in Dirty ER from the entire one;
+    //the candidate pairs comprise the union of all neighborhoods
+    @Override
+    protected void applyJoin(List<EntityProfile> profilesD1, List<EntityProfile> profilesD2) {
+        buildVectors(profilesD1, profilesD2);
+
+        //the buffers of the queries are allocated once, for the longest vector
+        int maxTokens = 0;
+        for (int[] tokens : vectorTokens) {
+            maxTokens = Math.max(maxTokens, tokens.length);
+        }
+        bounds = new double[maxTokens];
+        distinctBounds = new double[maxTokens];
+        sortingKeys = new long[maxTokens];
+
+        stamps = new int[noOfEntities];
+        topEntities = new int[noOfNeighbors];
+        topScores = new double[noOfNeighbors];
+        final TLongSet pairs = new TLongHashSet();
+        if (cleanCleanER) {
+            final TokenIndex indexD1 = new TokenIndex(0, datasetLimit);
+            final TokenIndex indexD2 = new TokenIndex(datasetLimit, noOfEntities);
+            for (int i = 0; i < noOfEntities; i++) {
+                addNeighbors(i, i < datasetLimit ? indexD2 : indexD1, pairs);
+            }
+        } else {
+            final TokenIndex index = new TokenIndex(0, noOfEntities);
+            for (int i = 0; i < noOfEntities; i++) {
+                addNeighbors(i, index, pairs);
+            }
+        }
+
+        bounds = null;
+        distinctBounds = null;
+        sortingKeys = null;
+        stamps = null;
+        topEntities = null;
+        topScores = null;
+        vectorTokens = null;
+        vectorWeights = null;
+    }
+
+    private void addNeighbors(int entityId, TokenIndex index, TLongSet pairs) {
+        getNearestNeighbors(entityId, index);
+        for (int i = 0; i < noOfTopEntities; i++) {
+            int entityId1 = Math.min(entityId, topEntities[i]);
+            int entityId2 = Math.max(entityId, topEntities[i]);
+            if (pairs.add((((long) entityId1) << 32) | entityId2)) {
+                addPair(entityId1, entityId2);
+            }
+        }
+    }
+
+    //the new candidate is inserted into the top-k list, which is sorted in descending order of similarity
+    private void addTopEntity(int entityId, double similarity) {
+        int position = noOfTopEntities < noOfNeighbors ? noOfTopEntities++ : noOfNeighbors - 1;
+        while (0 < position && topScores[position - 1] < similarity) {
+            topEntities[position] = topEntities[position - 1];
+            topScores[position] = topScores[position - 1];
+            position--;
+        }
+        topEntities[position] = entityId;
+        topScores[position] = similarity;
+    }
+
+    //every entity is transformed into its TF-IDF vector, normalized to unit length and sorted by token id,
+    //so that its dot product with any other vector equals their cosine similarity
+    protected void buildVectors(List<EntityProfile> profilesD1, List<EntityProfile> profilesD2) {
+        final TObjectIntMap<String> tokenIds = new TObjectIntHashMap<>(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, -1);
+        vectorTokens = new int[noOfEntities][];
+        vectorWeights = new double[noOfEntities][];
+        addVectors(getModels(DATASET_1, profilesD1), 0, tokenIds);
+        if (cleanCleanER) {
+            addVectors(getModels(DATASET_2, profilesD2), datasetLimit, tokenIds);
+        }
+    }
+
+    private void addVectors(ITextModel[] models, int idOffset, TObjectIntMap<String> tokenIds) {
+        for (int i = 0; i < models.length; i++) {
+            final Set<String> signatures = models[i].getSignatures();
+            final long[] tokens = new long[signatures.size()];
+            final double[] weights = new double[signatures.size()];
+
+            int counter = 0;
+            for (String signature : signatures) {
+                int tokenId = tokenIds.get(signature);
+                if (tokenId < 0) {
+                    tokenId = tokenIds.size();
+                    tokenIds.put(signature, tokenId);
+                }
+                weights[counter] = getWeight(models[i], signature);
+                tokens[counter] = (((long) tokenId) << 32) | counter;
+                counter++;
+            }
+            Arrays.sort(tokens);
+
+            double magnitude = 0;
+            for (double weight : weights) {
+                magnitude += weight * weight;
+            }
+            magnitude = Math.sqrt(magnitude);
+
+            //the tokens with zero weight contribute to no similarity and are discarded
+            int size = 0;
+            for (long token : tokens) {
+                if (weights[(int) token] != 0) {
+                    size++;
+                }
+            }
+
+            counter = 0;
+            vectorTokens[idOffset + i] = new int[size];
+            vectorWeights[idOffset + i] = new double[size];
+            for (long token : tokens) {
+                double weight = weights[(int) token];
+                if (weight != 0) {
+                    vectorTokens[idOffset + i][counter] = (int) (token >>> 32);
+                    vectorWeights[idOffset + i][counter] = weight / magnitude;
+                    counter++;
+                }
+            }
+        }
+    }
+
+    //both vectors are sorted by token id, so their dot product is computed through a merge
+    private double getCosineSimilarity(int entityId1, int entityId2) {
+        final int[] tokens1 = vectorTokens[entityId1];
+        final int[] tokens2 = vectorTokens[entityId2];
+        final double[] weights1 = vectorWeights[entityId1];
+        final double[] weights2 = vectorWeights[entityId2];
+
+        int i = 0;
+        int j = 0;
+        double similarity = 0;
+        while (i < tokens1.length && j < tokens2.length) {
+            if (tokens1[i] < tokens2[j]) {
+                i++;
+            } else if (tokens2[j] < tokens1[i]) {
+                j++;
+            } else {
+                similarity += weights1[i] * weights2[j];
+                i++;
+                j++;
+            }
+        }
+        return similarity;
+    }
+
+    @Override
+    public String getMethodConfiguration() {
+        return getParameterName(0) + "=" + noOfNeighbors + ",\t"
+                + getParameterName(1) + "=" + representationModel;
+    }
+
+    @Override
+    public String getMethodInfo() {
+        return getMethodName() + ": it pairs every entity with the k entities that have the highest cosine similarity with it, based on their TF-IDF vectors.\n"
+                + "The candidates are retrieved from an inverted index, which is traversed until no unseen entity can enter the top-k list.";
+    }
+
+    @Override
+    public String getMethodName() {
+        return "kNN-Join Blocking";
+    }
+
+    @Override
+    public String getMethodParameters() {
+        return getMethodName() + " involves two parameters:\n"
+                + "1)" + getParameterDescription(0) + ".\n"
+                + "2)" + getParameterDescription(1) + ".";
+    }
+
+    //the tokens of the query are traversed in descending order of their maximum contribution to the similarity;
+    //once the sum of the remaining contributions drops to the k-th highest similarity, no new candidate is considered,
+    //as it shares with the query only the remaining tokens
+    private void getNearestNeighbors(int entityId, TokenIndex index) {
+        noOfTopEntities = 0;
+
+        final int[] tokens = vectorTokens[entityId];
+        final double[] weights = vectorWeights[entityId];
+        double remainingBound = 0;
+        for (int i = 0; i < tokens.length; i++) {
+            bounds[i] = Math.abs(weights[i]) * index.getMaxWeight(tokens[i]);
+            distinctBounds[i] = bounds[i];
+            remainingBound += bounds[i];
+        }
+        sortTokens(tokens.length);
+
+        //a stamp marks the candidates that have already been scored for the current query
+        final int stamp = entityId + 1;
+        stamps[entityId] = stamp;
+        for (int k = 0; k < tokens.length; k++) {
+            int i = (int) sortingKeys[k];
+            if (noOfTopEntities == noOfNeighbors && remainingBound <= topScores[noOfNeighbors - 1]) {
+                break;
+            }
+
+            for (int j = index.offsets[tokens[i]]; j < index.offsets[tokens[i] + 1]; j++) {
+                int candidateId = index.entities[j];
+                if (stamps[candidateId] == stamp) {
+                    continue;
+                }
+
+                stamps[candidateId] = stamp;
+                double similarity = getCosineSimilarity(entityId, candidateId);
+                if (0 < similarity && (noOfTopEntities < noOfNeighbors || topScores[noOfNeighbors - 1] < similarity)) {
+                    addTopEntity(candidateId, similarity);
+                }
+            }
+            remainingBound -= bounds[i];
+        }
+    }
+
+    @Override
+    public int getNumberOfGridConfigurations() {
+        return gridNeighbors.getNumberOfConfigurations();
+    }
+
+    @Override
+    public JsonArray getParameterConfiguration() {
+        final JsonObject obj1 = new JsonObject();
+        obj1.put("class", "java.lang.Integer");
+        obj1.put("name", getParameterName(0));
+        obj1.put("defaultValue", "5");
+        obj1.put("minValue", "1");
+        obj1.put("maxValue", "10");
+        obj1.put("stepValue", "1");
+        obj1.put("description", getParameterDescription(0));
+
+        final JsonObject obj2 = new JsonObject();
+        obj2.put("class", "org.scify.jedai.utilities.enumerations.RepresentationModel");
+        obj2.put("name", getParameterName(1));
+        obj2.put("defaultValue", "org.scify.jedai.utilities.enumerations.RepresentationModel.TOKEN_UNIGRAMS_TF_IDF");
+        obj2.put("minValue", "-");
+        obj2.put("maxValue", "-");
+        obj2.put("stepValue", "-");
+        obj2.put("description", getParameterDescription(1));
+
+        final JsonArray array = new JsonArray();
+        array.add(obj1);
+        array.add(obj2);
+        return array;
+    }
+
+    @Override
+    public String getParameterDescription(int parameterId) {
+        switch (parameterId) {
+            case 0:
+                return "The " + getParameterName(0) + " determines the maximum number of most similar entities that are paired with every entity.";
+            case 1:
+                return "The " + getParameterName(1) + " transforms every entity profile into the TF-IDF vector that is joined.";
+            default:
+                return "invalid parameter id";
+        }
+    }
+
+    @Override
+    public String getParameterName(int parameterId) {
+        switch (parameterId) {
+            case 0:
+                return "Number of Neighbors";
+            case 1:
+                return "Representation Model";
+            default:
+                return "invalid parameter id";
+        }
+    }
+
+    private double getWeight(ITextModel model, String signature) {
+        if (model instanceof TokenNGramsWithGlobalWeights) {
+            return ((TokenNGramsWithGlobalWeights) model).getTfIdfWeight(signature);
+        }
+        return ((CharacterNGramsWithGlobalWeights) model).getTfIdfWeight(signature);
+    }
+
+    private boolean isWeightedModel(RepresentationModel model) {
+        switch (model) {
+            case CHARACTER_BIGRAMS_TF_IDF:
+            case CHARACTER_TRIGRAMS_TF_IDF:
+            case CHARACTER_FOURGRAMS_TF_IDF:
+            case TOKEN_UNIGRAMS_TF_IDF:
+            case TOKEN_BIGRAMS_TF_IDF:
+            case TOKEN_TRIGRAMS_TF_IDF:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public void setNextRandomConfiguration() {
+        noOfNeighbors = (Integer) randomNeighbors.getNextRandomValue();
+    }
+
+    @Override
+    public void setNumberedGridConfiguration(int iterationNumber) {
+        noOfNeighbors = (Integer) gridNeighbors.getNumberedValue(iterationNumber);
+    }
+
+    @Override
+    public void setNumberedRandomConfiguration(int iterationNumber) {
+        noOfNeighbors = (Integer) randomNeighbors.getNumberedRandom(iterationNumber);
+    }
+
+    //the tokens of the query are sorted in descending order of their bounds and in increasing position for equal bounds
+    //through a primitive sort of the pairs (rank, position) packed into longs; the rank of a bound is its position among
+    //the distinct bounds in descending order
+    private void sortTokens(int noOfTokens) {
+        Arrays.sort(distinctBounds, 0, noOfTokens);
+        int noOfDistinctBounds = 0;
+        for (int i = 0; i < noOfTokens; i++) {
+            if (i == 0 || distinctBounds[noOfDistinctBounds - 1] != distinctBounds[i]) {
+                distinctBounds[noOfDistinctBounds++] = distinctBounds[i];
+            }
+        }
+
+        for (int i = 0; i < noOfTokens; i++) {
+            long rank = noOfDistinctBounds - 1 - Arrays.binarySearch(distinctBounds, 0, noOfDistinctBounds, bounds[i]);
+            sortingKeys[i] = (rank << 32) | i;
+        }
+        Arrays.sort(sortingKeys, 0, noOfTokens);
+    }
+
+    //the postings of every token are stored contiguously, along with the maximum absolute weight of the token in the indexed entities
+    private class TokenIndex {
+
+        private final double[] maxWeights;
+        private final int[] entities;
+        private final int[] offsets;
+
+        private TokenIndex(int firstEntity, int lastEntity) {
+            //the index covers the tokens of all entities, as it is queried by the other dataset, too
+            int noOfTokens = 0;
+            for (int[] tokens : vectorTokens) {
+                for (int token : tokens) {
+                    noOfTokens = Math.max(noOfTokens, token + 1);
+                }
+            }
+
+            maxWeights = new double[noOfTokens];
+            offsets = new int[noOfTokens + 1];
+            for (int i = firstEntity; i < lastEntity; i++) {
+                for (int j = 0; j < vectorTokens[i].length; j++) {
+                    offsets[vectorTokens[i][j] + 1]++;
+                    maxWeights[vectorTokens[i][j]] = Math.max(maxWeights[vectorTokens[i][j]], Math.abs(vectorWeights[i][j]));
+                }
+            }
+            for (int i = 0; i < noOfTokens; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+
+            final int[] positions = Arrays.copyOf(offsets, noOfTokens);
+            entities = new int[offsets[noOfTokens]];
+            for (int i = firstEntity; i < lastEntity; i++) {
+                for (int token : vectorTokens[i]) {
+                    entities[positions[token]++] = i;
+                }
+            }
+        }
+
+        private double getMaxWeight(int tokenId) {
+            return maxWeights[tokenId];
+        }
+    }
+}
@@ -16,7 +16,6 @@
 package org.scify.jedai.blockbuilding;
 
 import info.debatty.java.lsh.MinHash;
-import java.util.HashSet;
 import java.util.Set;
 import org.scify.jedai.textmodels.ITextModel;
 import org.scify.jedai.textmodels.MinHashUnigrams;
@@ -41,22 +40,8 @@ public class LSHMinHashBlocking extends LSHSuperBitBlocking {
     }
 
     @Override
-    protected Set<String> getBlockingKeys(int datasetId, int profileId) {
-        final MinHashUnigrams model = (MinHashUnigrams) models[datasetId][profileId];
-
-        final Set<Integer> termIds = model.getTermIds();
-        int[] signature = minhash.signature(termIds);
-
-        final Set<String> allKeys = new HashSet<>();
-        for (int i = 0; i < signature.length - bandSize; i += bandSize) {
-            final StringBuilder band = new StringBuilder(Integer.toString(i));
-            for (int j = 0; j < bandSize; j++) {
-                band.append("-").append(signature[i + j]);
-            }
-            band.append("BND").append(i);
-            allKeys.add(band.toString());
-        }
-        return allKeys;
+    protected long getBandKey(long[] signature, int bandOffset) {
+        return mixBandKey(bandOffset, getValuesHash(signature, bandOffset, -1));
     }
 
     @Override
@@ -64,6 +49,20 @@ public class LSHMinHashBlocking extends LSHSuperBitBlocking {
         return new MinHashUnigrams(instanceName);
     }
 
+    @Override
+    protected long[] getSignature(int datasetId, int profileId) {
+        final MinHashUnigrams model = (MinHashUnigrams) models[datasetId][profileId];
+
+        final Set<Integer> termIds = model.getTermIds();
+        int[] signatures = minhash.signature(termIds);
+
+        final long[] signature = new long[signatures.length];
+        for (int i = 0; i < signatures.length; i++) {
+            signature[i] = signatures[i] & 0xFFFFFFFFL;
+        }
+        return signature;
+    }
+
     @Override
     protected void initializeLshFunctions() {
         System.out.println("Dimensionality\t:\t" + MinHashUnigrams.getCorpusDimensionality());
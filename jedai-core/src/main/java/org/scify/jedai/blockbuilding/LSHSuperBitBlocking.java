@@ -17,20 +17,31 @@ package org.scify.jedai.blockbuilding;
 
 import gnu.trove.list.TIntList;
 import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TObjectIntMap;
 import info.debatty.java.lsh.SuperBit;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.apache.jena.atlas.json.JsonArray;
 import org.apache.jena.atlas.json.JsonObject;
 import org.scify.jedai.configuration.gridsearch.IntGridSearchConfiguration;
 import org.scify.jedai.configuration.randomsearch.IntRandomSearchConfiguration;
 import org.scify.jedai.datamodel.AbstractBlock;
 import org.scify.jedai.datamodel.Attribute;
+import org.scify.jedai.datamodel.BilateralBlock;
+import org.scify.jedai.datamodel.BlockCollection;
 import org.scify.jedai.datamodel.EntityProfile;
+import org.scify.jedai.datamodel.UnilateralBlock;
 import org.scify.jedai.textmodels.ITextModel;
 import org.scify.jedai.textmodels.SuperBitUnigrams;
+import org.scify.jedai.utilities.HashingTokenizer;
+import org.scify.jedai.utilities.RangeExecutor;
+import org.scify.jedai.utilities.datastructures.BlockingKeyDictionary;
+import org.scify.jedai.utilities.datastructures.CompactInvertedIndex;
+import org.scify.jedai.utilities.datastructures.TokenStore;
 
 /**
  *
@@ -38,7 +49,10 @@ import org.scify.jedai.textmodels.SuperBitUnigrams;
  */
 public class LSHSuperBitBlocking extends AbstractBlockBuilding {
 
-    protected boolean d1Indexed;
+    private final static int CHUNK_SIZE = 4096;
+    protected final static long HASH_BASE = 0x100000001B3L;
+
+    protected boolean multiProbing;
 
     protected int bandSize;
     protected int bandsNumber;
@@ -49,7 +63,10 @@ public class LSHSuperBitBlocking extends AbstractBlockBuilding {
     protected final IntRandomSearchConfiguration randomBndSize;
 
     protected SuperBit superbit;
+    protected BlockingKeyDictionary probeDictionary;
+    protected CompactInvertedIndex probeIndex;
     protected ITextModel[][] models;
+    protected TIntList bucketProbeIds;
 
     public LSHSuperBitBlocking() {
         this(5, 30);
@@ -60,6 +77,7 @@ public class LSHSuperBitBlocking extends AbstractBlockBuilding {
 
         bandSize = bSize;
         bandsNumber = bandsNo;
+        multiProbing = false;
 
         gridBndNumber = new IntGridSearchConfiguration(100, 10, 10);
         gridBndSize = new IntGridSearchConfiguration(10, 2, 1);
@@ -67,13 +85,39 @@ public class LSHSuperBitBlocking extends AbstractBlockBuilding {
         randomBndSize = new IntRandomSearchConfiguration(10, 2);
     }
 
+    //the bands of every entity are hashed into long keys and indexed in the compact inverted index, regardless of its settings
+    @Override
+    protected void buildBlocks() {
+        resetModel();
+        models = new ITextModel[2][];
+        models[DATASET_1] = buildModels(entityProfilesD1);
+        if (cleanCleanER) {
+            models[DATASET_2] = buildModels(entityProfilesD2);
+        }
+        initializeLshFunctions();
+
+        indexEntities(compactIndexD1, DATASET_1, (int) noOfEntitiesD1);
+        if (cleanCleanER) {
+            indexEntities(compactIndexD2, DATASET_2, (int) noOfEntitiesD2);
+        }
+        finalizeCompactIndices();
+        if (multiProbing) {
+            probeIndex.finalizeIndex(probeDictionary.getNoOfKeys());
+        }
+    }
+
     protected ITextModel[] buildModels(List<EntityProfile> profiles) {
         int counter = 0;
+        final TokenStore store = getTokenStore();
         final ITextModel[] currentModels = new ITextModel[profiles.size()];
         for (EntityProfile profile : profiles) {
             currentModels[counter] = getModel(profile.getEntityUrl());
-            for (Attribute attribute : profile.getAttributes()) {
-                currentModels[counter].updateModel(attribute.getValue());
+            if (store == null) {
+                for (Attribute attribute : profile.getAttributes()) {
+                    currentModels[counter].updateModel(attribute.getValue());
+                }
+            } else {
+                store.updateModel(currentModels[counter], profile);
             }
             currentModels[counter].finalizeModel();
             counter++;
@@ -82,17 +126,9 @@ public class LSHSuperBitBlocking extends AbstractBlockBuilding {
     }
 
     @Override
-    public List<AbstractBlock> getBlocks(List<EntityProfile> profilesD1, List<EntityProfile> profilesD2) {
-        resetModel();
-        models = new ITextModel[2][];
-        models[DATASET_1] = buildModels(profilesD1);
-        if (profilesD2 != null) {
-            models[DATASET_2] = buildModels(profilesD2);
-        }
-
-        d1Indexed = false;
-        initializeLshFunctions();
-        return super.getBlocks(profilesD1, profilesD2);
+    public List<AbstractBlock> getBlocks(Iterator<EntityProfile> profilesD1, Iterator<EntityProfile> profilesD2, TObjectIntMap<String>[] sClusters) {
+        //the text models require the global statistics of the entire dataset, so the profiles have to be materialized
+        return getBlocks(toList(profilesD1), toList(profilesD2), sClusters);
     }
 
     @Override
@@ -100,27 +136,84 @@ public class LSHSuperBitBlocking extends AbstractBlockBuilding {
         throw new UnsupportedOperationException("Not supported by LSH, because it uses global information, not local (i.e., not a mere attribute value).");
     }
 
-    protected Set<String> getBlockingKeys(int datasetId, int profileId) {
+    //the band keys of every signature are packed into a long as (band offset, band bits), which is exact for up to 32 bits per band
+    protected long getBandKey(long[] signature, int bandOffset) {
+        if (Integer.SIZE < bandSize) {
+            return mixBandKey(bandOffset, getValuesHash(signature, bandOffset, -1));
+        }
+
+        long bits = 0;
+        for (int j = 0; j < bandSize; j++) {
+            bits = bits << 1 | signature[bandOffset + j];
+        }
+        return ((long) bandOffset) << 32 | bits;
+    }
+
+    //with multi-probing, the key of every band is followed by its probe keys
+    protected long[] getBandKeys(int datasetId, int profileId) {
+        final long[] signature = getSignature(datasetId, profileId);
+        final int keysPerBand = multiProbing ? bandSize + 1 : 1;
+
+        int counter = 0;
+        final long[] bandKeys = new long[getNoOfBands(signature.length) * keysPerBand];
+        for (int i = 0; i < signature.length - bandSize; i += bandSize) {
+            bandKeys[counter++] = getBandKey(signature, i);
+            if (multiProbing) {
+                for (int j = 0; j < bandSize; j++) {
+                    bandKeys[counter++] = getProbeKey(signature, i, j);
+                }
+            }
+        }
+        return bandKeys;
+    }
+
+    //the last band is not considered, in line with the original implementation of the string band keys
+    protected int getNoOfBands(int signatureLength) {
+        return Math.max(0, (signatureLength - 1) / bandSize);
+    }
+
+    //two bands at Hamming distance 1 share exactly one probe key, i.e., the one that masks the position they differ in
+    protected long getProbeKey(long[] signature, int bandOffset, int maskedPosition) {
+        return mixBandKey(bandOffset, getValuesHash(signature, bandOffset, maskedPosition) * HASH_BASE + maskedPosition);
+    }
+
+    //the postings of the given bucket together with the postings of all buckets at Hamming distance 1 from it
+    protected int[] getProbedPostings(CompactInvertedIndex index, int keyId) {
+        final TIntList postings = new TIntArrayList(index.getPostings(keyId));
+        for (int j = 0; j < bandSize; j++) {
+            for (int neighborId : probeIndex.getPostings(bucketProbeIds.get(keyId * bandSize + j))) {
+                if (neighborId != keyId) {
+                    postings.addAll(index.getPostings(neighborId));
+                }
+            }
+        }
+
+        //every entity belongs to a single bucket per band, so there are no duplicates
+        postings.sort();
+        return postings.toArray();
+    }
+
+    protected long[] getSignature(int datasetId, int profileId) {
         final SuperBitUnigrams model = (SuperBitUnigrams) models[datasetId][profileId];
         boolean[] signatures = superbit.signature(model.getVector());
 
-        final Set<String> allKeys = new HashSet<>();
-        for (int i = 0; i < signatures.length - bandSize; i += bandSize) {
-            final StringBuilder band = new StringBuilder(Integer.toString(i));
-            for (int j = 0; j < bandSize; j++) {
-                band.append("-");
-                if (signatures[i + j]) {
-                    band.append("T");
-                } else {
-                    band.append("F");
-                }
+        final long[] signature = new long[signatures.length];
+        for (int i = 0; i < signatures.length; i++) {
+            signature[i] = signatures[i] ? 1 : 0;
+        }
+        return signature;
+    }
+
+    protected long getValuesHash(long[] signature, int bandOffset, int maskedPosition) {
+        long hash = 0;
+        for (int j = 0; j < bandSize; j++) {
+            if (j != maskedPosition) {
+                hash = hash * HASH_BASE + signature[bandOffset + j] + 1;
             }
-            band.append("BND").append(i);
-            allKeys.add(band.toString());
         }
-        return allKeys;
+        return hash;
     }
-    
+
     protected ITextModel getModel(String instanceName) {
         return new SuperBitUnigrams(instanceName);
     }
@@ -130,32 +223,148 @@ public class LSHSuperBitBlocking extends AbstractBlockBuilding {
         return gridBndSize.getNumberOfConfigurations() * gridBndNumber.getNumberOfConfigurations();
     }
 
-    @Override
-    protected void indexEntities(Map<String, TIntList> index, List<EntityProfile> entities) {
-        int datasetId = d1Indexed ? DATASET_2 : DATASET_1;
-        d1Indexed = true;
+    protected void indexBandKeys(CompactInvertedIndex index, long[] bandKeys, int profileId) {
+        final int keysPerBand = multiProbing ? bandSize + 1 : 1;
+        for (int i = 0; i < bandKeys.length; i += keysPerBand) {
+            int noOfKeys = keyDictionary.getNoOfKeys();
+            int keyId = keyDictionary.getKeyId(bandKeys[i]);
+            index.addPosting(keyId, profileId);
+
+            //the probe keys of every bucket are stored once, when it is first encountered, rather than once per entity
+            if (multiProbing && keyId == noOfKeys) {
+                for (int j = 1; j < keysPerBand; j++) {
+                    int probeId = probeDictionary.getKeyId(bandKeys[i + j]);
+                    probeIndex.addPosting(probeId, keyId);
+                    bucketProbeIds.add(probeId);
+                }
+            }
+        }
+    }
 
-        for (int profileId = 0; profileId < entities.size(); profileId++) {
-            for (String key : getBlockingKeys(datasetId, profileId)) {
-                TIntList entityList = index.get(key);
-                if (entityList == null) {
-                    entityList = new TIntArrayList();
-                    index.put(key, entityList);
+    protected void indexEntities(CompactInvertedIndex index, int datasetId, int noOfEntities) {
+        if (!RangeExecutor.isParallel(noOfEntities, noOfThreads)) {
+            for (int profileId = 0; profileId < noOfEntities; profileId++) {
+                indexBandKeys(index, getBandKeys(datasetId, profileId), profileId);
+            }
+            return;
+        }
+
+        //the signatures of every chunk of entities are computed in parallel, but their bands are indexed sequentially,
+        //so that the key ids and the posting lists are identical to those of the sequential execution
+        final ExecutorService executor = Executors.newFixedThreadPool(noOfThreads);
+        try {
+            for (int chunkStart = 0; chunkStart < noOfEntities; chunkStart += CHUNK_SIZE) {
+                final int chunkEnd = Math.min(noOfEntities, chunkStart + CHUNK_SIZE);
+                final List<long[][]> partialKeys = RangeExecutor.processRanges(executor, chunkStart, chunkEnd, noOfThreads, "computation of LSH signatures", (rangeStart, rangeEnd) -> {
+                    final long[][] bandKeys = new long[rangeEnd - rangeStart][];
+                    for (int profileId = rangeStart; profileId < rangeEnd; profileId++) {
+                        bandKeys[profileId - rangeStart] = getBandKeys(datasetId, profileId);
+                    }
+                    return bandKeys;
+                });
+
+                int profileId = chunkStart;
+                for (long[][] rangeKeys : partialKeys) {
+                    for (long[] bandKeys : rangeKeys) {
+                        indexBandKeys(index, bandKeys, profileId++);
+                    }
                 }
-                entityList.add(profileId);
             }
+        } finally {
+            executor.shutdown();
         }
     }
-    
+
+    @Override
+    protected void initializeIndices(boolean ccER, TObjectIntMap<String>[] sClusters) {
+        super.initializeIndices(ccER, sClusters);
+        invertedIndexD1 = null;
+        invertedIndexD2 = null;
+        keyDictionary = new BlockingKeyDictionary();
+        compactIndexD1 = new CompactInvertedIndex();
+        compactIndexD2 = cleanCleanER ? new CompactInvertedIndex() : null;
+
+        bucketProbeIds = null;
+        probeDictionary = null;
+        probeIndex = null;
+        if (multiProbing) {
+            bucketProbeIds = new TIntArrayList();
+            probeDictionary = new BlockingKeyDictionary();
+            probeIndex = new CompactInvertedIndex();
+        }
+    }
+
     protected void initializeLshFunctions() {
         System.out.println("Dimensionality\t:\t" + SuperBitUnigrams.getCorpusDimensionality());
         superbit = new SuperBit(SuperBitUnigrams.getCorpusDimensionality(), bandsNumber, bandSize);
     }
     
+    //mixes the given band offset and the hash of its values, so that equal values in different bands yield different keys
+    protected static long mixBandKey(int bandOffset, long valuesHash) {
+        return HashingTokenizer.mix(valuesHash * HASH_BASE + bandOffset);
+    }
+
+    @Override
+    protected void parseCompactIndex() {
+        if (!multiProbing) {
+            super.parseCompactIndex();
+            return;
+        }
+
+        for (int keyId = 0; keyId < compactIndexD1.getNoOfKeys(); keyId++) {
+            final int[] entityIds = getProbedPostings(compactIndexD1, keyId);
+            if (1 < entityIds.length) {
+                blocks.add(new UnilateralBlock(entityIds));
+            }
+        }
+    }
+
+    @Override
+    protected void parseCompactIndices() {
+        if (!multiProbing) {
+            super.parseCompactIndices();
+            return;
+        }
+
+        for (int keyId = 0; keyId < compactIndexD1.getNoOfKeys(); keyId++) {
+            final int[] entityIdsD1 = getProbedPostings(compactIndexD1, keyId);
+            if (0 < entityIdsD1.length) {
+                final int[] entityIdsD2 = getProbedPostings(compactIndexD2, keyId);
+                if (0 < entityIdsD2.length) {
+                    blocks.add(new BilateralBlock(entityIdsD1, entityIdsD2));
+                }
+            }
+        }
+    }
+
+    @Override
+    public BlockCollection readBlockCollection() {
+        if (multiProbing) {
+            return new BlockCollection(readBlocks(), cleanCleanER);
+        }
+        return super.readBlockCollection();
+    }
+
     protected void resetModel() {
         SuperBitUnigrams.resetGlobalValues(DATASET_1);
     }
 
+    protected List<EntityProfile> toList(Iterator<EntityProfile> profiles) {
+        if (profiles == null) {
+            return null;
+        }
+
+        final List<EntityProfile> profilesList = new ArrayList<>();
+        profiles.forEachRemaining(profilesList::add);
+        return profilesList;
+    }
+
+    //every bucket is merged with the buckets whose band differs in a single position, i.e., it probes its neighbors;
+    //this raises recall without additional bands, thus requiring fewer hash tables for the same effectiveness
+    public void setMultiProbing(boolean probing) {
+        multiProbing = probing;
+    }
+
     @Override
     public void setNextRandomConfiguration() {
         bandSize = (Integer) randomBndSize.getNextRandomValue();
@@ -249,4 +458,30 @@ public class LSHSuperBitBlocking extends AbstractBlockBuilding {
                 return "invalid parameter id";
         }
     }
+
+    @Override
+    protected boolean supportsCompactIndexing() {
+        return false;
+    }
+
+    @Override
+    protected boolean supportsExternalIndexing() {
+        return false;
+    }
+
+    @Override
+    protected boolean supportsIncrementalBlocking() {
+        return false;
+    }
+
+    @Override
+    protected boolean supportsSemiJoinIndexing() {
+        return false;
+    }
+
+    //the token store is used only for building the text models
+    @Override
+    protected boolean supportsTokenStore() {
+        return true;
+    }
 }
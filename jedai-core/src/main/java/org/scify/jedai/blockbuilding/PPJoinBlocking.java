@@ -0,0 +1,327 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package org.scify.jedai.blockbuilding;
+
+import org.scify.jedai.datamodel.EntityProfile;
+import org.scify.jedai.textmodels.ITextModel;
+import org.scify.jedai.utilities.enumerations.RepresentationModel;
+import org.scify.jedai.utilities.enumerations.SimilarityMetric;
+
+import gnu.trove.impl.Constants;
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.jena.atlas.json.JsonArray;
+import org.apache.jena.atlas.json.JsonObject;
+import org.scify.jedai.configuration.gridsearch.DblGridSearchConfiguration;
+import org.scify.jedai.configuration.randomsearch.DblRandomSearchConfiguration;
+
+/**
+ *
+ * @author gap2
+ */
+public class PPJoinBlocking extends AbstractSimilarityJoin {
+
+    private final static double EPSILON = 1e-9;
+    private final static int PRUNED = Integer.MIN_VALUE;
+
+    protected double threshold;
+
+    protected int[][] tokenSets;
+    protected TIntList[] postingEntities;
+    protected TIntList[] postingPositions;
+
+    protected final DblGridSearchConfiguration gridThreshold;
+    protected final DblRandomSearchConfiguration randomThreshold;
+
+    public PPJoinBlocking() {
+        this(0.5);
+    }
+
+    public PPJoinBlocking(double t) {
+        this(t, RepresentationModel.TOKEN_UNIGRAMS);
+    }
+
+    public PPJoinBlocking(double t, RepresentationModel model) {
+        super(model, SimilarityMetric.JACCARD_SIMILARITY);
+        threshold = t;
+
+        gridThreshold = new DblGridSearchConfiguration(0.9, 0.1, 0.1);
+        randomThreshold = new DblRandomSearchConfiguration(0.9, 0.1);
+    }
+
+    //the entities are processed in ascending order of size, so that every probe is longer than the indexed entities;
+    //the candidates are accumulated from the probing prefix, pruned by the length and positional filters and then verified
+    @Override
+    protected void applyJoin(List<EntityProfile> profilesD1, List<EntityProfile> profilesD2) {
+        buildTokenSets(profilesD1, profilesD2);
+
+        final long[] sizeOrder = new long[noOfEntities];
+        for (int i = 0; i < noOfEntities; i++) {
+            sizeOrder[i] = (((long) tokenSets[i].length) << 32) | i;
+        }
+        Arrays.sort(sizeOrder);
+
+        final int[] overlaps = new int[noOfEntities];
+        final TIntList candidates = new TIntArrayList();
+        for (long sizeAndId : sizeOrder) {
+            final int entityId = (int) sizeAndId;
+            final int[] tokens = tokenSets[entityId];
+            if (tokens.length == 0) {
+                continue;
+            }
+
+            int probingPrefix = Math.min(tokens.length, tokens.length - getMinOverlap(threshold * tokens.length) + 1);
+            for (int i = 0; i < probingPrefix; i++) {
+                final TIntList entities = postingEntities[tokens[i]];
+                if (entities == null) {
+                    continue;
+                }
+
+                final TIntList positions = postingPositions[tokens[i]];
+                for (int j = 0; j < entities.size(); j++) {
+                    int candidateId = entities.get(j);
+                    if (overlaps[candidateId] == PRUNED || !isValidPair(entityId, candidateId)) {
+                        continue;
+                    }
+
+                    int candidateSize = tokenSets[candidateId].length;
+                    if (candidateSize < threshold * tokens.length - EPSILON) {
+                        continue;
+                    }
+
+                    int minOverlap = getMinOverlap(threshold / (1 + threshold) * (tokens.length + candidateSize));
+                    int upperBound = 1 + Math.min(tokens.length - i - 1, candidateSize - positions.get(j) - 1);
+                    if (overlaps[candidateId] == 0) {
+                        candidates.add(candidateId);
+                    }
+                    if (minOverlap <= overlaps[candidateId] + upperBound) {
+                        overlaps[candidateId]++;
+                    } else {
+                        overlaps[candidateId] = PRUNED;
+                    }
+                }
+            }
+
+            for (int i = 0; i < candidates.size(); i++) {
+                int candidateId = candidates.get(i);
+                if (overlaps[candidateId] != PRUNED && isSimilar(tokens, tokenSets[candidateId])) {
+                    addPair(entityId, candidateId);
+                }
+                overlaps[candidateId] = 0;
+            }
+            candidates.clear();
+
+            //the indexing prefix is shorter than the probing one, as it is matched only with longer entities
+            int indexingPrefix = Math.min(tokens.length, tokens.length - getMinOverlap(2 * threshold / (1 + threshold) * tokens.length) + 1);
+            for (int i = 0; i < indexingPrefix; i++) {
+                if (postingEntities[tokens[i]] == null) {
+                    postingEntities[tokens[i]] = new TIntArrayList();
+                    postingPositions[tokens[i]] = new TIntArrayList();
+                }
+                postingEntities[tokens[i]].add(entityId);
+                postingPositions[tokens[i]].add(i);
+            }
+        }
+
+        tokenSets = null;
+        postingEntities = null;
+        postingPositions = null;
+    }
+
+    //every token is replaced by its rank in ascending order of document frequency, so that the prefixes contain the rarest tokens
+    protected void buildTokenSets(List<EntityProfile> profilesD1, List<EntityProfile> profilesD2) {
+        final TIntList frequencies = new TIntArrayList();
+        final TObjectIntMap<String> tokenIds = new TObjectIntHashMap<>(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, -1);
+        tokenSets = new int[noOfEntities][];
+        addTokenSets(getModels(DATASET_1, profilesD1), 0, tokenIds, frequencies);
+        if (cleanCleanER) {
+            addTokenSets(getModels(DATASET_2, profilesD2), datasetLimit, tokenIds, frequencies);
+        }
+
+        final long[] frequencyOrder = new long[frequencies.size()];
+        for (int i = 0; i < frequencyOrder.length; i++) {
+            frequencyOrder[i] = (((long) frequencies.get(i)) << 32) | i;
+        }
+        Arrays.sort(frequencyOrder);
+
+        final int[] tokenRanks = new int[frequencyOrder.length];
+        for (int rank = 0; rank < frequencyOrder.length; rank++) {
+            tokenRanks[(int) frequencyOrder[rank]] = rank;
+        }
+
+        for (int[] tokens : tokenSets) {
+            for (int i = 0; i < tokens.length; i++) {
+                tokens[i] = tokenRanks[tokens[i]];
+            }
+            Arrays.sort(tokens);
+        }
+
+        postingEntities = new TIntList[frequencyOrder.length];
+        postingPositions = new TIntList[frequencyOrder.length];
+    }
+
+    private void addTokenSets(ITextModel[] models, int idOffset, TObjectIntMap<String> tokenIds, TIntList frequencies) {
+        for (int i = 0; i < models.length; i++) {
+            final Set<String> signatures = models[i].getSignatures();
+            final int[] tokens = new int[signatures.size()];
+
+            int counter = 0;
+            for (String signature : signatures) {
+                int tokenId = tokenIds.get(signature);
+                if (tokenId < 0) {
+                    tokenId = frequencies.size();
+                    tokenIds.put(signature, tokenId);
+                    frequencies.add(0);
+                }
+                frequencies.set(tokenId, frequencies.get(tokenId) + 1);
+                tokens[counter++] = tokenId;
+            }
+            tokenSets[idOffset + i] = tokens;
+        }
+    }
+
+    @Override
+    public String getMethodConfiguration() {
+        return getParameterName(0) + "=" + threshold + ",\t"
+                + getParameterName(1) + "=" + representationModel;
+    }
+
+    @Override
+    public String getMethodInfo() {
+        return getMethodName() + ": it returns all pairs of entities whose token sets have a Jaccard similarity equal to or higher than the given threshold.\n"
+                + "It indexes only a prefix of the tokens of every entity and prunes the candidate pairs through length and positional filters.";
+    }
+
+    @Override
+    public String getMethodName() {
+        return "PPJoin Blocking";
+    }
+
+    @Override
+    public String getMethodParameters() {
+        return getMethodName() + " involves two parameters:\n"
+                + "1)" + getParameterDescription(0) + ".\n"
+                + "2)" + getParameterDescription(1) + ".";
+    }
+
+    //the minimum number of common tokens implied by the given bound, which is robust to rounding errors
+    private int getMinOverlap(double bound) {
+        return (int) Math.ceil(bound - EPSILON);
+    }
+
+    @Override
+    public int getNumberOfGridConfigurations() {
+        return gridThreshold.getNumberOfConfigurations();
+    }
+
+    @Override
+    public JsonArray getParameterConfiguration() {
+        final JsonObject obj1 = new JsonObject();
+        obj1.put("class", "java.lang.Double");
+        obj1.put("name", getParameterName(0));
+        obj1.put("defaultValue", "0.5");
+        obj1.put("minValue", "0.1");
+        obj1.put("maxValue", "0.9");
+        obj1.put("stepValue", "0.1");
+        obj1.put("description", getParameterDescription(0));
+
+        final JsonObject obj2 = new JsonObject();
+        obj2.put("class", "org.scify.jedai.utilities.enumerations.RepresentationModel");
+        obj2.put("name", getParameterName(1));
+        obj2.put("defaultValue", "org.scify.jedai.utilities.enumerations.RepresentationModel.TOKEN_UNIGRAMS");
+        obj2.put("minValue", "-");
+        obj2.put("maxValue", "-");
+        obj2.put("stepValue", "-");
+        obj2.put("description", getParameterDescription(1));
+
+        final JsonArray array = new JsonArray();
+        array.add(obj1);
+        array.add(obj2);
+        return array;
+    }
+
+    @Override
+    public String getParameterDescription(int parameterId) {
+        switch (parameterId) {
+            case 0:
+                return "The " + getParameterName(0) + " determines the minimum Jaccard similarity of the token sets of two entities that are compared.";
+            case 1:
+                return "The " + getParameterName(1) + " transforms every entity profile into the set of tokens that is joined.";
+            default:
+                return "invalid parameter id";
+        }
+    }
+
+    @Override
+    public String getParameterName(int parameterId) {
+        switch (parameterId) {
+            case 0:
+                return "Similarity Threshold";
+            case 1:
+                return "Representation Model";
+            default:
+                return "invalid parameter id";
+        }
+    }
+
+    //both token sets are sorted, so their overlap is computed through a merge
+    private boolean isSimilar(int[] tokens1, int[] tokens2) {
+        int i = 0;
+        int j = 0;
+        int overlap = 0;
+        while (i < tokens1.length && j < tokens2.length) {
+            if (tokens1[i] < tokens2[j]) {
+                i++;
+            } else if (tokens2[j] < tokens1[i]) {
+                j++;
+            } else {
+                overlap++;
+                i++;
+                j++;
+            }
+        }
+        return getMinOverlap(threshold / (1 + threshold) * (tokens1.length + tokens2.length)) <= overlap;
+    }
+
+    //in Clean-Clean ER, all entities are indexed, but only those from different datasets are joined
+    private boolean isValidPair(int entityId1, int entityId2) {
+        return !cleanCleanER || (entityId1 < datasetLimit) != (entityId2 < datasetLimit);
+    }
+
+    @Override
+    public void setNextRandomConfiguration() {
+        threshold = (Double) randomThreshold.getNextRandomValue();
+    }
+
+    @Override
+    public void setNumberedGridConfiguration(int iterationNumber) {
+        threshold = (Double) gridThreshold.getNumberedValue(iterationNumber);
+    }
+
+    @Override
+    public void setNumberedRandomConfiguration(int iterationNumber) {
+        threshold = (Double) randomThreshold.getNumberedRandom(iterationNumber);
+    }
+}
@@ -19,11 +19,13 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.function.LongConsumer;
 
 import org.apache.jena.atlas.json.JsonArray;
 import org.apache.jena.atlas.json.JsonObject;
 import org.scify.jedai.configuration.gridsearch.IntGridSearchConfiguration;
 import org.scify.jedai.configuration.randomsearch.IntRandomSearchConfiguration;
+import org.scify.jedai.utilities.HashingTokenizer;
 
 /**
  *
@@ -49,15 +51,20 @@ public class QGramsBlocking extends StandardBlocking {
     }
 
     @Override
-    protected Set<String> getBlockingKeys(String attributeValue) {
+    protected Set<String> getBlockingKeys(String[] tokens) {
         final Set<String> nGrams = new HashSet<>();
-        for (String token : getTokens(attributeValue)) {
+        for (String token : tokens) {
             nGrams.addAll(getNGrams(nGramSize, token));
         }
 
         return nGrams;
     }
 
+    @Override
+    protected void getBlockingKeys(CharSequence attributeValue, LongConsumer keyHashConsumer) {
+        HashingTokenizer.getInstance().qGrams(attributeValue, nGramSize, keyHashConsumer);
+    }
+
     @Override
     public String getMethodConfiguration() {
         return getParameterName(0) + "=" + nGramSize;
@@ -20,6 +20,7 @@ import org.scify.jedai.datamodel.UnilateralBlock;
 
 import gnu.trove.iterator.TIntIterator;
 import gnu.trove.list.TIntList;
+import gnu.trove.map.TObjectIntMap;
 import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.set.TIntSet;
 import gnu.trove.set.hash.TIntHashSet;
@@ -41,6 +42,7 @@ import org.scify.jedai.configuration.randomsearch.IntRandomSearchConfiguration;
 public class SortedNeighborhoodBlocking extends StandardBlocking {
 
     protected int windowSize;
+    protected String[] sortedTerms;
     
     protected IntGridSearchConfiguration gridWindow;
     protected IntRandomSearchConfiguration randomWindow;
@@ -58,6 +60,12 @@ public class SortedNeighborhoodBlocking extends StandardBlocking {
         randomWindow = new IntRandomSearchConfiguration(100, 1);
     }
 
+    @Override
+    protected String getIndexingConfiguration() {
+        //the inverted indices of Standard Blocking are independent of the window size
+        return getMethodName();
+    }
+
     @Override
     public String getMethodConfiguration() {
         return getParameterName(0) + "=" + windowSize;
@@ -82,7 +90,7 @@ public class SortedNeighborhoodBlocking extends StandardBlocking {
     }
     
     protected int[] getMixedSortedEntities(String[] sortedTerms) {
-        int datasetLimit = entityProfilesD1.size();
+        int datasetLimit = (int) noOfEntitiesD1;
         final TIntList sortedEntityIds = new TIntArrayList();
 
         for (String blockingKey : sortedTerms) {
@@ -158,14 +166,41 @@ public class SortedNeighborhoodBlocking extends StandardBlocking {
 
         return sortedEntityIds.toArray();
     }
+
+    //the blocking keys of both datasets in alphabetical order; they do not depend on the window size,
+    //so, with caching, they are sorted once for all configurations that reuse the same inverted indices
+    protected String[] getSortedTerms() {
+        if (sortedTerms != null) {
+            return sortedTerms;
+        }
+
+        final Set<String> blockingKeysSet = new HashSet<>(invertedIndexD1.keySet());
+        if (cleanCleanER) {
+            blockingKeysSet.addAll(invertedIndexD2.keySet());
+        }
+
+        final String[] terms = blockingKeysSet.toArray(new String[blockingKeysSet.size()]);
+        if (1 < noOfThreads) {
+            Arrays.parallelSort(terms);
+        } else {
+            Arrays.sort(terms);
+        }
+
+        if (caching) {
+            sortedTerms = terms;
+        }
+        return terms;
+    }
+
+    @Override
+    protected void initializeIndices(boolean ccER, TObjectIntMap<String>[] sClusters) {
+        super.initializeIndices(ccER, sClusters);
+        sortedTerms = null;
+    }
     
     @Override
     protected void parseIndex() {
-        final Set<String> blockingKeysSet = invertedIndexD1.keySet();
-        final String[] sortedTerms = blockingKeysSet.toArray(new String[blockingKeysSet.size()]);
-        Arrays.sort(sortedTerms);
-
-        final int[] allEntityIds = getSortedEntities(sortedTerms);
+        final int[] allEntityIds = getSortedEntities(getSortedTerms());
 
         //slide window over the sorted list of entity ids
         int upperLimit = allEntityIds.length - windowSize;
@@ -183,16 +218,9 @@ public class SortedNeighborhoodBlocking extends StandardBlocking {
     
     @Override
     protected void parseIndices() {
-        final Set<String> blockingKeysSet = new HashSet<>();
-        blockingKeysSet.addAll(invertedIndexD1.keySet());
-        blockingKeysSet.addAll(invertedIndexD2.keySet());
-        
-        final String[] sortedTerms = blockingKeysSet.toArray(new String[blockingKeysSet.size()]);
-        Arrays.sort(sortedTerms);
+        final int[] allEntityIds = getMixedSortedEntities(getSortedTerms());
 
-        final int[] allEntityIds = getMixedSortedEntities(sortedTerms);
-
-        int datasetLimit = entityProfilesD1.size();
+        int datasetLimit = (int) noOfEntitiesD1;
         //slide window over the sorted list of entity ids
         int upperLimit = allEntityIds.length - windowSize;
         for (int i = 0; i <= upperLimit; i++) {
@@ -212,6 +240,12 @@ public class SortedNeighborhoodBlocking extends StandardBlocking {
         }
     }
     
+    @Override
+    public void resetCache() {
+        super.resetCache();
+        sortedTerms = null;
+    }
+
     @Override
     public void setNextRandomConfiguration() {
         windowSize = (Integer) randomWindow.getNextRandomValue();
@@ -226,4 +260,24 @@ public class SortedNeighborhoodBlocking extends StandardBlocking {
     public void setNumberedRandomConfiguration(int iterationNumber) {
         windowSize = (Integer) randomWindow.getNumberedRandom(iterationNumber);
     }
+
+    @Override
+    protected boolean supportsCompactIndexing() {
+        return false;
+    }
+
+    @Override
+    protected boolean supportsExternalIndexing() {
+        return false;
+    }
+
+    @Override
+    protected boolean supportsIncrementalBlocking() {
+        return false;
+    }
+
+    @Override
+    protected boolean supportsSemiJoinIndexing() {
+        return false;
+    }
 }
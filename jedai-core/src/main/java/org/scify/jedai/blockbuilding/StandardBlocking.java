@@ -19,8 +19,10 @@ import com.esotericsoftware.minlog.Log;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.function.LongConsumer;
 
 import org.apache.jena.atlas.json.JsonArray;
+import org.scify.jedai.utilities.HashingTokenizer;
 
 /**
  *
@@ -34,7 +36,17 @@ public class StandardBlocking extends AbstractBlockBuilding {
 
     @Override
     protected Set<String> getBlockingKeys(String attributeValue) {
-        return new HashSet<>(Arrays.asList(getTokens(attributeValue)));
+        return getBlockingKeys(getTokens(attributeValue));
+    }
+
+    @Override
+    protected Set<String> getBlockingKeys(String[] tokens) {
+        return new HashSet<>(Arrays.asList(tokens));
+    }
+
+    @Override
+    protected void getBlockingKeys(CharSequence attributeValue, LongConsumer keyHashConsumer) {
+        HashingTokenizer.getInstance().tokens(attributeValue, keyHashConsumer);
     }
 
     @Override
@@ -96,4 +108,14 @@ public class StandardBlocking extends AbstractBlockBuilding {
     public void setNumberedRandomConfiguration(int iterationNumber) {
         Log.warn("Random search is inapplicable! " + getMethodName() + " is a parameter-free method!");
     }
+
+    @Override
+    protected boolean supportsHashedKeys() {
+        return true;
+    }
+
+    @Override
+    protected boolean supportsTokenStore() {
+        return true;
+    }
 }
@@ -16,8 +16,14 @@
 package org.scify.jedai.blockbuilding;
 
 import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.Attribute;
+import org.scify.jedai.datamodel.BlockCollection;
 import org.scify.jedai.datamodel.EntityProfile;
 
+import com.esotericsoftware.minlog.Log;
+
+import gnu.trove.map.TObjectIntMap;
+
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -27,6 +33,7 @@ import org.apache.jena.atlas.json.JsonArray;
 import org.apache.jena.atlas.json.JsonObject;
 import org.scify.jedai.configuration.gridsearch.IntGridSearchConfiguration;
 import org.scify.jedai.configuration.randomsearch.IntRandomSearchConfiguration;
+import org.scify.jedai.utilities.datastructures.GeneralizedSuffixArray;
 
 /**
  *
@@ -34,9 +41,13 @@ import org.scify.jedai.configuration.randomsearch.IntRandomSearchConfiguration;
  */
 public class SuffixArraysBlocking extends StandardBlocking {
 
+    protected boolean suffixArrayIndexing;
+
     protected int maximumBlockSize;
     protected int minimumSuffixLength;
 
+    protected GeneralizedSuffixArray suffixArray;
+
     protected final IntGridSearchConfiguration gridMBSize;
     protected final IntGridSearchConfiguration gridMSLength;
     protected final IntRandomSearchConfiguration randomMBSize;
@@ -50,6 +61,7 @@ public class SuffixArraysBlocking extends StandardBlocking {
         super();
         maximumBlockSize = maxSize;
         minimumSuffixLength = minLength;
+        suffixArrayIndexing = false;
         
         gridMBSize = new IntGridSearchConfiguration(100, 1,  1);
         gridMSLength = new IntGridSearchConfiguration(6, 2, 1);
@@ -58,22 +70,48 @@ public class SuffixArraysBlocking extends StandardBlocking {
     }
 
     @Override
-    public List<AbstractBlock> getBlocks(List<EntityProfile> profilesD1,
-            List<EntityProfile> profilesD2) {
-        final List<AbstractBlock> purgedBlocks = super.getBlocks(profilesD1, profilesD2);
-        final Iterator<AbstractBlock> blocksIterator = purgedBlocks.iterator();
-        while (blocksIterator.hasNext()) {
-            if (maximumBlockSize < blocksIterator.next().getTotalBlockAssignments()) {
-                blocksIterator.remove();
-            }
+    public List<AbstractBlock> addEntities(List<EntityProfile> newProfilesD1, List<EntityProfile> newProfilesD2) {
+        return purgeBlocks(super.addEntities(newProfilesD1, newProfilesD2));
+    }
+
+    @Override
+    protected void buildBlocks() {
+        if (!suffixArrayIndexing) {
+            super.buildBlocks();
+            return;
+        }
+
+        indexTokens(entityProfilesD1.iterator(), DATASET_1);
+        if (cleanCleanER) {
+            indexTokens(entityProfilesD2.iterator(), DATASET_2);
         }
-        return purgedBlocks;
     }
 
     @Override
-    protected Set<String> getBlockingKeys(String attributeValue) {
+    protected boolean indexProfiles(Iterator<EntityProfile> profilesD1, Iterator<EntityProfile> profilesD2, TObjectIntMap<String>[] sClusters) {
+        if (!suffixArrayIndexing) {
+            return super.indexProfiles(profilesD1, profilesD2, sClusters);
+        }
+
+        Log.info("Applying " + getMethodName() + " with the following configuration : " + getMethodConfiguration());
+
+        if (profilesD1 == null) {
+            Log.error("First iterator of entity profiles is null! The first argument should always contain entities.");
+            return false;
+        }
+
+        initializeIndices(profilesD2 != null, sClusters);
+        noOfEntitiesD1 = indexTokens(profilesD1, DATASET_1);
+        if (cleanCleanER) {
+            noOfEntitiesD2 = indexTokens(profilesD2, DATASET_2);
+        }
+        return true;
+    }
+
+    @Override
+    protected Set<String> getBlockingKeys(String[] tokens) {
         final Set<String> suffixes = new HashSet<>();
-        for (String token : getTokens(attributeValue)) {
+        for (String token : tokens) {
             suffixes.addAll(getSuffixes(minimumSuffixLength, token));
         }
         return suffixes;
@@ -170,6 +208,75 @@ public class SuffixArraysBlocking extends StandardBlocking {
         return suffixes;
     }
     
+    protected int indexTokens(Iterator<EntityProfile> entities, int datasetId) {
+        final TObjectIntMap<String> clusters = schemaClusters == null ? null : schemaClusters[datasetId];
+
+        int counter = 0;
+        while (entities.hasNext()) {
+            final EntityProfile profile = entities.next();
+            final String[][] valueTokens = getValueTokens(profile);
+
+            int attributeIndex = 0;
+            for (Attribute attribute : profile.getAttributes()) {
+                int clusterId = clusters == null ? -1 : clusters.get(attribute.getName());
+                final String[] tokens = valueTokens == null ? getTokens(attribute.getValue().toLowerCase()) : valueTokens[attributeIndex++];
+                for (String token : tokens) {
+                    suffixArray.addToken(token.trim(), clusterId, datasetId, counter);
+                }
+            }
+            counter++;
+        }
+        return counter;
+    }
+
+    @Override
+    protected void initializeIndices(boolean ccER, TObjectIntMap<String>[] sClusters) {
+        super.initializeIndices(ccER, sClusters);
+        suffixArray = null;
+        if (suffixArrayIndexing) {
+            suffixArray = new GeneralizedSuffixArray(isSubstringIndexing(), minimumSuffixLength, maximumBlockSize, ccER);
+        }
+    }
+
+    protected boolean isSubstringIndexing() {
+        return false;
+    }
+
+    protected List<AbstractBlock> purgeBlocks(List<AbstractBlock> purgedBlocks) {
+        if (purgedBlocks == null) {
+            return null;
+        }
+
+        final Iterator<AbstractBlock> blocksIterator = purgedBlocks.iterator();
+        while (blocksIterator.hasNext()) {
+            if (maximumBlockSize < blocksIterator.next().getTotalBlockAssignments()) {
+                blocksIterator.remove();
+            }
+        }
+        return purgedBlocks;
+    }
+
+    //the blocks have to be purged, hence they cannot be copied directly from a compact index
+    @Override
+    public BlockCollection readBlockCollection() {
+        return new BlockCollection(readBlocks(), cleanCleanER);
+    }
+
+    //the blocks have to be purged, hence they cannot be streamed from an external index either
+    @Override
+    public Iterator<AbstractBlock> readBlockIterator() {
+        return readBlocks().iterator();
+    }
+
+    @Override
+    public List<AbstractBlock> readBlocks() {
+        if (suffixArray != null) {
+            suffixArray.getBlocks(blocks);
+            return blocks;
+        }
+        return purgeBlocks(super.readBlocks());
+    }
+
     @Override
     public void setNextRandomConfiguration() {
         maximumBlockSize = (Integer) randomMBSize.getNextRandomValue();
@@ -190,4 +297,20 @@ public class SuffixArraysBlocking extends StandardBlocking {
         maximumBlockSize = (Integer) randomMBSize.getNumberedRandom(iterationNumber);
         minimumSuffixLength = (Integer) randomMSLength.getNumberedRandom(iterationNumber);
     }
+
+    // the keys are derived from a generalized suffix array over the distinct tokens, instead of an inverted index
+    // with one String per suffix; the oversized blocks are discarded while building the suffix array
+    public void setSuffixArrayIndexing(boolean indexing) {
+        suffixArrayIndexing = indexing;
+    }
+
+    @Override
+    protected boolean supportsHashedKeys() {
+        return false;
+    }
+
+    @Override
+    protected boolean supportsIncrementalBlocking() {
+        return !suffixArrayIndexing;
+    }
 }
@@ -17,6 +17,7 @@
 package org.scify.jedai.blockprocessing;
 
 import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.BlockCollection;
 
 import com.esotericsoftware.minlog.Log;
 
@@ -29,6 +30,11 @@ import java.util.List;
 
 public abstract class AbstractBlockProcessing implements IBlockProcessing {
     
+    protected void printOriginalStatistics(BlockCollection inputBlocks) {
+        Log.info("Original blocks\t:\t" + inputBlocks.getNoOfBlocks());
+        Log.info("Original comparisons\t:\t" + inputBlocks.getTotalComparisons());
+    }
+
     protected void printOriginalStatistics(List<AbstractBlock> inputBlocks) {
         double comparisons = 0;
         for (AbstractBlock block : inputBlocks) {
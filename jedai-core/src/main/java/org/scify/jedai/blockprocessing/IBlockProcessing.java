@@ -16,6 +16,7 @@
 package org.scify.jedai.blockprocessing;
 
 import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.BlockCollection;
 import org.scify.jedai.utilities.IDocumentation;
 
 import java.util.List;
@@ -31,5 +32,10 @@ public interface IBlockProcessing extends IConfiguration, IDocumentation {
     int DATASET_2 = 1;
 
     public List<AbstractBlock> refineBlocks(List<AbstractBlock> blocks);
+
+    //the methods that do not process block collections natively refine the equivalent list of blocks
+    public default List<AbstractBlock> refineBlocks(BlockCollection blocks) {
+        return refineBlocks(blocks.toBlocks());
+    }
     
 }
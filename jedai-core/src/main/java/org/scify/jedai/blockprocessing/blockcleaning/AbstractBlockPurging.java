@@ -18,11 +18,13 @@ package org.scify.jedai.blockprocessing.blockcleaning;
 
 import org.scify.jedai.blockprocessing.AbstractBlockProcessing;
 import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.BlockCollection;
 
 import com.esotericsoftware.minlog.Log;
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
 import java.util.ArrayList;
 
-import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -35,34 +37,69 @@ public abstract class AbstractBlockPurging extends AbstractBlockProcessing {
     public AbstractBlockPurging() {
     }
 
+    //the columnar counterpart of refineBlocks: the threshold is set on the buffers of the given collection
+    //and the retained blocks are copied into a new collection in their original order, without creating any block object
+    public BlockCollection refineBlockCollection(BlockCollection blocks) {
+        Log.info("Applying " + getMethodName() + " with the following configuration : " + getMethodConfiguration());
+
+        printOriginalStatistics(blocks);
+        setThreshold(blocks);
+
+        double totalComparisons = 0;
+        final TIntList retainedBlockIds = new TIntArrayList();
+        for (int blockId = 0; blockId < blocks.getNoOfBlocks(); blockId++) {
+            if (satisfiesThreshold(blocks, blockId)) {
+                retainedBlockIds.add(blockId);
+                totalComparisons += blocks.getNoOfComparisons(blockId);
+            }
+        }
+
+        Log.info("Purged blocks\t:\t" + (blocks.getNoOfBlocks() - retainedBlockIds.size()));
+        Log.info("Retained blocks\t:\t" + retainedBlockIds.size());
+        Log.info("Retained comparisons\t:\t" + totalComparisons);
+
+        return blocks.getSubCollection(retainedBlockIds.toArray());
+    }
+
+    @Override
+    public List<AbstractBlock> refineBlocks(BlockCollection blocks) {
+        return refineBlockCollection(blocks).toBlocks();
+    }
+
     @Override
     public List<AbstractBlock> refineBlocks(List<AbstractBlock> blocks) {
         Log.info("Applying " + getMethodName() + " with the following configuration : " + getMethodConfiguration());
         
-        List<AbstractBlock> newBlocks = new ArrayList<>(blocks);
-        printOriginalStatistics(newBlocks);
-        setThreshold(newBlocks);
+        //the input is copied only by the methods that reorder the blocks when setting their threshold
+        final List<AbstractBlock> candidateBlocks = reordersBlocks() ? new ArrayList<>(blocks) : blocks;
+        printOriginalStatistics(candidateBlocks);
+        setThreshold(candidateBlocks);
 
         int noOfPurgedBlocks = 0;
         double totalComparisons = 0;
-        final Iterator<AbstractBlock> blocksIterator = newBlocks.iterator();
-        while (blocksIterator.hasNext()) {
-            AbstractBlock aBlock = blocksIterator.next();
+        final List<AbstractBlock> newBlocks = new ArrayList<>();
+        for (AbstractBlock aBlock : candidateBlocks) {
             if (!satisfiesThreshold(aBlock)) {
                 noOfPurgedBlocks++;
-                blocksIterator.remove();
             } else {
+                newBlocks.add(aBlock);
                 totalComparisons += aBlock.getNoOfComparisons();
             }
         }
         
         Log.info("Purged blocks\t:\t" + noOfPurgedBlocks);
-        Log.info("Retained blocks\t:\t" + blocks.size());
+        Log.info("Retained blocks\t:\t" + newBlocks.size());
         Log.info("Retained comparisons\t:\t" + totalComparisons);
 
         return newBlocks;
     }
     
+    protected boolean reordersBlocks() {
+        return true;
+    }
+
     protected abstract boolean satisfiesThreshold(AbstractBlock block);
+    protected abstract boolean satisfiesThreshold(BlockCollection blocks, int blockId);
+    protected abstract void setThreshold(BlockCollection blocks);
     protected abstract void setThreshold(List<AbstractBlock> blocks);
 }
@@ -18,15 +18,18 @@ package org.scify.jedai.blockprocessing.blockcleaning;
 import org.scify.jedai.blockprocessing.AbstractBlockProcessing;
 import org.scify.jedai.datamodel.AbstractBlock;
 import org.scify.jedai.datamodel.BilateralBlock;
+import org.scify.jedai.datamodel.BlockCollection;
 import org.scify.jedai.datamodel.UnilateralBlock;
-import org.scify.jedai.utilities.comparators.IncBlockCardinalityComparator;
+import org.scify.jedai.utilities.RangeExecutor;
+import org.scify.jedai.utilities.RangeExecutor.RangeTask;
 import com.esotericsoftware.minlog.Log;
-import gnu.trove.iterator.TIntIterator;
+
 import gnu.trove.list.TIntList;
 import gnu.trove.list.array.TIntArrayList;
 
+import java.nio.IntBuffer;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.jena.atlas.json.JsonArray;
@@ -44,6 +47,7 @@ public class BlockFiltering extends AbstractBlockProcessing {
 
     protected int entitiesD1;
     protected int entitiesD2;
+    protected int noOfThreads;
     protected int[] counterD1;
     protected int[] counterD2;
     protected int[] limitsD1;
@@ -58,6 +62,7 @@ public class BlockFiltering extends AbstractBlockProcessing {
 
     public BlockFiltering(double r) {
         ratio = r;
+        noOfThreads = 1;
 
         gridRatio = new DblGridSearchConfiguration(1.0, 0.025, 0.025);
         randomRatio = new DblRandomSearchConfiguration(1.0, 0.01);
@@ -66,52 +71,90 @@ public class BlockFiltering extends AbstractBlockProcessing {
     protected void countEntities(List<AbstractBlock> blocks) {
         entitiesD1 = Integer.MIN_VALUE;
         entitiesD2 = Integer.MIN_VALUE;
-        if (blocks.get(0) instanceof BilateralBlock) {
-            for (AbstractBlock block : blocks) {
+        if (!(blocks.get(0) instanceof BilateralBlock) && !(blocks.get(0) instanceof UnilateralBlock)) {
+            return;
+        }
+
+        final boolean bilateral = blocks.get(0) instanceof BilateralBlock;
+        final List<int[]> partialCounts = processInParallel(blocks.size(), (rangeStart, rangeEnd) -> {
+            final int[] noOfEntities = {Integer.MIN_VALUE, Integer.MIN_VALUE};
+            for (AbstractBlock block : blocks.subList(rangeStart, rangeEnd)) {
+                if (bilateral) {
+                    final BilateralBlock bilBlock = (BilateralBlock) block;
+                    noOfEntities[0] = Math.max(noOfEntities[0], getMaxId(bilBlock.getIndex1Entities()) + 1);
+                    noOfEntities[1] = Math.max(noOfEntities[1], getMaxId(bilBlock.getIndex2Entities()) + 1);
+                } else {
+                    noOfEntities[0] = Math.max(noOfEntities[0], getMaxId(((UnilateralBlock) block).getEntities()) + 1);
+                }
+            }
+            return noOfEntities;
+        });
+
+        for (int[] noOfEntities : partialCounts) {
+            entitiesD1 = Math.max(entitiesD1, noOfEntities[0]);
+            entitiesD2 = Math.max(entitiesD2, noOfEntities[1]);
+        }
+    }
+
+    //sorts, counts and restructures the given blocks of the collection through their ids
+    protected BlockCollection filterBlocks(BlockCollection blocks, int[] blockIds) {
+        final int[] sortedBlockIds = sortBlocks(blocks, blockIds);
+        getLimits(blocks, sortedBlockIds);
+        initializeCounters();
+        return restructureBlocks(blocks, sortedBlockIds);
+    }
+
+    protected void getBilateralLimits(List<AbstractBlock> blocks) {
+        //every thread counts the block assignments of its own range of blocks in separate arrays, which are summed afterwards
+        final List<int[][]> partialCounters = processInParallel(blocks.size(), (rangeStart, rangeEnd) -> {
+            final int[][] counters = {new int[entitiesD1], new int[entitiesD2]};
+            for (AbstractBlock block : blocks.subList(rangeStart, rangeEnd)) {
                 final BilateralBlock bilBlock = (BilateralBlock) block;
                 for (int id1 : bilBlock.getIndex1Entities()) {
-                    if (entitiesD1 < id1 + 1) {
-                        entitiesD1 = id1 + 1;
-                    }
+                    counters[0][id1]++;
                 }
+
                 for (int id2 : bilBlock.getIndex2Entities()) {
-                    if (entitiesD2 < id2 + 1) {
-                        entitiesD2 = id2 + 1;
-                    }
+                    counters[1][id2]++;
                 }
             }
-        } else if (blocks.get(0) instanceof UnilateralBlock) {
-            for (AbstractBlock block : blocks) {
-                final UnilateralBlock uniBlock = (UnilateralBlock) block;
-                for (int id : uniBlock.getEntities()) {
-                    if (entitiesD1 < id + 1) {
-                        entitiesD1 = id + 1;
-                    }
-                }
-            }
-        }
+            return counters;
+        });
+
+        limitsD1 = getEntityLimits(partialCounters, 0);
+        limitsD2 = getEntityLimits(partialCounters, 1);
     }
 
-    protected void getBilateralLimits(List<AbstractBlock> blocks) {
-        limitsD1 = new int[entitiesD1];
-        limitsD2 = new int[entitiesD2];
-        for (AbstractBlock block : blocks) {
-            final BilateralBlock bilBlock = (BilateralBlock) block;
-            for (int id1 : bilBlock.getIndex1Entities()) {
-                limitsD1[id1]++;
-            }
+    private double[] getDistinctValues(double[] values) {
+        final double[] sortedValues = Arrays.copyOf(values, values.length);
+        if (1 < noOfThreads) {
+            Arrays.parallelSort(sortedValues);
+        } else {
+            Arrays.sort(sortedValues);
+        }
 
-            for (int id2 : bilBlock.getIndex2Entities()) {
-                limitsD2[id2]++;
+        int noOfDistinctValues = 0;
+        for (int i = 0; i < sortedValues.length; i++) {
+            if (i == 0 || sortedValues[noOfDistinctValues - 1] != sortedValues[i]) {
+                sortedValues[noOfDistinctValues++] = sortedValues[i];
             }
         }
+        return Arrays.copyOf(sortedValues, noOfDistinctValues);
+    }
 
-        for (int i = 0; i < limitsD1.length; i++) {
-            limitsD1[i] = (int) Math.round(ratio * limitsD1[i]);
-        }
-        for (int i = 0; i < limitsD2.length; i++) {
-            limitsD2[i] = (int) Math.round(ratio * limitsD2[i]);
-        }
+    //the limit of every entity is the rounded portion of its blocks, as determined by the sum of its partial counters
+    protected int[] getEntityLimits(List<int[][]> partialCounters, int datasetId) {
+        final int[] limits = partialCounters.get(0)[datasetId];
+        processInParallel(limits.length, (rangeStart, rangeEnd) -> {
+            for (int i = rangeStart; i < rangeEnd; i++) {
+                for (int j = 1; j < partialCounters.size(); j++) {
+                    limits[i] += partialCounters.get(j)[datasetId][i];
+                }
+                limits[i] = (int) Math.round(ratio * limits[i]);
+            }
+            return null;
+        });
+        return limits;
     }
 
     protected void getLimits(List<AbstractBlock> blocks) {
@@ -122,6 +165,36 @@ public class BlockFiltering extends AbstractBlockProcessing {
         }
     }
 
+    //the block assignments are counted directly on the entity ids of the collection
+    protected void getLimits(BlockCollection blocks, int[] blockIds) {
+        final int noOfDatasets = blocks.isCleanCleanER() ? 2 : 1;
+        final List<int[][]> partialCounters = processInParallel(blockIds.length, (rangeStart, rangeEnd) -> {
+            final int[][] counters = new int[noOfDatasets][];
+            for (int datasetId = 0; datasetId < noOfDatasets; datasetId++) {
+                counters[datasetId] = new int[datasetId == 0 ? entitiesD1 : entitiesD2];
+                final IntBuffer entityIds = blocks.getEntityIds(datasetId);
+                for (int i = rangeStart; i < rangeEnd; i++) {
+                    final int lastPosition = blocks.getOffset(blockIds[i] + 1, datasetId);
+                    for (int position = blocks.getOffset(blockIds[i], datasetId); position < lastPosition; position++) {
+                        counters[datasetId][entityIds.get(position)]++;
+                    }
+                }
+            }
+            return counters;
+        });
+
+        limitsD1 = getEntityLimits(partialCounters, 0);
+        limitsD2 = noOfDatasets == 2 ? getEntityLimits(partialCounters, 1) : null;
+    }
+
+    private int getMaxId(int[] entityIds) {
+        int maxId = Integer.MIN_VALUE;
+        for (int id : entityIds) {
+            maxId = Math.max(maxId, id);
+        }
+        return maxId;
+    }
+
     @Override
     public String getMethodConfiguration() {
         return getParameterName(0) + "=" + ratio;
@@ -185,19 +258,32 @@ public class BlockFiltering extends AbstractBlockProcessing {
         }
     }
 
+    //every key combines the rank of a cardinality with its position, which keeps the order of equal cardinalities after a primitive sort
+    private long[] getSortingKeys(double[] cardinalities) {
+        final double[] distinctCardinalities = getDistinctValues(cardinalities);
+        final long[] sortingKeys = new long[cardinalities.length];
+        for (int i = 0; i < cardinalities.length; i++) {
+            long rank = Arrays.binarySearch(distinctCardinalities, cardinalities[i]);
+            sortingKeys[i] = (rank << 32) | i;
+        }
+        sort(sortingKeys);
+        return sortingKeys;
+    }
+
     protected void getUnilateralLimits(List<AbstractBlock> blocks) {
-        limitsD1 = new int[entitiesD1];
-        limitsD2 = null;
-        for (AbstractBlock block : blocks) {
-            final UnilateralBlock uniBlock = (UnilateralBlock) block;
-            for (int id : uniBlock.getEntities()) {
-                limitsD1[id]++;
+        final List<int[][]> partialCounters = processInParallel(blocks.size(), (rangeStart, rangeEnd) -> {
+            final int[][] counters = {new int[entitiesD1]};
+            for (AbstractBlock block : blocks.subList(rangeStart, rangeEnd)) {
+                final UnilateralBlock uniBlock = (UnilateralBlock) block;
+                for (int id : uniBlock.getEntities()) {
+                    counters[0][id]++;
+                }
             }
-        }
+            return counters;
+        });
 
-        for (int i = 0; i < limitsD1.length; i++) {
-            limitsD1[i] = (int) Math.round(ratio * limitsD1[i]);
-        }
+        limitsD1 = getEntityLimits(partialCounters, 0);
+        limitsD2 = null;
     }
 
     protected void initializeCounters() {
@@ -208,6 +294,27 @@ public class BlockFiltering extends AbstractBlockProcessing {
         }
     }
 
+    //the columnar counterpart of refineBlocks: the entities are read from the buffers of the given collection
+    //and the retained ones are returned as a new collection, without creating any block object
+    public BlockCollection refineBlockCollection(BlockCollection blocks) {
+        Log.info("Applying " + getMethodName() + " with the following configuration : " + getMethodConfiguration());
+
+        printOriginalStatistics(blocks);
+        entitiesD1 = blocks.getNoOfEntities(0);
+        entitiesD2 = blocks.isCleanCleanER() ? blocks.getNoOfEntities(1) : Integer.MIN_VALUE;
+
+        final int[] blockIds = new int[blocks.getNoOfBlocks()];
+        for (int blockId = 0; blockId < blockIds.length; blockId++) {
+            blockIds[blockId] = blockId;
+        }
+        return filterBlocks(blocks, blockIds);
+    }
+
+    @Override
+    public List<AbstractBlock> refineBlocks(BlockCollection blocks) {
+        return refineBlockCollection(blocks).toBlocks();
+    }
+
     @Override
     public List<AbstractBlock> refineBlocks(List<AbstractBlock> blocks) {
         Log.info("Applying " + getMethodName() + " with the following configuration : " + getMethodConfiguration());
@@ -220,33 +327,56 @@ public class BlockFiltering extends AbstractBlockProcessing {
         return restructureBlocks(blocks);
     }
 
+    //applies the given task to consecutive ranges of the given number of items, one per thread, and returns its results in the order of the ranges
+    protected <T> List<T> processInParallel(int noOfItems, RangeTask<T> task) {
+        return RangeExecutor.processRanges(0, noOfItems, noOfThreads, getMethodName(), task);
+    }
+
+    //the retained entities of every block are collected in a reusable buffer and a block that retains all its entities is not copied;
+    //the blocks are processed sequentially, because the counters of an entity depend on the blocks retained before
     protected List<AbstractBlock> restructureBilateraBlocks(List<AbstractBlock> blocks) {
+        int[] retainedEntitiesD1 = new int[0];
+        int[] retainedEntitiesD2 = new int[0];
         final List<AbstractBlock> newBlocks = new ArrayList<>();
         for (AbstractBlock block : blocks) {
             final BilateralBlock oldBlock = (BilateralBlock) block;
-            final TIntList retainedEntitiesD1 = new TIntArrayList();
-            for (int entityId : oldBlock.getIndex1Entities()) {
+            final int[] blockEntitiesD1 = oldBlock.getIndex1Entities();
+            final int[] blockEntitiesD2 = oldBlock.getIndex2Entities();
+            if (retainedEntitiesD1.length < blockEntitiesD1.length) {
+                retainedEntitiesD1 = new int[blockEntitiesD1.length];
+            }
+            if (retainedEntitiesD2.length < blockEntitiesD2.length) {
+                retainedEntitiesD2 = new int[blockEntitiesD2.length];
+            }
+
+            int noOfRetainedD1 = 0;
+            for (int entityId : blockEntitiesD1) {
                 if (counterD1[entityId] < limitsD1[entityId]) {
-                    retainedEntitiesD1.add(entityId);
+                    retainedEntitiesD1[noOfRetainedD1++] = entityId;
                 }
             }
 
-            final TIntList retainedEntitiesD2 = new TIntArrayList();
-            for (int entityId : oldBlock.getIndex2Entities()) {
+            int noOfRetainedD2 = 0;
+            for (int entityId : blockEntitiesD2) {
                 if (counterD2[entityId] < limitsD2[entityId]) {
-                    retainedEntitiesD2.add(entityId);
+                    retainedEntitiesD2[noOfRetainedD2++] = entityId;
                 }
             }
 
-            if (!retainedEntitiesD1.isEmpty() && !retainedEntitiesD2.isEmpty()) {
-                for (TIntIterator iterator1 = retainedEntitiesD1.iterator(); iterator1.hasNext();) {
-                    counterD1[iterator1.next()]++;
+            if (0 < noOfRetainedD1 && 0 < noOfRetainedD2) {
+                for (int i = 0; i < noOfRetainedD1; i++) {
+                    counterD1[retainedEntitiesD1[i]]++;
                 }
 
-                for (TIntIterator iterator2 = retainedEntitiesD2.iterator(); iterator2.hasNext();) {
-                    counterD2[iterator2.next()]++;
+                for (int i = 0; i < noOfRetainedD2; i++) {
+                    counterD2[retainedEntitiesD2[i]]++;
+                }
+
+                if (noOfRetainedD1 == blockEntitiesD1.length && noOfRetainedD2 == blockEntitiesD2.length) {
+                    newBlocks.add(oldBlock);
+                } else {
+                    newBlocks.add(new BilateralBlock(Arrays.copyOf(retainedEntitiesD1, noOfRetainedD1), Arrays.copyOf(retainedEntitiesD2, noOfRetainedD2)));
                 }
-                newBlocks.add(new BilateralBlock(retainedEntitiesD1.toArray(), retainedEntitiesD2.toArray()));
             }
         }
 
@@ -261,22 +391,85 @@ public class BlockFiltering extends AbstractBlockProcessing {
         return restructureUnilateraBlocks(blocks);
     }
 
+    //the retained entities of every block are appended directly to the entity ids of the new collection
+    protected BlockCollection restructureBlocks(BlockCollection blocks, int[] blockIds) {
+        final int noOfDatasets = blocks.isCleanCleanER() ? 2 : 1;
+        final int[][] counters = {counterD1, counterD2};
+        final int[][] limits = {limitsD1, limitsD2};
+        final int[][] retainedEntities = new int[noOfDatasets][0];
+        final int[] noOfRetained = new int[noOfDatasets];
+        final TIntList[] newEntityIds = new TIntList[noOfDatasets];
+        final TIntList[] newOffsets = new TIntList[noOfDatasets];
+        for (int datasetId = 0; datasetId < noOfDatasets; datasetId++) {
+            newEntityIds[datasetId] = new TIntArrayList();
+            newOffsets[datasetId] = new TIntArrayList();
+            newOffsets[datasetId].add(0);
+        }
+
+        for (int blockId : blockIds) {
+            for (int datasetId = 0; datasetId < noOfDatasets; datasetId++) {
+                final IntBuffer entityIds = blocks.getEntityIds(datasetId);
+                final int firstPosition = blocks.getOffset(blockId, datasetId);
+                final int lastPosition = blocks.getOffset(blockId + 1, datasetId);
+                if (retainedEntities[datasetId].length < lastPosition - firstPosition) {
+                    retainedEntities[datasetId] = new int[lastPosition - firstPosition];
+                }
+
+                noOfRetained[datasetId] = 0;
+                for (int position = firstPosition; position < lastPosition; position++) {
+                    final int entityId = entityIds.get(position);
+                    if (counters[datasetId][entityId] < limits[datasetId][entityId]) {
+                        retainedEntities[datasetId][noOfRetained[datasetId]++] = entityId;
+                    }
+                }
+            }
+
+            final boolean retainedBlock = noOfDatasets == 2 ? 0 < noOfRetained[0] && 0 < noOfRetained[1] : 1 < noOfRetained[0];
+            if (retainedBlock) {
+                for (int datasetId = 0; datasetId < noOfDatasets; datasetId++) {
+                    for (int i = 0; i < noOfRetained[datasetId]; i++) {
+                        counters[datasetId][retainedEntities[datasetId][i]]++;
+                    }
+                    newEntityIds[datasetId].add(retainedEntities[datasetId], 0, noOfRetained[datasetId]);
+                    newOffsets[datasetId].add(newEntityIds[datasetId].size());
+                }
+            }
+        }
+
+        if (noOfDatasets == 2) {
+            return new BlockCollection(IntBuffer.wrap(newOffsets[0].toArray()), IntBuffer.wrap(newEntityIds[0].toArray()),
+                    IntBuffer.wrap(newOffsets[1].toArray()), IntBuffer.wrap(newEntityIds[1].toArray()), blocks.getNoOfEntities(0), blocks.getNoOfEntities(1));
+        }
+        return new BlockCollection(IntBuffer.wrap(newOffsets[0].toArray()), IntBuffer.wrap(newEntityIds[0].toArray()), null, null, blocks.getNoOfEntities(0), 0);
+    }
+
     protected List<AbstractBlock> restructureUnilateraBlocks(List<AbstractBlock> blocks) {
+        int[] retainedEntities = new int[0];
         final List<AbstractBlock> newBlocks = new ArrayList<>();
         for (AbstractBlock block : blocks) {
             final UnilateralBlock oldBlock = (UnilateralBlock) block;
-            final TIntList retainedEntities = new TIntArrayList();
-            for (int entityId : oldBlock.getEntities()) {
+            final int[] entities = oldBlock.getEntities();
+            if (retainedEntities.length < entities.length) {
+                retainedEntities = new int[entities.length];
+            }
+
+            int noOfRetained = 0;
+            for (int entityId : entities) {
                 if (counterD1[entityId] < limitsD1[entityId]) {
-                    retainedEntities.add(entityId);
+                    retainedEntities[noOfRetained++] = entityId;
                 }
             }
 
-            if (1 < retainedEntities.size()) {
-                for (TIntIterator iterator = retainedEntities.iterator(); iterator.hasNext();) {
-                    counterD1[iterator.next()]++;
+            if (1 < noOfRetained) {
+                for (int i = 0; i < noOfRetained; i++) {
+                    counterD1[retainedEntities[i]]++;
+                }
+
+                if (noOfRetained == entities.length) {
+                    newBlocks.add(oldBlock);
+                } else {
+                    newBlocks.add(new UnilateralBlock(Arrays.copyOf(retainedEntities, noOfRetained)));
                 }
-                newBlocks.add(new UnilateralBlock(retainedEntities.toArray()));
             }
         }
 
@@ -298,7 +491,45 @@ public class BlockFiltering extends AbstractBlockProcessing {
         ratio = (Double) randomRatio.getNumberedRandom(iterationNumber);
     }
 
+    //the entity counting, the limits and the sorting of the blocks are performed in parallel
+    public void setNoOfThreads(int threads) {
+        noOfThreads = Math.max(1, threads);
+    }
+
+    //returns the given block ids in increasing cardinality of their blocks, like sortBlocks
+    protected int[] sortBlocks(BlockCollection blocks, int[] blockIds) {
+        final double[] cardinalities = new double[blockIds.length];
+        for (int i = 0; i < blockIds.length; i++) {
+            cardinalities[i] = blocks.getNoOfComparisons(blockIds[i]);
+        }
+
+        final long[] sortingKeys = getSortingKeys(cardinalities);
+        final int[] sortedBlockIds = new int[blockIds.length];
+        for (int i = 0; i < sortingKeys.length; i++) {
+            sortedBlockIds[i] = blockIds[(int) sortingKeys[i]];
+        }
+        return sortedBlockIds;
+    }
+
+    //sorts the blocks in place in increasing cardinality, like the IncBlockCardinalityComparator, but through a primitive sort of their positions
     protected void sortBlocks(List<AbstractBlock> blocks) {
-        Collections.sort(blocks, new IncBlockCardinalityComparator());
+        final AbstractBlock[] blocksArray = blocks.toArray(new AbstractBlock[blocks.size()]);
+        final double[] cardinalities = new double[blocksArray.length];
+        for (int i = 0; i < blocksArray.length; i++) {
+            cardinalities[i] = blocksArray[i].getNoOfComparisons();
+        }
+
+        final long[] sortingKeys = getSortingKeys(cardinalities);
+        for (int i = 0; i < sortingKeys.length; i++) {
+            blocks.set(i, blocksArray[(int) sortingKeys[i]]);
+        }
+    }
+
+    private void sort(long[] values) {
+        if (1 < noOfThreads) {
+            Arrays.parallelSort(values);
+        } else {
+            Arrays.sort(values);
+        }
     }
 }
@@ -16,13 +16,12 @@
 package org.scify.jedai.blockprocessing.blockcleaning;
 
 import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.BlockCollection;
 import org.scify.jedai.utilities.comparators.IncBlockCardinalityComparator;
 
 import com.esotericsoftware.minlog.Log;
 
-import gnu.trove.set.TDoubleSet;
-import gnu.trove.set.hash.TDoubleHashSet;
-
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -37,8 +36,23 @@ import org.scify.jedai.configuration.randomsearch.DblRandomSearchConfiguration;
  */
 public class ComparisonsBasedBlockPurging extends AbstractBlockPurging {
 
+    private final static int BUCKETS_PER_OCTAVE = 16;
+    private final static int NO_OF_BUCKETS = 64 * BUCKETS_PER_OCTAVE + 2;
+    private final static double LOG_2 = Math.log(2);
+
+    protected boolean cachedHistogram;
+    protected boolean histogramEstimation;
+    protected boolean histogramReuse;
     private double smoothingFactor;
     private double maxComparisonsPerBlock;
+    //the cumulative block assignments and comparisons of every cardinality level in increasing order
+    protected double[] blockAssignments;
+    protected double[] comparisonsLevel;
+    protected double[] totalComparisonsPerLevel;
+    //the assignments, comparisons and largest cardinality of every bucket of the histogram under construction
+    private double[] bucketAssignments;
+    private double[] bucketCardinalities;
+    private double[] bucketComparisons;
 
     protected final DblGridSearchConfiguration gridSFactor;
     protected final DblRandomSearchConfiguration randomSFactor;
@@ -54,6 +68,107 @@ public class ComparisonsBasedBlockPurging extends AbstractBlockPurging {
         randomSFactor = new DblRandomSearchConfiguration(2.0, 1.0);
     }
 
+    private void addToBucket(double comparisons, double assignments) {
+        int bucket = getBucket(comparisons);
+        bucketAssignments[bucket] += assignments;
+        bucketComparisons[bucket] += comparisons;
+        bucketCardinalities[bucket] = Math.max(bucketCardinalities[bucket], comparisons);
+    }
+
+    //every level of the histogram corresponds to a non-empty bucket of cardinalities with the same logarithm in a fine base;
+    //its cardinality is the largest one in the bucket, so that the estimated threshold coincides with an actual cardinality
+    protected void buildHistogram(BlockCollection blocks) {
+        initializeBuckets();
+        for (int blockId = 0; blockId < blocks.getNoOfBlocks(); blockId++) {
+            addToBucket(blocks.getNoOfComparisons(blockId), blocks.getBlockAssignments(blockId));
+        }
+        setHistogramLevels();
+    }
+
+    protected void buildHistogram(List<AbstractBlock> blocks) {
+        initializeBuckets();
+        for (AbstractBlock block : blocks) {
+            addToBucket(block.getNoOfComparisons(), block.getTotalBlockAssignments());
+        }
+        setHistogramLevels();
+    }
+
+    //every level corresponds to a distinct cardinality; the blocks of the collection are not sorted, hence only their
+    //distinct cardinalities are sorted and the blocks are assigned to their levels through a binary search
+    protected void buildLevels(BlockCollection blocks) {
+        final double[] sortedComparisons = new double[blocks.getNoOfBlocks()];
+        for (int blockId = 0; blockId < sortedComparisons.length; blockId++) {
+            sortedComparisons[blockId] = blocks.getNoOfComparisons(blockId);
+        }
+        Arrays.sort(sortedComparisons);
+
+        int noOfLevels = 0;
+        for (int i = 0; i < sortedComparisons.length; i++) {
+            if (i == 0 || sortedComparisons[noOfLevels - 1] != sortedComparisons[i]) {
+                sortedComparisons[noOfLevels++] = sortedComparisons[i];
+            }
+        }
+
+        comparisonsLevel = Arrays.copyOf(sortedComparisons, noOfLevels);
+        blockAssignments = new double[noOfLevels];
+        totalComparisonsPerLevel = new double[noOfLevels];
+        for (int blockId = 0; blockId < blocks.getNoOfBlocks(); blockId++) {
+            int level = Arrays.binarySearch(comparisonsLevel, blocks.getNoOfComparisons(blockId));
+            blockAssignments[level] += blocks.getBlockAssignments(blockId);
+            totalComparisonsPerLevel[level] += blocks.getNoOfComparisons(blockId);
+        }
+
+        for (int level = 1; level < noOfLevels; level++) {
+            blockAssignments[level] += blockAssignments[level - 1];
+            totalComparisonsPerLevel[level] += totalComparisonsPerLevel[level - 1];
+        }
+    }
+
+    //the blocks are sorted once in increasing cardinality, so that every level is a run of consecutive blocks
+    protected void buildLevels(List<AbstractBlock> blocks) {
+        Collections.sort(blocks, new IncBlockCardinalityComparator());
+
+        int noOfLevels = 0;
+        for (int i = 0; i < blocks.size(); i++) {
+            if (i == 0 || blocks.get(i - 1).getNoOfComparisons() != blocks.get(i).getNoOfComparisons()) {
+                noOfLevels++;
+            }
+        }
+
+        int index = -1;
+        blockAssignments = new double[noOfLevels];
+        comparisonsLevel = new double[noOfLevels];
+        totalComparisonsPerLevel = new double[noOfLevels];
+        for (AbstractBlock block : blocks) {
+            if (index == -1) {
+                index++;
+                comparisonsLevel[index] = block.getNoOfComparisons();
+            } else if (block.getNoOfComparisons() != comparisonsLevel[index]) {
+                index++;
+                comparisonsLevel[index] = block.getNoOfComparisons();
+                blockAssignments[index] = blockAssignments[index - 1];
+                totalComparisonsPerLevel[index] = totalComparisonsPerLevel[index - 1];
+            }
+
+            blockAssignments[index] += block.getTotalBlockAssignments();
+            totalComparisonsPerLevel[index] += block.getNoOfComparisons();
+        }
+    }
+
+    private int getBucket(double comparisons) {
+        if (comparisons < 1) {
+            return 0;
+        }
+        return 1 + Math.min(NO_OF_BUCKETS - 2, (int) (Math.log(comparisons) / LOG_2 * BUCKETS_PER_OCTAVE));
+    }
+
+    private void initializeBuckets() {
+        bucketAssignments = new double[NO_OF_BUCKETS];
+        bucketComparisons = new double[NO_OF_BUCKETS];
+        bucketCardinalities = new double[NO_OF_BUCKETS];
+        Arrays.fill(bucketCardinalities, -1);
+    }
+
     @Override
     public String getMethodConfiguration() {
         return getParameterName(0) + "=" + smoothingFactor;
@@ -119,54 +234,63 @@ public class ComparisonsBasedBlockPurging extends AbstractBlockPurging {
     }
 
     @Override
-    protected boolean satisfiesThreshold(AbstractBlock block) {
-        return block.getNoOfComparisons() <= maxComparisonsPerBlock;
+    public BlockCollection refineBlockCollection(BlockCollection blocks) {
+        final BlockCollection newBlocks = super.refineBlockCollection(blocks);
+        releaseLevels();
+        return newBlocks;
     }
-    
+
     @Override
-    public void setNextRandomConfiguration() {
-        smoothingFactor = (Double) randomSFactor.getNextRandomValue();
+    public List<AbstractBlock> refineBlocks(List<AbstractBlock> blocks) {
+        final List<AbstractBlock> newBlocks = super.refineBlocks(blocks);
+        releaseLevels();
+        return newBlocks;
     }
 
-    @Override
-    public void setNumberedGridConfiguration(int iterationNumber) {
-        smoothingFactor = (Double) gridSFactor.getNumberedValue(iterationNumber);
+    //the levels are kept after refining the blocks only if they form a histogram that will be reused
+    private void releaseLevels() {
+        if (!cachedHistogram) {
+            blockAssignments = null;
+            comparisonsLevel = null;
+            totalComparisonsPerLevel = null;
+        }
     }
-    
+
     @Override
-    public void setNumberedRandomConfiguration(int iterationNumber) {
-        smoothingFactor = (Double) randomSFactor.getNumberedRandom(iterationNumber);
+    protected boolean reordersBlocks() {
+        return !histogramEstimation;
+    }
+
+    public void resetHistogram() {
+        cachedHistogram = false;
+        releaseLevels();
     }
 
     @Override
-    protected void setThreshold(List<AbstractBlock> blocks) {
-        Collections.sort(blocks, new IncBlockCardinalityComparator());
-        final TDoubleSet distinctComparisonsLevel = new TDoubleHashSet();
-        blocks.forEach((block) -> {
-            distinctComparisonsLevel.add(block.getNoOfComparisons());
-        });
+    protected boolean satisfiesThreshold(BlockCollection blocks, int blockId) {
+        return blocks.getNoOfComparisons(blockId) <= maxComparisonsPerBlock;
+    }
 
-        int index = -1;
-        double[] blockAssignments = new double[distinctComparisonsLevel.size()];
-        double[] comparisonsLevel = new double[distinctComparisonsLevel.size()];
-        double[] totalComparisonsPerLevel = new double[distinctComparisonsLevel.size()];
-        for (AbstractBlock block : blocks) {
-            if (index == -1) {
-                index++;
-                comparisonsLevel[index] = block.getNoOfComparisons();
-                blockAssignments[index] = 0;
-                totalComparisonsPerLevel[index] = 0;
-            } else if (block.getNoOfComparisons() != comparisonsLevel[index]) {
-                index++;
-                comparisonsLevel[index] = block.getNoOfComparisons();
-                blockAssignments[index] = blockAssignments[index - 1];
-                totalComparisonsPerLevel[index] = totalComparisonsPerLevel[index - 1];
-            }
+    @Override
+    protected boolean satisfiesThreshold(AbstractBlock block) {
+        return block.getNoOfComparisons() <= maxComparisonsPerBlock;
+    }
 
-            blockAssignments[index] += block.getTotalBlockAssignments();
-            totalComparisonsPerLevel[index] += block.getNoOfComparisons();
-        }
+    //estimates the maximum comparisons per block from a histogram of the block cardinalities, which is built in a single pass
+    //without sorting the blocks
+    public void setHistogramEstimation(boolean histogram) {
+        histogramEstimation = histogram;
+        resetHistogram();
+    }
 
+    //with histogram estimation, the histogram of the first refined blocks is kept and reused for every smoothing factor,
+    //e.g., during grid and random search, until resetHistogram is called; this is necessary whenever the input blocks change
+    public void setHistogramReuse(boolean reuse) {
+        histogramReuse = reuse;
+        resetHistogram();
+    }
+    
+    protected void setMaxComparisons() {
         double currentBC = 0;
         double currentCC = 0;
         double currentSize = 0;
@@ -190,5 +314,79 @@ public class ComparisonsBasedBlockPurging extends AbstractBlockPurging {
 
         maxComparisonsPerBlock = previousSize;
         Log.info("Maximum comparisons per block\t:\t" + maxComparisonsPerBlock);
-    } 
+    }
+
+    private void setHistogramLevels() {
+        int noOfLevels = 0;
+        for (double cardinality : bucketCardinalities) {
+            if (0 <= cardinality) {
+                noOfLevels++;
+            }
+        }
+
+        int index = -1;
+        blockAssignments = new double[noOfLevels];
+        comparisonsLevel = new double[noOfLevels];
+        totalComparisonsPerLevel = new double[noOfLevels];
+        for (int bucket = 0; bucket < NO_OF_BUCKETS; bucket++) {
+            if (bucketCardinalities[bucket] < 0) {
+                continue;
+            }
+
+            index++;
+            comparisonsLevel[index] = bucketCardinalities[bucket];
+            blockAssignments[index] = bucketAssignments[bucket] + (index == 0 ? 0 : blockAssignments[index - 1]);
+            totalComparisonsPerLevel[index] = bucketComparisons[bucket] + (index == 0 ? 0 : totalComparisonsPerLevel[index - 1]);
+        }
+
+        bucketAssignments = null;
+        bucketCardinalities = null;
+        bucketComparisons = null;
+    }
+
+    @Override
+    public void setNextRandomConfiguration() {
+        smoothingFactor = (Double) randomSFactor.getNextRandomValue();
+    }
+
+    @Override
+    public void setNumberedGridConfiguration(int iterationNumber) {
+        smoothingFactor = (Double) gridSFactor.getNumberedValue(iterationNumber);
+    }
+    
+    @Override
+    public void setNumberedRandomConfiguration(int iterationNumber) {
+        smoothingFactor = (Double) randomSFactor.getNumberedRandom(iterationNumber);
+    }
+
+    //the cardinality levels are built from the offsets of the collection, without creating any block object
+    @Override
+    protected void setThreshold(BlockCollection blocks) {
+        if (histogramEstimation && cachedHistogram) {
+            Log.info("The histogram of the previous configuration is reused.");
+            setMaxComparisons();
+            return;
+        }
+
+        if (histogramEstimation) {
+            buildHistogram(blocks);
+            cachedHistogram = histogramReuse;
+        } else {
+            buildLevels(blocks);
+        }
+        setMaxComparisons();
+    }
+
+    @Override
+    protected void setThreshold(List<AbstractBlock> blocks) {
+        if (!histogramEstimation) {
+            buildLevels(blocks);
+        } else if (cachedHistogram) {
+            Log.info("The histogram of the previous configuration is reused.");
+        } else {
+            buildHistogram(blocks);
+            cachedHistogram = histogramReuse;
+        }
+        setMaxComparisons();
+    }
 }
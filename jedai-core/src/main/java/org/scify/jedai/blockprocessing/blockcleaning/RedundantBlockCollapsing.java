@@ -0,0 +1,349 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package org.scify.jedai.blockprocessing.blockcleaning;
+
+import org.scify.jedai.blockprocessing.AbstractBlockProcessing;
+import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.BilateralBlock;
+import org.scify.jedai.datamodel.UnilateralBlock;
+
+import com.esotericsoftware.minlog.Log;
+
+import gnu.trove.impl.Constants;
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.jena.atlas.json.JsonArray;
+
+/**
+ *
+ * @author gap2
+ */
+public class RedundantBlockCollapsing extends AbstractBlockProcessing {
+
+    private final static long HASH_BASE = 0x100000001B3L;
+
+    protected boolean cleanCleanER;
+    protected boolean subsetCollapsing;
+
+    protected int entitiesD2Offset;
+    protected int noOfBlocks;
+    protected boolean[] redundantBlocks;
+    protected int[] entityBlocks;
+    protected int[] entityOffsets;
+    protected int[][] entitiesD1;
+    protected int[][] entitiesD2;
+
+    public RedundantBlockCollapsing() {
+        subsetCollapsing = false;
+    }
+
+    //the blocks of every entity are indexed in compressed rows, with the entities of the second dataset following those of the first one
+    protected void buildEntityIndex() {
+        int noOfEntitiesD1 = 0;
+        int noOfEntitiesD2 = 0;
+        for (int i = 0; i < noOfBlocks; i++) {
+            noOfEntitiesD1 = Math.max(noOfEntitiesD1, getMaxEntityId(entitiesD1[i]) + 1);
+            if (cleanCleanER) {
+                noOfEntitiesD2 = Math.max(noOfEntitiesD2, getMaxEntityId(entitiesD2[i]) + 1);
+            }
+        }
+
+        entitiesD2Offset = noOfEntitiesD1;
+        final int noOfEntities = noOfEntitiesD1 + noOfEntitiesD2;
+        entityOffsets = new int[noOfEntities + 1];
+        for (int i = 0; i < noOfBlocks; i++) {
+            if (!redundantBlocks[i]) {
+                for (int entityId : entitiesD1[i]) {
+                    entityOffsets[entityId + 1]++;
+                }
+                if (cleanCleanER) {
+                    for (int entityId : entitiesD2[i]) {
+                        entityOffsets[entitiesD2Offset + entityId + 1]++;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < noOfEntities; i++) {
+            entityOffsets[i + 1] += entityOffsets[i];
+        }
+
+        final int[] positions = Arrays.copyOf(entityOffsets, noOfEntities);
+        entityBlocks = new int[entityOffsets[noOfEntities]];
+        for (int i = 0; i < noOfBlocks; i++) {
+            if (!redundantBlocks[i]) {
+                for (int entityId : entitiesD1[i]) {
+                    entityBlocks[positions[entityId]++] = i;
+                }
+                if (cleanCleanER) {
+                    for (int entityId : entitiesD2[i]) {
+                        entityBlocks[positions[entitiesD2Offset + entityId]++] = i;
+                    }
+                }
+            }
+        }
+    }
+
+    //blocks with the same sorted entities are detected through the hash of their entity lists
+    protected void collapseIdenticalBlocks() {
+        final int[] nextBlock = new int[noOfBlocks];
+        final TLongIntMap firstBlocks = new TLongIntHashMap(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, 0, -1);
+        for (int i = 0; i < noOfBlocks; i++) {
+            long hash = getHash(entitiesD1[i], 0);
+            if (cleanCleanER) {
+                hash = getHash(entitiesD2[i], hash * HASH_BASE + entitiesD1[i].length);
+            }
+
+            nextBlock[i] = -1;
+            int previousBlock = -1;
+            int candidate = firstBlocks.get(hash);
+            while (0 <= candidate) {
+                if (isIdentical(candidate, i)) {
+                    redundantBlocks[i] = true;
+                    break;
+                }
+                previousBlock = candidate;
+                candidate = nextBlock[candidate];
+            }
+
+            if (!redundantBlocks[i]) {
+                if (previousBlock < 0) {
+                    firstBlocks.put(hash, i);
+                } else {
+                    nextBlock[previousBlock] = i;
+                }
+            }
+        }
+    }
+
+    //a block is redundant if all its entities are contained in a larger block; it suffices to consider
+    //the blocks of its entity with the fewest blocks, as every superset block contains that entity, too
+    protected void collapseSubsetBlocks() {
+        buildEntityIndex();
+        for (int i = 0; i < noOfBlocks; i++) {
+            if (redundantBlocks[i]) {
+                continue;
+            }
+
+            int rarestEntity = getRarestEntity(i);
+            for (int j = entityOffsets[rarestEntity]; j < entityOffsets[rarestEntity + 1]; j++) {
+                int candidate = entityBlocks[j];
+                if (candidate != i && isSubset(i, candidate)) {
+                    redundantBlocks[i] = true;
+                    break;
+                }
+            }
+        }
+    }
+
+    private long getHash(int[] entities, long seed) {
+        long hash = seed;
+        for (int entityId : entities) {
+            hash = hash * HASH_BASE + entityId;
+        }
+        return hash;
+    }
+
+    private int getMaxEntityId(int[] entities) {
+        return entities.length == 0 ? -1 : entities[entities.length - 1];
+    }
+
+    @Override
+    public String getMethodConfiguration() {
+        return PARAMETER_FREE;
+    }
+
+    @Override
+    public String getMethodInfo() {
+        return getMethodName() + ": it merges the blocks that contain the same entities and, optionally, "
+                + "those whose entities are all contained in another block, as they entail no additional comparison.";
+    }
+
+    @Override
+    public String getMethodName() {
+        return "Redundant Block Collapsing";
+    }
+
+    @Override
+    public String getMethodParameters() {
+        return getMethodName() + " is a " + PARAMETER_FREE + ".";
+    }
+
+    @Override
+    public int getNumberOfGridConfigurations() {
+        return 1; // parameter-free
+    }
+
+    @Override
+    public JsonArray getParameterConfiguration() {
+        return new JsonArray();
+    }
+
+    @Override
+    public String getParameterDescription(int parameterId) {
+        return PARAMETER_FREE;
+    }
+
+    @Override
+    public String getParameterName(int parameterId) {
+        return PARAMETER_FREE;
+    }
+
+    private int getRarestEntity(int blockId) {
+        int rarestEntity = -1;
+        int minBlocks = Integer.MAX_VALUE;
+        for (int entityId : entitiesD1[blockId]) {
+            int noOfEntityBlocks = entityOffsets[entityId + 1] - entityOffsets[entityId];
+            if (noOfEntityBlocks < minBlocks) {
+                minBlocks = noOfEntityBlocks;
+                rarestEntity = entityId;
+            }
+        }
+        if (cleanCleanER) {
+            for (int entityId : entitiesD2[blockId]) {
+                int noOfEntityBlocks = entityOffsets[entitiesD2Offset + entityId + 1] - entityOffsets[entitiesD2Offset + entityId];
+                if (noOfEntityBlocks < minBlocks) {
+                    minBlocks = noOfEntityBlocks;
+                    rarestEntity = entitiesD2Offset + entityId;
+                }
+            }
+        }
+        return rarestEntity;
+    }
+
+    private int[] getSortedEntities(int[] entities) {
+        for (int i = 1; i < entities.length; i++) {
+            if (entities[i] < entities[i - 1]) {
+                final int[] sortedEntities = Arrays.copyOf(entities, entities.length);
+                Arrays.sort(sortedEntities);
+                return sortedEntities;
+            }
+        }
+        return entities;
+    }
+
+    protected void initializeEntities(List<AbstractBlock> blocks) {
+        noOfBlocks = blocks.size();
+        cleanCleanER = blocks.get(0) instanceof BilateralBlock;
+        redundantBlocks = new boolean[noOfBlocks];
+        entitiesD1 = new int[noOfBlocks][];
+        entitiesD2 = cleanCleanER ? new int[noOfBlocks][] : null;
+        for (int i = 0; i < noOfBlocks; i++) {
+            if (cleanCleanER) {
+                final BilateralBlock bilBlock = (BilateralBlock) blocks.get(i);
+                entitiesD1[i] = getSortedEntities(bilBlock.getIndex1Entities());
+                entitiesD2[i] = getSortedEntities(bilBlock.getIndex2Entities());
+            } else {
+                entitiesD1[i] = getSortedEntities(((UnilateralBlock) blocks.get(i)).getEntities());
+            }
+        }
+    }
+
+    private boolean isIdentical(int blockId1, int blockId2) {
+        if (!Arrays.equals(entitiesD1[blockId1], entitiesD1[blockId2])) {
+            return false;
+        }
+        return !cleanCleanER || Arrays.equals(entitiesD2[blockId1], entitiesD2[blockId2]);
+    }
+
+    //identical blocks have already been collapsed, thus a subset block is strictly smaller than its superset
+    private boolean isSubset(int blockId, int candidateId) {
+        if (!isSubset(entitiesD1[blockId], entitiesD1[candidateId])) {
+            return false;
+        }
+        return !cleanCleanER || isSubset(entitiesD2[blockId], entitiesD2[candidateId]);
+    }
+
+    //both arrays are sorted, so they are compared through a merge
+    private boolean isSubset(int[] entities, int[] candidateEntities) {
+        if (candidateEntities.length < entities.length) {
+            return false;
+        }
+
+        int j = 0;
+        for (int entityId : entities) {
+            while (j < candidateEntities.length && candidateEntities[j] < entityId) {
+                j++;
+            }
+            if (j == candidateEntities.length || candidateEntities[j] != entityId) {
+                return false;
+            }
+            j++;
+        }
+        return true;
+    }
+
+    @Override
+    public List<AbstractBlock> refineBlocks(List<AbstractBlock> blocks) {
+        Log.info("Applying " + getMethodName() + " with the following configuration : " + getMethodConfiguration());
+
+        if (blocks.isEmpty()) {
+            Log.warn("Empty set of blocks was given as input!");
+            return blocks;
+        }
+
+        printOriginalStatistics(blocks);
+        initializeEntities(blocks);
+        collapseIdenticalBlocks();
+        if (subsetCollapsing) {
+            collapseSubsetBlocks();
+        }
+
+        final List<AbstractBlock> newBlocks = new ArrayList<>();
+        for (int i = 0; i < noOfBlocks; i++) {
+            if (!redundantBlocks[i]) {
+                newBlocks.add(blocks.get(i));
+            }
+        }
+        Log.info("Collapsed blocks\t:\t" + (noOfBlocks - newBlocks.size()));
+
+        entityBlocks = null;
+        entityOffsets = null;
+        entitiesD1 = null;
+        entitiesD2 = null;
+        redundantBlocks = null;
+        return newBlocks;
+    }
+
+    @Override
+    public void setNextRandomConfiguration() {
+        Log.warn("Random search is inapplicable! " + getMethodName() + " is a parameter-free method!");
+    }
+
+    @Override
+    public void setNumberedGridConfiguration(int iterationNumber) {
+        Log.warn("Grid search is inapplicable! " + getMethodName() + " is a parameter-free method!");
+    }
+
+    @Override
+    public void setNumberedRandomConfiguration(int iterationNumber) {
+        Log.warn("Random search is inapplicable! " + getMethodName() + " is a parameter-free method!");
+    }
+
+    //when enabled, the blocks whose entities are all contained in a larger block are collapsed, too. This preserves the distinct
+    //comparisons only if no other block cleaning method follows: purging may discard the larger block and filtering ranks
+    //every entity's blocks by size, so either would lose the comparisons of the collapsed blocks. By default, only the blocks
+    //with identical entities are collapsed
+    public void setSubsetCollapsing(boolean subsets) {
+        subsetCollapsing = subsets;
+    }
+}
@@ -18,6 +18,7 @@ package org.scify.jedai.blockprocessing.blockcleaning;
 
 import org.scify.jedai.datamodel.AbstractBlock;
 import org.scify.jedai.datamodel.BilateralBlock;
+import org.scify.jedai.datamodel.BlockCollection;
 import org.scify.jedai.datamodel.UnilateralBlock;
 
 import com.esotericsoftware.minlog.Log;
@@ -25,6 +26,8 @@ import com.esotericsoftware.minlog.Log;
 import gnu.trove.set.TIntSet;
 import gnu.trove.set.hash.TIntHashSet;
 
+import java.nio.IntBuffer;
+import java.util.BitSet;
 import java.util.List;
 
 import org.apache.jena.atlas.json.JsonArray;
@@ -79,6 +82,14 @@ public class SizeBasedBlockPurging extends AbstractBlockPurging {
         return (int) Math.round(Math.min(d1Entities.size(), d2Entities.size())*purgingFactor);
     }
     
+    private int getNoOfEntities(IntBuffer entityIds) {
+        final BitSet entities = new BitSet();
+        for (int position = 0; position < entityIds.limit(); position++) {
+            entities.set(entityIds.get(position));
+        }
+        return entities.cardinality();
+    }
+    
     @Override
     public String getMethodConfiguration() {
         return getParameterName(0) + "=" + purgingFactor;
@@ -142,6 +153,19 @@ public class SizeBasedBlockPurging extends AbstractBlockPurging {
         }
     }
     
+    @Override
+    protected boolean reordersBlocks() {
+        return false;
+    }
+
+    @Override
+    protected boolean satisfiesThreshold(BlockCollection blocks, int blockId) {
+        if (isCleanCleanER) {
+            return Math.min(blocks.getInnerBlockSize(blockId, 0), blocks.getInnerBlockSize(blockId, 1)) <= maxEntities;
+        }
+        return blocks.getBlockAssignments(blockId) <= maxEntities;
+    }
+
     @Override
     protected boolean satisfiesThreshold(AbstractBlock block) {
         if (isCleanCleanER) {
@@ -166,6 +190,19 @@ public class SizeBasedBlockPurging extends AbstractBlockPurging {
         purgingFactor = (Double) randomPFactor.getNumberedRandom(iterationNumber);
     }
     
+    //the distinct entities are counted directly on the entity ids of the collection
+    @Override
+    protected void setThreshold(BlockCollection blocks) {
+        isCleanCleanER = blocks.isCleanCleanER();
+        if (isCleanCleanER) {
+            maxEntities = (int) Math.round(Math.min(getNoOfEntities(blocks.getEntityIds(0)), getNoOfEntities(blocks.getEntityIds(1)))*purgingFactor);
+            Log.info("Maximum inner block size per block\t:\t" + maxEntities);
+        } else {
+            maxEntities = (int) Math.round(getNoOfEntities(blocks.getEntityIds(0))*purgingFactor);
+            Log.info("Maximum entities per block\t:\t"+ maxEntities);
+        }
+    }
+
     @Override
     protected void setThreshold(List<AbstractBlock> blocks) {
         if (blocks.get(0) instanceof UnilateralBlock) {
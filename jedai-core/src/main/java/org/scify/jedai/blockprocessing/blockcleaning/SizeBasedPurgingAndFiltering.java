@@ -0,0 +1,289 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package org.scify.jedai.blockprocessing.blockcleaning;
+
+import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.BilateralBlock;
+import org.scify.jedai.datamodel.BlockCollection;
+import org.scify.jedai.datamodel.UnilateralBlock;
+
+import com.esotericsoftware.minlog.Log;
+
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.apache.jena.atlas.json.JsonArray;
+import org.apache.jena.atlas.json.JsonObject;
+import org.scify.jedai.configuration.gridsearch.DblGridSearchConfiguration;
+import org.scify.jedai.configuration.randomsearch.DblRandomSearchConfiguration;
+
+/**
+ *
+ * @author gap2
+ */
+public class SizeBasedPurgingAndFiltering extends BlockFiltering {
+
+    protected boolean isCleanCleanER;
+    protected double purgingFactor;
+    protected int maxEntities;
+
+    protected final DblGridSearchConfiguration gridPFactor;
+    protected final DblRandomSearchConfiguration randomPFactor;
+
+    public SizeBasedPurgingAndFiltering() {
+        this(0.005, 0.8);
+    }
+
+    public SizeBasedPurgingAndFiltering(double pf, double r) {
+        super(r);
+        purgingFactor = pf;
+
+        gridPFactor = new DblGridSearchConfiguration(0.20, 0.001, 0.005);
+        randomPFactor = new DblRandomSearchConfiguration(0.20, 0.001);
+    }
+
+    //a single pass over the entities of all blocks yields both the number of distinct entities, which determines the purging threshold,
+    //and the largest entity ids, which determine the size of the filtering counters
+    @Override
+    protected void countEntities(List<AbstractBlock> blocks) {
+        isCleanCleanER = blocks.get(0) instanceof BilateralBlock;
+        final List<BitSet[]> partialEntities = processInParallel(blocks.size(), (rangeStart, rangeEnd) -> {
+            final BitSet[] entities = {new BitSet(), new BitSet()};
+            for (AbstractBlock block : blocks.subList(rangeStart, rangeEnd)) {
+                if (isCleanCleanER) {
+                    final BilateralBlock bilBlock = (BilateralBlock) block;
+                    addEntities(bilBlock.getIndex1Entities(), entities[0]);
+                    addEntities(bilBlock.getIndex2Entities(), entities[1]);
+                } else {
+                    addEntities(((UnilateralBlock) block).getEntities(), entities[0]);
+                }
+            }
+            return entities;
+        });
+
+        final BitSet[] allEntities = partialEntities.get(0);
+        for (int i = 1; i < partialEntities.size(); i++) {
+            allEntities[0].or(partialEntities.get(i)[0]);
+            allEntities[1].or(partialEntities.get(i)[1]);
+        }
+        setMaxEntities(allEntities);
+    }
+
+    protected void countEntities(BlockCollection blocks) {
+        isCleanCleanER = blocks.isCleanCleanER();
+        final BitSet[] allEntities = {new BitSet(), new BitSet()};
+        for (int datasetId = 0; datasetId < (isCleanCleanER ? 2 : 1); datasetId++) {
+            final IntBuffer entityIds = blocks.getEntityIds(datasetId);
+            final List<BitSet> partialEntities = processInParallel(entityIds.limit(), (rangeStart, rangeEnd) -> {
+                final BitSet entities = new BitSet();
+                for (int position = rangeStart; position < rangeEnd; position++) {
+                    entities.set(entityIds.get(position));
+                }
+                return entities;
+            });
+
+            for (BitSet entities : partialEntities) {
+                allEntities[datasetId].or(entities);
+            }
+        }
+        setMaxEntities(allEntities);
+    }
+
+    private void addEntities(int[] entityIds, BitSet entities) {
+        for (int id : entityIds) {
+            entities.set(id);
+        }
+    }
+
+    @Override
+    public String getMethodConfiguration() {
+        return getParameterName(0) + "=" + purgingFactor + ",\t"
+                + getParameterName(1) + "=" + ratio;
+    }
+
+    @Override
+    public String getMethodInfo() {
+        return getMethodName() + ": it discards the blocks exceeding a certain number of entities and then, it retains every entity "
+                + "in a subset of its smallest blocks. Both steps share a single pass over the entities and a single list of blocks.";
+    }
+
+    @Override
+    public String getMethodName() {
+        return "Size-based Block Purging and Block Filtering";
+    }
+
+    @Override
+    public String getMethodParameters() {
+        return getMethodName() + " involves two parameters:\n"
+                + "1)" + getParameterDescription(0) + ".\n"
+                + "2)" + getParameterDescription(1) + ".";
+    }
+
+    @Override
+    public int getNumberOfGridConfigurations() {
+        return gridPFactor.getNumberOfConfigurations() * gridRatio.getNumberOfConfigurations();
+    }
+
+    @Override
+    public JsonArray getParameterConfiguration() {
+        final JsonObject obj1 = new JsonObject();
+        obj1.put("class", "java.lang.Double");
+        obj1.put("name", getParameterName(0));
+        obj1.put("defaultValue", "0.005");
+        obj1.put("minValue", "0.001");
+        obj1.put("maxValue", "0.200");
+        obj1.put("stepValue", "0.005");
+        obj1.put("description", getParameterDescription(0));
+
+        final JsonObject obj2 = new JsonObject();
+        obj2.put("class", "java.lang.Double");
+        obj2.put("name", getParameterName(1));
+        obj2.put("defaultValue", "0.8");
+        obj2.put("minValue", "0.025");
+        obj2.put("maxValue", "1.0");
+        obj2.put("stepValue", "0.025");
+        obj2.put("description", getParameterDescription(1));
+
+        final JsonArray array = new JsonArray();
+        array.add(obj1);
+        array.add(obj2);
+        return array;
+    }
+
+    @Override
+    public String getParameterDescription(int parameterId) {
+        switch (parameterId) {
+            case 0:
+                return "The " + getParameterName(0) + " determines indirectly the maximum number of entities per block.";
+            case 1:
+                return "The " + getParameterName(1) + " specifies the portion of the retained smaller blocks per entity.";
+            default:
+                return "invalid parameter id";
+        }
+    }
+
+    @Override
+    public String getParameterName(int parameterId) {
+        switch (parameterId) {
+            case 0:
+                return "Purging Factor";
+            case 1:
+                return "Filtering Ratio";
+            default:
+                return "invalid parameter id";
+        }
+    }
+
+    //the columnar counterpart of refineBlocks, which purges and filters the blocks of the given collection through their ids
+    @Override
+    public BlockCollection refineBlockCollection(BlockCollection blocks) {
+        Log.info("Applying " + getMethodName() + " with the following configuration : " + getMethodConfiguration());
+
+        printOriginalStatistics(blocks);
+        countEntities(blocks);
+
+        final TIntList retainedBlockIds = new TIntArrayList();
+        for (int blockId = 0; blockId < blocks.getNoOfBlocks(); blockId++) {
+            if (satisfiesThreshold(blocks, blockId)) {
+                retainedBlockIds.add(blockId);
+            }
+        }
+        Log.info("Purged blocks\t:\t" + (blocks.getNoOfBlocks() - retainedBlockIds.size()));
+        return filterBlocks(blocks, retainedBlockIds.toArray());
+    }
+
+    //the result is the same as that of Size-based Block Purging followed by Block Filtering,
+    //but the input is traversed once for both of them and only the retained blocks are copied into a new list
+    @Override
+    public List<AbstractBlock> refineBlocks(List<AbstractBlock> blocks) {
+        Log.info("Applying " + getMethodName() + " with the following configuration : " + getMethodConfiguration());
+
+        printOriginalStatistics(blocks);
+        countEntities(blocks);
+
+        final List<AbstractBlock> retainedBlocks = new ArrayList<>();
+        for (AbstractBlock block : blocks) {
+            if (satisfiesThreshold(block)) {
+                retainedBlocks.add(block);
+            }
+        }
+        Log.info("Purged blocks\t:\t" + (blocks.size() - retainedBlocks.size()));
+        if (retainedBlocks.isEmpty()) {
+            return retainedBlocks;
+        }
+
+        sortBlocks(retainedBlocks);
+        getLimits(retainedBlocks);
+        initializeCounters();
+        return restructureBlocks(retainedBlocks);
+    }
+
+    protected boolean satisfiesThreshold(BlockCollection blocks, int blockId) {
+        if (isCleanCleanER) {
+            return Math.min(blocks.getInnerBlockSize(blockId, 0), blocks.getInnerBlockSize(blockId, 1)) <= maxEntities;
+        }
+        return blocks.getBlockAssignments(blockId) <= maxEntities;
+    }
+
+    protected boolean satisfiesThreshold(AbstractBlock block) {
+        if (isCleanCleanER) {
+            final BilateralBlock bBlock = (BilateralBlock) block;
+            return Math.min(bBlock.getIndex1Entities().length, bBlock.getIndex2Entities().length) <= maxEntities;
+        }
+        return block.getTotalBlockAssignments() <= maxEntities;
+    }
+
+    //the number of distinct entities determines the purging threshold and the largest entity ids the size of the filtering counters
+    protected void setMaxEntities(BitSet[] allEntities) {
+        entitiesD1 = allEntities[0].length();
+        entitiesD2 = isCleanCleanER ? allEntities[1].length() : Integer.MIN_VALUE;
+        if (isCleanCleanER) {
+            maxEntities = (int) Math.round(Math.min(allEntities[0].cardinality(), allEntities[1].cardinality()) * purgingFactor);
+            Log.info("Maximum inner block size per block\t:\t" + maxEntities);
+        } else {
+            maxEntities = (int) Math.round(allEntities[0].cardinality() * purgingFactor);
+            Log.info("Maximum entities per block\t:\t" + maxEntities);
+        }
+    }
+
+    @Override
+    public void setNextRandomConfiguration() {
+        purgingFactor = (Double) randomPFactor.getNextRandomValue();
+        ratio = (Double) randomRatio.getNextRandomValue();
+    }
+
+    @Override
+    public void setNumberedGridConfiguration(int iterationNumber) {
+        int pFactorIteration = iterationNumber / gridRatio.getNumberOfConfigurations();
+        purgingFactor = (Double) gridPFactor.getNumberedValue(pFactorIteration);
+
+        int ratioIteration = iterationNumber - pFactorIteration * gridRatio.getNumberOfConfigurations();
+        ratio = (Double) gridRatio.getNumberedValue(ratioIteration);
+    }
+
+    @Override
+    public void setNumberedRandomConfiguration(int iterationNumber) {
+        purgingFactor = (Double) randomPFactor.getNumberedRandom(iterationNumber);
+        ratio = (Double) randomRatio.getNumberedRandom(iterationNumber);
+    }
+}
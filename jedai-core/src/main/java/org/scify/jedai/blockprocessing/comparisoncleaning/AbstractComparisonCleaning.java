@@ -19,6 +19,7 @@ package org.scify.jedai.blockprocessing.comparisoncleaning;
 import org.scify.jedai.blockprocessing.IBlockProcessing;
 import org.scify.jedai.datamodel.AbstractBlock;
 import org.scify.jedai.datamodel.BilateralBlock;
+import org.scify.jedai.datamodel.BlockCollection;
 import org.scify.jedai.datamodel.DecomposedBlock;
 import org.scify.jedai.datamodel.UnilateralBlock;
 import org.scify.jedai.utilities.datastructures.EntityIndex;
@@ -46,7 +47,8 @@ public abstract class AbstractComparisonCleaning implements IBlockProcessing {
 
     protected EntityIndex entityIndex;
     protected BilateralBlock[] bBlocks;
-    protected final TIntSet validEntities;
+    protected BlockCollection blockCollection;
+    protected TIntSet validEntities;
     protected UnilateralBlock[] uBlocks;
 
     public AbstractComparisonCleaning() {
@@ -75,20 +77,72 @@ public abstract class AbstractComparisonCleaning implements IBlockProcessing {
     
     protected abstract List<AbstractBlock> applyMainProcessing();
 
+    //the entities of a block are read by position: from the buffers of the block collection, if the entity index was built from one,
+    //or else from the arrays of the block objects
+    protected int getEntityId(int blockIndex, int position, int datasetId) {
+        if (blockCollection != null) {
+            return blockCollection.getEntityId(position, datasetId);
+        }
+
+        if (cleanCleanER) {
+            return datasetId == 0 ? bBlocks[blockIndex].getIndex1Entities()[position] : bBlocks[blockIndex].getIndex2Entities()[position];
+        }
+        return uBlocks[blockIndex].getEntities()[position];
+    }
+
+    protected int getFirstPosition(int blockIndex, int datasetId) {
+        if (blockCollection != null) {
+            return blockCollection.getOffset(blockIndex, datasetId);
+        }
+        return 0;
+    }
+
+    protected int getLastPosition(int blockIndex, int datasetId) {
+        if (blockCollection != null) {
+            return blockCollection.getOffset(blockIndex + 1, datasetId);
+        }
+
+        if (cleanCleanER) {
+            return datasetId == 0 ? bBlocks[blockIndex].getIndex1Entities().length : bBlocks[blockIndex].getIndex2Entities().length;
+        }
+        return uBlocks[blockIndex].getEntities().length;
+    }
+
+    protected double getNoOfComparisons(int blockIndex) {
+        if (blockCollection != null) {
+            return blockCollection.getNoOfComparisons(blockIndex);
+        }
+        return cleanCleanER ? bBlocks[blockIndex].getNoOfComparisons() : uBlocks[blockIndex].getNoOfComparisons();
+    }
+
+    protected List<AbstractBlock> initializeAndApply(int blocksSize) {
+        cleanCleanER = entityIndex.isCleanCleanER();
+        datasetLimit = entityIndex.getDatasetLimit();
+        noOfBlocks = blocksSize;
+        noOfEntities = entityIndex.getNoOfEntities();
+        //the block objects are used only when the entity index was built from a list of blocks
+        blockCollection = entityIndex.getBlockCollection();
+        bBlocks = blockCollection == null ? entityIndex.getBilateralBlocks() : null;
+        uBlocks = blockCollection == null ? entityIndex.getUnilateralBlocks() : null;
+
+        return applyMainProcessing();
+    }
+
     @Override
     public List<AbstractBlock> refineBlocks(List<AbstractBlock> blocks) {
         Log.info("Applying " + getMethodName() + " with the following configuration : " + getMethodConfiguration());
         
         entityIndex = new EntityIndex(blocks);
-        
-        cleanCleanER = entityIndex.isCleanCleanER();
-        datasetLimit = entityIndex.getDatasetLimit();
-        noOfBlocks = blocks.size();
-        noOfEntities = entityIndex.getNoOfEntities();
-        bBlocks = entityIndex.getBilateralBlocks();
-        uBlocks = entityIndex.getUnilateralBlocks();
+        return initializeAndApply(blocks.size());
+    }
 
-        return applyMainProcessing();
+    //the entity index is built directly from the block collection
+    @Override
+    public List<AbstractBlock> refineBlocks(BlockCollection blocks) {
+        Log.info("Applying " + getMethodName() + " with the following configuration : " + getMethodConfiguration());
+
+        entityIndex = new EntityIndex(blocks);
+        return initializeAndApply(blocks.getNoOfBlocks());
     }
     
     protected int[] replicateId(int entityId, int times) {
@@ -19,13 +19,18 @@ import org.scify.jedai.datamodel.AbstractBlock;
 import org.scify.jedai.datamodel.BilateralBlock;
 import org.scify.jedai.datamodel.Comparison;
 import org.scify.jedai.datamodel.UnilateralBlock;
+import org.scify.jedai.utilities.RangeExecutor;
 import org.scify.jedai.utilities.enumerations.WeightingScheme;
 
+import com.esotericsoftware.minlog.Log;
+
 import gnu.trove.list.TIntList;
 import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.set.TIntSet;
 import gnu.trove.set.hash.TIntHashSet;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.jena.atlas.json.JsonArray;
@@ -35,10 +40,11 @@ import org.apache.jena.atlas.json.JsonObject;
  *
  * @author G.A.P. II
  */
-public abstract class AbstractMetablocking extends AbstractComparisonCleaning {
+public abstract class AbstractMetablocking extends AbstractComparisonCleaning implements Cloneable {
     
     protected boolean nodeCentric;
 
+    protected int noOfThreads;
     protected int[] flags;
 
     protected double threshold;
@@ -47,12 +53,13 @@ public abstract class AbstractMetablocking extends AbstractComparisonCleaning {
     protected double[] comparisonsPerEntity;
     protected double[] counters;
 
-    protected final TIntList neighbors;
-    protected final TIntList retainedNeighbors;
+    protected TIntList neighbors;
+    protected TIntList retainedNeighbors;
     protected WeightingScheme weightingScheme;
 
     public AbstractMetablocking(WeightingScheme wScheme) {
         super();
+        noOfThreads = 1;
         neighbors = new TIntArrayList();
         retainedNeighbors = new TIntArrayList();
         weightingScheme = wScheme;
@@ -62,16 +69,25 @@ public abstract class AbstractMetablocking extends AbstractComparisonCleaning {
 
     protected abstract void setThreshold();
 
+    //the retained neighbors are sorted, because the iteration order of validEntities depends on the capacity history of the set,
+    //which differs between the threshold and the pruning pass, as well as between the workers of the parallel execution; they are expected in the form they are added to the decomposed block
+    protected void addRetainedNeighbors(int entityId, List<AbstractBlock> newBlocks) {
+        retainedNeighbors.sort();
+        if (!cleanCleanER || entityId < datasetLimit) {
+            addDecomposedBlock(entityId, retainedNeighbors, newBlocks);
+        } else {
+            addReversedDecomposedBlock(entityId - datasetLimit, retainedNeighbors, newBlocks);
+        }
+    }
+
     @Override
     protected List<AbstractBlock> applyMainProcessing() {
-        counters = new double[noOfEntities];
-        flags = new int[noOfEntities];
-        for (int i = 0; i < noOfEntities; i++) {
-            flags[i] = -1;
-        }
+        initializeCounters();
 
         blockAssingments = 0;
-        if (cleanCleanER) {
+        if (blockCollection != null) {
+            blockAssingments = blockCollection.getTotalBlockAssignments();
+        } else if (cleanCleanER) {
             for (BilateralBlock bBlock : bBlocks) {
                 blockAssingments += bBlock.getTotalBlockAssignments();
             }
@@ -86,11 +102,13 @@ public abstract class AbstractMetablocking extends AbstractComparisonCleaning {
         }
 
         setThreshold();
+        resetFlags();
         return pruneEdges();
     }
 
     protected void freeMemory() {
         bBlocks = null;
+        blockCollection = null;
         flags = null;
         counters = null;
         uBlocks = null;
@@ -118,15 +136,9 @@ public abstract class AbstractMetablocking extends AbstractComparisonCleaning {
                 + "1)" + getParameterDescription(0) + ".\n";
     }
 
-    protected int[] getNeighborEntities(int blockIndex, int entityId) {
-        if (cleanCleanER) {
-            if (entityId < datasetLimit) {
-                return bBlocks[blockIndex].getIndex2Entities();
-            } else {
-                return bBlocks[blockIndex].getIndex1Entities();
-            }
-        }
-        return uBlocks[blockIndex].getEntities();
+    //the dataset of the blocks that contains the neighbors of the given entity
+    protected int getNeighborDataset(int entityId) {
+        return cleanCleanER && entityId < datasetLimit ? 1 : 0;
     }
 
     @Override
@@ -182,27 +194,77 @@ public abstract class AbstractMetablocking extends AbstractComparisonCleaning {
         return -1;
     }
 
+    //a copy of this method that shares the blocks, the entity index and the arrays with the results of every entity,
+    //but has its own counters and buffers, so that it processes a range of entities independently of the other workers
+    protected AbstractMetablocking getWorker() {
+        final AbstractMetablocking worker;
+        try {
+            worker = (AbstractMetablocking) clone();
+        } catch (CloneNotSupportedException ex) {
+            Log.error("The workers of " + getMethodName() + " cannot be created!", ex);
+            throw new IllegalStateException(ex);
+        }
+
+        worker.initializeBuffers();
+        return worker;
+    }
+
+    protected void initializeBuffers() {
+        initializeCounters();
+        neighbors = new TIntArrayList();
+        retainedNeighbors = new TIntArrayList();
+        validEntities = new TIntHashSet();
+    }
+
+    protected void initializeCounters() {
+        counters = new double[noOfEntities];
+        flags = new int[noOfEntities];
+        resetFlags();
+    }
+
+    //splits the entity ids from 0 to limit into one range per thread, which is processed by a separate worker;
+    //the results are returned in the order of the ranges, so that they are merged deterministically.
+    //with a single thread, the entire range is processed by this method itself
+    @SuppressWarnings("unchecked")
+    protected <W extends AbstractMetablocking, T> List<T> processEntities(int limit, EntityRangeTask<W, T> task) {
+        if (!RangeExecutor.isParallel(limit, noOfThreads)) {
+            final List<T> results = new ArrayList<>();
+            results.add(task.process((W) this, 0, limit));
+            return results;
+        }
+        return RangeExecutor.processRanges(0, limit, noOfThreads, getMethodName(), (rangeStart, rangeEnd) -> task.process((W) getWorker(), rangeStart, rangeEnd));
+    }
+
+    //the flags mark the neighbors whose counters have been updated for the current entity; they are reset after setting the threshold,
+    //because otherwise the entity processed last during the threshold pass would add to its old counters when it is pruned
+    protected void resetFlags() {
+        Arrays.fill(flags, -1);
+    }
+
+    public void setNoOfThreads(int threads) {
+        noOfThreads = Math.max(1, threads);
+    }
+
     protected void setNormalizedNeighborEntities(int blockIndex, int entityId) {
         neighbors.clear();
+        final int datasetId = getNeighborDataset(entityId);
+        final int lastPosition = getLastPosition(blockIndex, datasetId);
         if (cleanCleanER) {
-            if (entityId < datasetLimit) {
-                for (int originalId : bBlocks[blockIndex].getIndex2Entities()) {
-                    neighbors.add(originalId + datasetLimit);
-                }
-            } else {
-                for (int originalId : bBlocks[blockIndex].getIndex1Entities()) {
-                    neighbors.add(originalId);
-                }
+            final int idOffset = datasetId == 1 ? datasetLimit : 0;
+            for (int position = getFirstPosition(blockIndex, datasetId); position < lastPosition; position++) {
+                neighbors.add(getEntityId(blockIndex, position, datasetId) + idOffset);
             }
         } else {
             if (!nodeCentric) {
-                for (int neighborId : uBlocks[blockIndex].getEntities()) {
+                for (int position = getFirstPosition(blockIndex, datasetId); position < lastPosition; position++) {
+                    int neighborId = getEntityId(blockIndex, position, datasetId);
                     if (neighborId < entityId) {
                         neighbors.add(neighborId);
                     }
                 }
             } else {
-                for (int neighborId : uBlocks[blockIndex].getEntities()) {
+                for (int position = getFirstPosition(blockIndex, datasetId); position < lastPosition; position++) {
+                    int neighborId = getEntityId(blockIndex, position, datasetId);
                     if (neighborId != entityId) {
                         neighbors.add(neighborId);
                     }
@@ -212,25 +274,40 @@ public abstract class AbstractMetablocking extends AbstractComparisonCleaning {
     }
 
     protected void setStatistics() {
-        distinctComparisons = 0;
         comparisonsPerEntity = new double[noOfEntities];
-        final TIntSet distinctNeighbors = new TIntHashSet();
-        for (int i = 0; i < noOfEntities; i++) {
-            final int[] associatedBlocks = entityIndex.getEntityBlocks(i, 0);
-            if (associatedBlocks.length != 0) {
-                distinctNeighbors.clear();
-                for (int blockIndex : associatedBlocks) {
-                    for (int neighborId : getNeighborEntities(blockIndex, i)) {
-                        distinctNeighbors.add(neighborId);
+        final List<Double> partialComparisons = processEntities(noOfEntities, (AbstractMetablocking worker, int rangeStart, int rangeEnd) -> {
+            double rangeComparisons = 0;
+            final TIntSet distinctNeighbors = new TIntHashSet();
+            for (int i = rangeStart; i < rangeEnd; i++) {
+                final int[] associatedBlocks = entityIndex.getEntityBlocks(i, 0);
+                if (associatedBlocks.length != 0) {
+                    distinctNeighbors.clear();
+                    final int datasetId = getNeighborDataset(i);
+                    for (int blockIndex : associatedBlocks) {
+                        final int lastPosition = getLastPosition(blockIndex, datasetId);
+                        for (int position = getFirstPosition(blockIndex, datasetId); position < lastPosition; position++) {
+                            distinctNeighbors.add(getEntityId(blockIndex, position, datasetId));
+                        }
                     }
+                    comparisonsPerEntity[i] = distinctNeighbors.size();
+                    if (!cleanCleanER) {
+                        comparisonsPerEntity[i]--;
+                    }
+                    rangeComparisons += comparisonsPerEntity[i];
                 }
-                comparisonsPerEntity[i] = distinctNeighbors.size();
-                if (!cleanCleanER) {
-                    comparisonsPerEntity[i]--;
-                }
-                distinctComparisons += comparisonsPerEntity[i];
             }
+            return rangeComparisons;
+        });
+
+        distinctComparisons = 0;
+        for (double rangeComparisons : partialComparisons) {
+            distinctComparisons += rangeComparisons;
         }
         distinctComparisons /= 2;
     }
+
+    protected interface EntityRangeTask<W extends AbstractMetablocking, T> {
+
+        T process(W worker, int rangeStart, int rangeEnd);
+    }
 }
@@ -79,21 +79,39 @@ public class CardinalityEdgePruning extends WeightedEdgePruning {
         return "Cardinality Edge Pruning";
     }
 
+    @Override
+    protected void initializeBuffers() {
+        super.initializeBuffers();
+        minimumWeight = Double.MIN_VALUE;
+        topKEdges = new PriorityQueue<>(Math.max(1, (int) (2 * threshold)), new IncComparisonWeightComparator());
+    }
+
     @Override
     protected List<AbstractBlock> pruneEdges() {
         minimumWeight = Double.MIN_VALUE;
         topKEdges = new PriorityQueue<>((int) (2 * threshold), new IncComparisonWeightComparator());
 
         int limit = cleanCleanER ? datasetLimit : noOfEntities;
-        if (weightingScheme.equals(WeightingScheme.ARCS)) {
-            for (int i = 0; i < limit; i++) {
-                processArcsEntity(i);
-                verifyValidEntities(i);
+        final List<Queue<Comparison>> partialTopKEdges = processEntities(limit, (CardinalityEdgePruning worker, int rangeStart, int rangeEnd) -> {
+            for (int i = rangeStart; i < rangeEnd; i++) {
+                worker.processEntityByScheme(i);
+                worker.verifyValidEntities(i);
             }
-        } else {
-            for (int i = 0; i < limit; i++) {
-                processEntity(i);
-                verifyValidEntities(i);
+            return worker.topKEdges;
+        });
+
+        //the top-k edges of every range of entities are merged in the order of the ranges
+        if (1 < partialTopKEdges.size()) {
+            for (Queue<Comparison> rangeTopKEdges : partialTopKEdges) {
+                for (Comparison comparison : rangeTopKEdges) {
+                    if (!(comparison.getUtilityMeasure() < minimumWeight)) {
+                        topKEdges.add(comparison);
+                        if (threshold < topKEdges.size()) {
+                            final Comparison lastComparison = topKEdges.poll();
+                            minimumWeight = lastComparison.getUtilityMeasure();
+                        }
+                    }
+                }
             }
         }
 
@@ -77,17 +77,13 @@ public class CardinalityNodePruning extends CardinalityEdgePruning {
     protected List<AbstractBlock> pruneEdges() {
         nearestEntities = new TIntSet[noOfEntities];
         topKEdges = new PriorityQueue<>((int) (2 * threshold), new IncComparisonWeightComparator());
-        if (weightingScheme.equals(WeightingScheme.ARCS)) {
-            for (int i = 0; i < noOfEntities; i++) {
-                processArcsEntity(i);
-                verifyValidEntities(i);
+        processEntities(noOfEntities, (CardinalityNodePruning worker, int rangeStart, int rangeEnd) -> {
+            for (int i = rangeStart; i < rangeEnd; i++) {
+                worker.processEntityByScheme(i);
+                worker.verifyValidEntities(i);
             }
-        } else {
-            for (int i = 0; i < noOfEntities; i++) {
-                processEntity(i);
-                verifyValidEntities(i);
-            }
-        }
+            return null;
+        });
 
         return retainValidComparisons();
     }
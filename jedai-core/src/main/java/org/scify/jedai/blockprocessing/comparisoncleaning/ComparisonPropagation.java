@@ -90,8 +90,9 @@ public class ComparisonPropagation extends AbstractComparisonCleaning {
             if (associatedBlocks.length != 0) {
                 validEntities.clear();
                 for (int blockIndex : associatedBlocks) {
-                    for (int neighborId : bBlocks[blockIndex].getIndex2Entities()) {
-                        validEntities.add(neighborId);
+                    final int lastPosition = getLastPosition(blockIndex, 1);
+                    for (int position = getFirstPosition(blockIndex, 1); position < lastPosition; position++) {
+                        validEntities.add(getEntityId(blockIndex, position, 1));
                     }
                 }
                 addDecomposedBlock(i, validEntities, newBlocks);
@@ -105,7 +106,9 @@ public class ComparisonPropagation extends AbstractComparisonCleaning {
             if (associatedBlocks.length != 0) {
                 validEntities.clear();
                 for (int blockIndex : associatedBlocks) {
-                    for (int neighborId : uBlocks[blockIndex].getEntities()) {
+                    final int lastPosition = getLastPosition(blockIndex, 0);
+                    for (int position = getFirstPosition(blockIndex, 0); position < lastPosition; position++) {
+                        int neighborId = getEntityId(blockIndex, position, 0);
                         if (neighborId < i) {
                             validEntities.add(neighborId);
                         }
@@ -22,6 +22,7 @@ import com.esotericsoftware.minlog.Log;
 import gnu.trove.iterator.TIntIterator;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.scify.jedai.configuration.gridsearch.IntGridSearchConfiguration;
 import org.scify.jedai.configuration.randomsearch.IntRandomSearchConfiguration;
@@ -32,8 +33,13 @@ import org.scify.jedai.configuration.randomsearch.IntRandomSearchConfiguration;
  */
 public class WeightedEdgePruning extends AbstractMetablocking {
 
+    protected long maxCachedEdges;
+
     protected double noOfEdges;
 
+    protected EdgeWeightBuffer edgeWeights;
+    protected List<EdgeWeightBuffer> rangeEdgeWeights;
+
     protected final IntGridSearchConfiguration gridWScheme;
     protected final IntRandomSearchConfiguration randomWScheme;
     
@@ -44,6 +50,7 @@ public class WeightedEdgePruning extends AbstractMetablocking {
     public WeightedEdgePruning(WeightingScheme scheme) {
         super(scheme);
         nodeCentric = false;
+        maxCachedEdges = 0;
         
         gridWScheme = new IntGridSearchConfiguration(weightingScheme.values().length - 1, 0, 1);
         randomWScheme = new IntRandomSearchConfiguration(weightingScheme.values().length, 0);
@@ -65,6 +72,19 @@ public class WeightedEdgePruning extends AbstractMetablocking {
         return "Weighted Edge Pruning";
     }
     
+    protected EdgeWeightBuffer getEdgeWeights(int rangeStart) {
+        if (rangeEdgeWeights == null) {
+            return null;
+        }
+
+        for (EdgeWeightBuffer buffer : rangeEdgeWeights) {
+            if (buffer.firstEntity == rangeStart) {
+                return buffer;
+            }
+        }
+        return null;
+    }
+
     @Override
     public int getNumberOfGridConfigurations() {
         return gridWScheme.getNumberOfConfigurations();
@@ -78,7 +98,7 @@ public class WeightedEdgePruning extends AbstractMetablocking {
         }
 
         for (int blockIndex : associatedBlocks) {
-            double blockComparisons = cleanCleanER ? bBlocks[blockIndex].getNoOfComparisons() : uBlocks[blockIndex].getNoOfComparisons();
+            double blockComparisons = getNoOfComparisons(blockIndex);
             setNormalizedNeighborEntities(blockIndex, entityId);
             for (TIntIterator tIterator = neighbors.iterator(); tIterator.hasNext();) {
                 int neighborId = tIterator.next();
@@ -93,6 +113,14 @@ public class WeightedEdgePruning extends AbstractMetablocking {
         }
     }
 
+    protected void processEntityByScheme(int entityId) {
+        if (weightingScheme.equals(WeightingScheme.ARCS)) {
+            processArcsEntity(entityId);
+        } else {
+            processEntity(entityId);
+        }
+    }
+
     protected void processEntity(int entityId) {
         validEntities.clear();
         final int[] associatedBlocks = entityIndex.getEntityBlocks(entityId, 0);
@@ -117,22 +145,42 @@ public class WeightedEdgePruning extends AbstractMetablocking {
 
     @Override
     protected List<AbstractBlock> pruneEdges() {
-        List<AbstractBlock> newBlocks = new ArrayList<>();
-        int limit = cleanCleanER ? datasetLimit : noOfEntities;
-        if (weightingScheme.equals(WeightingScheme.ARCS)) {
-            for (int i = 0; i < limit; i++) {
-                processArcsEntity(i);
-                verifyValidEntities(i, newBlocks);
-            }
-        } else {
-            for (int i = 0; i < limit; i++) {
-                processEntity(i);
-                verifyValidEntities(i, newBlocks);
+        return pruneEdges(cleanCleanER ? datasetLimit : noOfEntities);
+    }
+
+    //the decomposed blocks of every range of entities are concatenated in the order of the ranges
+    protected List<AbstractBlock> pruneEdges(int limit) {
+        final List<List<AbstractBlock>> partialBlocks = processEntities(limit, (WeightedEdgePruning worker, int rangeStart, int rangeEnd) -> {
+            final List<AbstractBlock> rangeBlocks = new ArrayList<>();
+            final EdgeWeightBuffer cachedWeights = getEdgeWeights(rangeStart);
+            for (int i = rangeStart; i < rangeEnd; i++) {
+                if (cachedWeights != null && i < cachedWeights.lastEntity) {
+                    worker.verifyCachedEntities(i, cachedWeights, rangeBlocks);
+                } else {
+                    worker.processEntityByScheme(i);
+                    worker.verifyValidEntities(i, rangeBlocks);
+                }
             }
+            return rangeBlocks;
+        });
+        rangeEdgeWeights = null;
+
+        if (partialBlocks.size() == 1) {
+            return partialBlocks.get(0);
         }
+
+        final List<AbstractBlock> newBlocks = new ArrayList<>();
+        partialBlocks.forEach(newBlocks::addAll);
         return newBlocks;
     }
 
+    //with a positive number of edges, the weights computed while setting the threshold are kept in memory
+    //(12 bytes per edge) and are filtered directly, instead of traversing the blocking graph once more;
+    //the entities whose edges exceed this limit are processed again while pruning
+    public void setMaxCachedEdges(long edges) {
+        maxCachedEdges = Math.max(0, edges);
+    }
+
     @Override
     public void setNextRandomConfiguration() {
         int schemeId = (Integer) randomWScheme.getNextRandomValue();
@@ -153,34 +201,74 @@ public class WeightedEdgePruning extends AbstractMetablocking {
     
     @Override
     protected void setThreshold() {
-        noOfEdges = 0;
-        threshold = 0;
-
+        //every range of entities sums its own edges and weights, which are added in the order of the ranges
         int limit = cleanCleanER ? datasetLimit : noOfEntities;
-        if (weightingScheme.equals(WeightingScheme.ARCS)) {
-            for (int i = 0; i < limit; i++) {
-                processArcsEntity(i);
-                updateThreshold(i);
+        final List<WeightedEdgePruning> workers = processEntities(limit, (WeightedEdgePruning worker, int rangeStart, int rangeEnd) -> {
+            worker.noOfEdges = 0;
+            worker.threshold = 0;
+            worker.edgeWeights = null;
+            if (0 < maxCachedEdges && rangeStart < rangeEnd) {
+                //every range may cache a share of the edges proportional to its size
+                long rangeEdges = (long) Math.ceil(((double) maxCachedEdges) * (rangeEnd - rangeStart) / limit);
+                worker.edgeWeights = new EdgeWeightBuffer(rangeStart, rangeEnd, (int) Math.min(Integer.MAX_VALUE - 8, rangeEdges));
             }
-        } else {
-            for (int i = 0; i < limit; i++) {
-                processEntity(i);
-                updateThreshold(i);
+
+            for (int i = rangeStart; i < rangeEnd; i++) {
+                worker.processEntityByScheme(i);
+                worker.updateThreshold(i);
+            }
+            return worker;
+        });
+
+        double totalEdges = 0;
+        double totalWeight = 0;
+        rangeEdgeWeights = new ArrayList<>();
+        for (WeightedEdgePruning worker : workers) {
+            totalEdges += worker.noOfEdges;
+            totalWeight += worker.threshold;
+            if (worker.edgeWeights != null) {
+                rangeEdgeWeights.add(worker.edgeWeights);
+                worker.edgeWeights = null;
             }
         }
 
-        threshold /= noOfEdges;
+        noOfEdges = totalEdges;
+        threshold = totalWeight / totalEdges;
 
         Log.info("Edge Pruning Weight Threshold\t:\t" + threshold);
     }
 
     protected void updateThreshold(int entityId) {
         noOfEdges += validEntities.size();
+        if (edgeWeights != null && edgeWeights.reserve(entityId, validEntities.size())) {
+            //the neighbor ids are stored in the form they are added to the decomposed blocks
+            int idOffset = cleanCleanER && entityId < datasetLimit ? datasetLimit : 0;
+            for (TIntIterator tIterator = validEntities.iterator(); tIterator.hasNext();) {
+                int neighborId = tIterator.next();
+                double weight = getWeight(entityId, neighborId);
+                edgeWeights.add(neighborId - idOffset, weight);
+                threshold += weight;
+            }
+            return;
+        }
+
         for (TIntIterator tIterator = validEntities.iterator(); tIterator.hasNext();) {
             threshold += getWeight(entityId, tIterator.next());
         }
     }
 
+    protected void verifyCachedEntities(int entityId, EdgeWeightBuffer cachedWeights, List<AbstractBlock> newBlocks) {
+        retainedNeighbors.clear();
+        int lastEdge = cachedWeights.getLastEdge(entityId);
+        for (int i = cachedWeights.getFirstEdge(entityId); i < lastEdge; i++) {
+            if (threshold <= cachedWeights.weights[i]) {
+                retainedNeighbors.add(cachedWeights.neighborIds[i]);
+            }
+        }
+
+        addRetainedNeighbors(entityId, newBlocks);
+    }
+
     protected void verifyValidEntities(int entityId, List<AbstractBlock> newBlocks) {
         retainedNeighbors.clear();
         if (!cleanCleanER) {
@@ -191,7 +279,7 @@ public class WeightedEdgePruning extends AbstractMetablocking {
                     retainedNeighbors.add(neighborId);
                 }
             }
-            addDecomposedBlock(entityId, retainedNeighbors, newBlocks);
+            addRetainedNeighbors(entityId, newBlocks);
         } else {
             if (entityId < datasetLimit) {
                 for (TIntIterator tIterator = validEntities.iterator(); tIterator.hasNext();) {
@@ -201,7 +289,7 @@ public class WeightedEdgePruning extends AbstractMetablocking {
                         retainedNeighbors.add(neighborId - datasetLimit);
                     }
                 }
-                addDecomposedBlock(entityId, retainedNeighbors, newBlocks);
+                addRetainedNeighbors(entityId, newBlocks);
             } else {
                 for (TIntIterator tIterator = validEntities.iterator(); tIterator.hasNext();) {
                     int neighborId = tIterator.next();
@@ -210,8 +298,63 @@ public class WeightedEdgePruning extends AbstractMetablocking {
                         retainedNeighbors.add(neighborId);
                     }
                 }
-                addReversedDecomposedBlock(entityId - datasetLimit, retainedNeighbors, newBlocks);
+                addRetainedNeighbors(entityId, newBlocks);
+            }
+        }
+    }
+
+    //the weights of the edges of a contiguous range of entities, in the order they are traversed;
+    //entities are cached from the first one of the range until the capacity is exhausted
+    protected static class EdgeWeightBuffer {
+
+        protected final int capacity;
+        protected final int firstEntity;
+        protected int lastEntity;
+        protected int noOfEdges;
+        protected final int[] entityOffsets;
+        protected int[] neighborIds;
+        protected double[] weights;
+
+        protected EdgeWeightBuffer(int rangeStart, int rangeEnd, int maxEdges) {
+            capacity = maxEdges;
+            firstEntity = rangeStart;
+            lastEntity = rangeStart;
+            noOfEdges = 0;
+            entityOffsets = new int[rangeEnd - rangeStart + 1];
+            neighborIds = new int[Math.min(capacity, 1024)];
+            weights = new double[neighborIds.length];
+        }
+
+        protected void add(int neighborId, double weight) {
+            neighborIds[noOfEdges] = neighborId;
+            weights[noOfEdges] = weight;
+            noOfEdges++;
+        }
+
+        protected int getFirstEdge(int entityId) {
+            return entityOffsets[entityId - firstEntity];
+        }
+
+        protected int getLastEdge(int entityId) {
+            return entityOffsets[entityId - firstEntity + 1];
+        }
+
+        //returns false, if the edges of the given entity do not fit in the buffer; no later entity is cached then
+        protected boolean reserve(int entityId, int edges) {
+            if (entityId != lastEntity || capacity - noOfEdges < edges) {
+                return false;
             }
+
+            int requiredLength = noOfEdges + edges;
+            if (neighborIds.length < requiredLength) {
+                int newLength = (int) Math.min(capacity, Math.max(requiredLength, 2L * neighborIds.length));
+                neighborIds = Arrays.copyOf(neighborIds, newLength);
+                weights = Arrays.copyOf(weights, newLength);
+            }
+
+            lastEntity++;
+            entityOffsets[lastEntity - firstEntity] = requiredLength;
+            return true;
         }
     }
 }
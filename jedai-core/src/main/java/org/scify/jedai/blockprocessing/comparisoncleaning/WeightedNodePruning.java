@@ -19,7 +19,6 @@ import org.scify.jedai.datamodel.AbstractBlock;
 import org.scify.jedai.utilities.enumerations.WeightingScheme;
 import gnu.trove.iterator.TIntIterator;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -67,19 +66,7 @@ public class WeightedNodePruning extends WeightedEdgePruning {
 
     @Override
     protected List<AbstractBlock> pruneEdges() {
-        final List<AbstractBlock> newBlocks = new ArrayList<>();
-        if (weightingScheme.equals(WeightingScheme.ARCS)) {
-            for (int i = 0; i < noOfEntities; i++) {
-                processArcsEntity(i);
-                verifyValidEntities(i, newBlocks);
-            }
-        } else {
-            for (int i = 0; i < noOfEntities; i++) {
-                processEntity(i);
-                verifyValidEntities(i, newBlocks);
-            }
-        }
-        return newBlocks;
+        return pruneEdges(noOfEntities);
     }
 
     protected void setLimits() {
@@ -90,19 +77,14 @@ public class WeightedNodePruning extends WeightedEdgePruning {
     @Override
     protected void setThreshold() {
         averageWeight = new double[noOfEntities];
-        if (weightingScheme.equals(WeightingScheme.ARCS)) {
-            for (int i = 0; i < noOfEntities; i++) {
-                processArcsEntity(i);
-                setThreshold(i);
-                averageWeight[i] = threshold;
+        processEntities(noOfEntities, (WeightedNodePruning worker, int rangeStart, int rangeEnd) -> {
+            for (int i = rangeStart; i < rangeEnd; i++) {
+                worker.processEntityByScheme(i);
+                worker.setThreshold(i);
+                averageWeight[i] = worker.threshold;
             }
-        } else {
-            for (int i = 0; i < noOfEntities; i++) {
-                processEntity(i);
-                setThreshold(i);
-                averageWeight[i] = threshold;
-            }
-        }
+            return null;
+        });
     }
 
     protected void setThreshold(int entityId) {
@@ -123,7 +105,7 @@ public class WeightedNodePruning extends WeightedEdgePruning {
                     retainedNeighbors.add(neighborId);
                 }
             }
-            addDecomposedBlock(entityId, retainedNeighbors, newBlocks);
+            addRetainedNeighbors(entityId, newBlocks);
         } else {
             if (entityId < datasetLimit) {
                 for (TIntIterator tIterator = validEntities.iterator(); tIterator.hasNext();) {
@@ -132,7 +114,7 @@ public class WeightedNodePruning extends WeightedEdgePruning {
                         retainedNeighbors.add(neighborId - datasetLimit);
                     }
                 }
-                addDecomposedBlock(entityId, retainedNeighbors, newBlocks);
+                addRetainedNeighbors(entityId, newBlocks);
             } else {
                 for (TIntIterator tIterator = validEntities.iterator(); tIterator.hasNext();) {
                     int neighborId = tIterator.next();
@@ -140,7 +122,7 @@ public class WeightedNodePruning extends WeightedEdgePruning {
                         retainedNeighbors.add(neighborId);
                     }
                 }
-                addReversedDecomposedBlock(entityId - datasetLimit, retainedNeighbors, newBlocks);
+                addRetainedNeighbors(entityId, newBlocks);
             }
         }
     }
@@ -0,0 +1,292 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package org.scify.jedai.datamodel;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.Buffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A columnar representation of a set of unilateral or bilateral blocks: the entities of the block
+ * with id b are stored in entityIds[offsets[b]...offsets[b+1]-1] of every side, in increasing order.
+ * The second side is used only for Clean-Clean ER. The buffers are either heap arrays or memory-mapped files.
+ *
+ * @author gap2
+ */
+
+public class BlockCollection implements Serializable {
+
+    private static final long serialVersionUID = 6215853075236471820L;
+
+    private final boolean cleanCleanER;
+    private final int noOfBlocks;
+    private int noOfEntitiesD1;
+    private int noOfEntitiesD2;
+
+    private double totalBlockAssignments;
+    private double totalComparisons;
+
+    private transient IntBuffer entityIdsD1;
+    private transient IntBuffer entityIdsD2;
+    private transient IntBuffer offsetsD1;
+    private transient IntBuffer offsetsD2;
+
+    public BlockCollection(int[] offsets, int[] entityIds) {
+        this(offsets, entityIds, null, null);
+    }
+
+    public BlockCollection(int[] offsets1, int[] entityIds1, int[] offsets2, int[] entityIds2) {
+        this(IntBuffer.wrap(offsets1), IntBuffer.wrap(entityIds1), offsets2 == null ? null : IntBuffer.wrap(offsets2), entityIds2 == null ? null : IntBuffer.wrap(entityIds2), -1, -1);
+    }
+
+    // a negative number of entities is computed from the entity ids
+    public BlockCollection(IntBuffer offsets1, IntBuffer entityIds1, IntBuffer offsets2, IntBuffer entityIds2, int entitiesD1, int entitiesD2) {
+        cleanCleanER = offsets2 != null;
+        noOfBlocks = offsets1.limit() - 1;
+        entityIdsD1 = entityIds1;
+        entityIdsD2 = entityIds2;
+        offsetsD1 = offsets1;
+        offsetsD2 = offsets2;
+        noOfEntitiesD1 = entitiesD1;
+        noOfEntitiesD2 = entitiesD2;
+        setStatistics();
+    }
+
+    // the type of ER is given explicitly, since it cannot be inferred from an empty list of blocks
+    public BlockCollection(List<AbstractBlock> blocks, boolean ccER) {
+        cleanCleanER = ccER;
+        noOfBlocks = blocks.size();
+        final int[] offsets1 = new int[noOfBlocks + 1];
+        final int[] offsets2 = cleanCleanER ? new int[noOfBlocks + 1] : null;
+        for (int blockId = 0; blockId < noOfBlocks; blockId++) {
+            final AbstractBlock block = blocks.get(blockId);
+            if (block instanceof DecomposedBlock) {
+                throw new IllegalArgumentException("Decomposed blocks cannot be converted into a block collection!");
+            }
+
+            if (cleanCleanER != block instanceof BilateralBlock) {
+                throw new IllegalArgumentException("The blocks do not match the type of ER of the block collection!");
+            }
+
+            if (cleanCleanER) {
+                offsets1[blockId + 1] = offsets1[blockId] + ((BilateralBlock) block).getIndex1Entities().length;
+                offsets2[blockId + 1] = offsets2[blockId] + ((BilateralBlock) block).getIndex2Entities().length;
+            } else {
+                offsets1[blockId + 1] = offsets1[blockId] + ((UnilateralBlock) block).getEntities().length;
+            }
+        }
+
+        final int[] entityIds1 = new int[offsets1[noOfBlocks]];
+        final int[] entityIds2 = cleanCleanER ? new int[offsets2[noOfBlocks]] : null;
+        for (int blockId = 0; blockId < noOfBlocks; blockId++) {
+            if (cleanCleanER) {
+                final BilateralBlock block = (BilateralBlock) blocks.get(blockId);
+                System.arraycopy(block.getIndex1Entities(), 0, entityIds1, offsets1[blockId], block.getIndex1Entities().length);
+                System.arraycopy(block.getIndex2Entities(), 0, entityIds2, offsets2[blockId], block.getIndex2Entities().length);
+            } else {
+                final UnilateralBlock block = (UnilateralBlock) blocks.get(blockId);
+                System.arraycopy(block.getEntities(), 0, entityIds1, offsets1[blockId], block.getEntities().length);
+            }
+        }
+
+        entityIdsD1 = IntBuffer.wrap(entityIds1);
+        entityIdsD2 = cleanCleanER ? IntBuffer.wrap(entityIds2) : null;
+        offsetsD1 = IntBuffer.wrap(offsets1);
+        offsetsD2 = cleanCleanER ? IntBuffer.wrap(offsets2) : null;
+        noOfEntitiesD1 = -1;
+        noOfEntitiesD2 = -1;
+        setStatistics();
+    }
+
+    public AbstractBlock getBlock(int blockId) {
+        if (cleanCleanER) {
+            return new BilateralBlock(getEntities(blockId, 0), getEntities(blockId, 1));
+        }
+        return new UnilateralBlock(getEntities(blockId, 0));
+    }
+
+    public double getBlockAssignments(int blockId) {
+        if (cleanCleanER) {
+            return getInnerBlockSize(blockId, 0) + getInnerBlockSize(blockId, 1);
+        }
+        return getInnerBlockSize(blockId, 0);
+    }
+
+    // datasetId is 0 for the first and 1 for the second dataset
+    public int[] getEntities(int blockId, int datasetId) {
+        final int[] entities = new int[getInnerBlockSize(blockId, datasetId)];
+        final IntBuffer entityIds = getEntityIds(datasetId).duplicate();
+        // cast to Buffer, since IntBuffer.position(int) does not exist on Java 8
+        ((Buffer) entityIds).position(getOffset(blockId, datasetId));
+        entityIds.get(entities);
+        return entities;
+    }
+
+    public int getEntityId(int position, int datasetId) {
+        return getEntityIds(datasetId).get(position);
+    }
+
+    public IntBuffer getEntityIds(int datasetId) {
+        return datasetId == 0 ? entityIdsD1 : entityIdsD2;
+    }
+
+    public int getInnerBlockSize(int blockId, int datasetId) {
+        final IntBuffer offsets = getOffsets(datasetId);
+        return offsets.get(blockId + 1) - offsets.get(blockId);
+    }
+
+    public int getNoOfBlocks() {
+        return noOfBlocks;
+    }
+
+    public double getNoOfComparisons(int blockId) {
+        if (cleanCleanER) {
+            return ((double) getInnerBlockSize(blockId, 0)) * getInnerBlockSize(blockId, 1);
+        }
+
+        double blockSize = getInnerBlockSize(blockId, 0);
+        return blockSize * (blockSize - 1) / 2;
+    }
+
+    // the number of entities in the given dataset, i.e., the maximum entity id plus one
+    public int getNoOfEntities(int datasetId) {
+        return datasetId == 0 ? noOfEntitiesD1 : noOfEntitiesD2;
+    }
+
+    // the position of the first entity of the given block in the entity ids of the given dataset
+    public int getOffset(int blockId, int datasetId) {
+        return getOffsets(datasetId).get(blockId);
+    }
+
+    public IntBuffer getOffsets(int datasetId) {
+        return datasetId == 0 ? offsetsD1 : offsetsD2;
+    }
+
+    // the given blocks in the given order, copied into a new collection with the same numbers of entities
+    public BlockCollection getSubCollection(int[] blockIds) {
+        final int[] offsets1 = new int[blockIds.length + 1];
+        final int[] offsets2 = cleanCleanER ? new int[blockIds.length + 1] : null;
+        for (int i = 0; i < blockIds.length; i++) {
+            offsets1[i + 1] = offsets1[i] + getInnerBlockSize(blockIds[i], 0);
+            if (cleanCleanER) {
+                offsets2[i + 1] = offsets2[i] + getInnerBlockSize(blockIds[i], 1);
+            }
+        }
+
+        final int[] entityIds1 = new int[offsets1[blockIds.length]];
+        final int[] entityIds2 = cleanCleanER ? new int[offsets2[blockIds.length]] : null;
+        final IntBuffer source1 = entityIdsD1.duplicate();
+        final IntBuffer source2 = cleanCleanER ? entityIdsD2.duplicate() : null;
+        for (int i = 0; i < blockIds.length; i++) {
+            ((Buffer) source1).position(getOffset(blockIds[i], 0));
+            source1.get(entityIds1, offsets1[i], offsets1[i + 1] - offsets1[i]);
+            if (cleanCleanER) {
+                ((Buffer) source2).position(getOffset(blockIds[i], 1));
+                source2.get(entityIds2, offsets2[i], offsets2[i + 1] - offsets2[i]);
+            }
+        }
+
+        return new BlockCollection(IntBuffer.wrap(offsets1), IntBuffer.wrap(entityIds1), cleanCleanER ? IntBuffer.wrap(offsets2) : null,
+                cleanCleanER ? IntBuffer.wrap(entityIds2) : null, noOfEntitiesD1, noOfEntitiesD2);
+    }
+
+    public double getTotalBlockAssignments() {
+        return totalBlockAssignments;
+    }
+
+    public double getTotalComparisons() {
+        return totalComparisons;
+    }
+
+    public boolean isCleanCleanER() {
+        return cleanCleanER;
+    }
+
+    private IntBuffer readBuffer(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        final int[] array = (int[]) in.readObject();
+        return array == null ? null : IntBuffer.wrap(array);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        entityIdsD1 = readBuffer(in);
+        entityIdsD2 = readBuffer(in);
+        offsetsD1 = readBuffer(in);
+        offsetsD2 = readBuffer(in);
+    }
+
+    private void setStatistics() {
+        if (noOfEntitiesD1 < 0) {
+            noOfEntitiesD1 = 0;
+            for (int i = 0; i < entityIdsD1.limit(); i++) {
+                noOfEntitiesD1 = Math.max(noOfEntitiesD1, entityIdsD1.get(i) + 1);
+            }
+        }
+
+        if (noOfEntitiesD2 < 0) {
+            noOfEntitiesD2 = 0;
+            if (cleanCleanER) {
+                for (int i = 0; i < entityIdsD2.limit(); i++) {
+                    noOfEntitiesD2 = Math.max(noOfEntitiesD2, entityIdsD2.get(i) + 1);
+                }
+            }
+        }
+
+        totalBlockAssignments = 0;
+        totalComparisons = 0;
+        for (int blockId = 0; blockId < noOfBlocks; blockId++) {
+            totalBlockAssignments += getBlockAssignments(blockId);
+            totalComparisons += getNoOfComparisons(blockId);
+        }
+    }
+
+    public List<AbstractBlock> toBlocks() {
+        final List<AbstractBlock> blocks = new ArrayList<>(noOfBlocks);
+        for (int blockId = 0; blockId < noOfBlocks; blockId++) {
+            blocks.add(getBlock(blockId));
+        }
+        return blocks;
+    }
+
+    // the buffers are serialized as arrays, regardless of whether they are mapped to a file
+    private void writeBuffer(ObjectOutputStream out, IntBuffer buffer) throws IOException {
+        if (buffer == null) {
+            out.writeObject(null);
+            return;
+        }
+
+        final int[] array = new int[buffer.limit()];
+        final IntBuffer source = buffer.duplicate();
+        ((Buffer) source).position(0);
+        source.get(array);
+        out.writeObject(array);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        writeBuffer(out, entityIdsD1);
+        writeBuffer(out, entityIdsD2);
+        writeBuffer(out, offsetsD1);
+        writeBuffer(out, offsetsD2);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package org.scify.jedai.datareader;
+
+import org.scify.jedai.datamodel.BlockCollection;
+import org.scify.jedai.datawriter.BlockCollectionWriter;
+
+import com.esotericsoftware.minlog.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.jena.atlas.json.JsonArray;
+import org.apache.jena.atlas.json.JsonObject;
+
+/**
+ *
+ * @author gap2
+ */
+public class BlockCollectionReader extends AbstractReader {
+
+    private BlockCollection blocks;
+
+    public BlockCollectionReader(String filePath) {
+        super(filePath);
+    }
+
+    // the entity ids and the offsets are memory-mapped rather than loaded into the heap;
+    // the mappings remain valid after the file is closed
+    public BlockCollection getBlockCollection() {
+        if (blocks != null) {
+            return blocks;
+        }
+
+        if (inputFilePath == null) {
+            Log.error("Input file path has not been set!");
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(Paths.get(inputFilePath), StandardOpenOption.READ)) {
+            if (channel.size() < BlockCollectionWriter.HEADER_SIZE) {
+                Log.error(inputFilePath + " is not a block collection file!");
+                return null;
+            }
+
+            final ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, BlockCollectionWriter.HEADER_SIZE);
+            if (header.getInt() != BlockCollectionWriter.MAGIC) {
+                Log.error(inputFilePath + " is not a block collection file!");
+                return null;
+            }
+            if (header.getInt() != BlockCollectionWriter.VERSION) {
+                Log.error("Unsupported version of block collection file!");
+                return null;
+            }
+
+            final boolean cleanCleanER = header.getInt() == 1;
+            final int noOfBlocks = header.getInt();
+            final int noOfEntitiesD1 = header.getInt();
+            final int noOfEntitiesD2 = header.getInt();
+            final long noOfIdsD1 = header.getLong();
+            final long noOfIdsD2 = header.getLong();
+
+            long position = BlockCollectionWriter.HEADER_SIZE;
+            final IntBuffer entityIdsD1 = mapInts(channel, position, noOfIdsD1);
+            position += Integer.BYTES * noOfIdsD1;
+            final IntBuffer entityIdsD2 = cleanCleanER ? mapInts(channel, position, noOfIdsD2) : null;
+            position += Integer.BYTES * noOfIdsD2;
+            final IntBuffer offsetsD1 = mapInts(channel, position, noOfBlocks + 1);
+            position += Integer.BYTES * (noOfBlocks + 1L);
+            final IntBuffer offsetsD2 = cleanCleanER ? mapInts(channel, position, noOfBlocks + 1) : null;
+
+            blocks = new BlockCollection(offsetsD1, entityIdsD1, offsetsD2, entityIdsD2, noOfEntitiesD1, noOfEntitiesD2);
+            return blocks;
+        } catch (IOException ex) {
+            Log.error("Error in mapping block collection file", ex);
+            return null;
+        }
+    }
+
+    @Override
+    public String getMethodConfiguration() {
+        return getParameterName(0) + "=" + inputFilePath;
+    }
+
+    @Override
+    public String getMethodInfo() {
+        return getMethodName() + ": it maps a binary file of blocks, which was created by BlockCollectionWriter, into memory.";
+    }
+
+    @Override
+    public String getMethodName() {
+        return "Block Collection Reader";
+    }
+
+    @Override
+    public String getMethodParameters() {
+        return getMethodName() + " involves a single parameter:\n"
+                + "1)" + getParameterDescription(0) + ".";
+    }
+
+    @Override
+    public JsonArray getParameterConfiguration() {
+        final JsonObject obj1 = new JsonObject();
+        obj1.put("class", "java.lang.String");
+        obj1.put("name", getParameterName(0));
+        obj1.put("defaultValue", "-");
+        obj1.put("minValue", "-");
+        obj1.put("maxValue", "-");
+        obj1.put("stepValue", "-");
+        obj1.put("description", getParameterDescription(0));
+
+        final JsonArray array = new JsonArray();
+        array.add(obj1);
+        return array;
+    }
+
+    @Override
+    public String getParameterDescription(int parameterId) {
+        switch (parameterId) {
+            case 0:
+                return "The " + getParameterName(0) + " determines the absolute path to the block collection file that will be mapped into memory.";
+            default:
+                return "invalid parameter id";
+        }
+    }
+
+    @Override
+    public String getParameterName(int parameterId) {
+        switch (parameterId) {
+            case 0:
+                return "File Path";
+            default:
+                return "invalid parameter id";
+        }
+    }
+
+    // a single mapping is restricted to 2GB, i.e., 2^29 entity ids per dataset
+    private IntBuffer mapInts(FileChannel channel, long position, long noOfInts) throws IOException {
+        if (BlockCollectionWriter.MAX_INTS_PER_SECTION < noOfInts) {
+            throw new IOException("The block collection exceeds the maximum size of a memory-mapped section!");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, Integer.BYTES * noOfInts).asIntBuffer();
+    }
+}
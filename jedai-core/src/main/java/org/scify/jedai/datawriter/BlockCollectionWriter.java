@@ -0,0 +1,222 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package org.scify.jedai.datawriter;
+
+import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.BilateralBlock;
+import org.scify.jedai.datamodel.BlockCollection;
+import org.scify.jedai.datamodel.UnilateralBlock;
+
+import com.esotericsoftware.minlog.Log;
+
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+/**
+ *
+ * @author gap2
+ */
+public class BlockCollectionWriter implements Closeable {
+    // The binary format of a block collection consists of a header, the entity ids of the first
+    // and of the second dataset, and the offsets of every block in each one of them:
+    // | MAGIC | VERSION | Clean-Clean ER | #blocks | #entities D1 | #entities D2 | #ids D1 (long) | #ids D2 (long) |
+    // | entity ids D1 | entity ids D2 | offsets D1 (#blocks + 1) | offsets D2 (#blocks + 1) |
+    // All values are big-endian integers, so that every section can be memory-mapped as an IntBuffer.
+
+    public final static int HEADER_SIZE = 40;
+    public final static int MAGIC = 0x4A424C4B;
+    // every section is memory-mapped at once by the reader, hence it is restricted to 2GB
+    public final static int MAX_INTS_PER_SECTION = Integer.MAX_VALUE / Integer.BYTES;
+    public final static int VERSION = 1;
+
+    private final boolean cleanCleanER;
+    private boolean closed;
+    private int noOfEntitiesD1;
+    private int noOfEntitiesD2;
+
+    private final String outputPath;
+    private final DataOutputStream outputD1;
+    private DataOutputStream outputD2;
+    private File fileD2;
+    private final TIntList offsetsD1;
+    private final TIntList offsetsD2;
+
+    // the entity ids of the first dataset are streamed to the output file, while those of the second dataset
+    // are streamed to a temporary file, which is appended to the output one when closing the writer
+    public BlockCollectionWriter(String outputPath, boolean ccER) {
+        this.outputPath = outputPath;
+        cleanCleanER = ccER;
+        closed = false;
+        noOfEntitiesD1 = 0;
+        noOfEntitiesD2 = 0;
+        offsetsD1 = new TIntArrayList();
+        offsetsD1.add(0);
+        offsetsD2 = new TIntArrayList();
+        offsetsD2.add(0);
+
+        try {
+            outputD1 = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outputPath)));
+            outputD1.write(new byte[HEADER_SIZE]);
+            if (cleanCleanER) {
+                fileD2 = File.createTempFile("jedaiBlocks", ".bin");
+                fileD2.deleteOnExit();
+                outputD2 = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileD2)));
+            }
+        } catch (IOException ex) {
+            Log.error("Creating the block collection file failed!", ex);
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    public void addBlock(AbstractBlock block) {
+        if (block instanceof BilateralBlock) {
+            addBlock(((BilateralBlock) block).getIndex1Entities(), ((BilateralBlock) block).getIndex2Entities());
+        } else if (block instanceof UnilateralBlock) {
+            addBlock(((UnilateralBlock) block).getEntities());
+        } else {
+            throw new IllegalArgumentException("Only unilateral and bilateral blocks can be written to a block collection file!");
+        }
+    }
+
+    public void addBlock(int[] entities) {
+        if (cleanCleanER) {
+            throw new IllegalArgumentException("A unilateral block cannot be added to a Clean-Clean ER block collection!");
+        }
+
+        try {
+            noOfEntitiesD1 = writeEntities(outputD1, entities, offsetsD1, noOfEntitiesD1);
+        } catch (IOException ex) {
+            Log.error("Writing the block collection file failed!", ex);
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    public void addBlock(int[] entities1, int[] entities2) {
+        if (!cleanCleanER) {
+            throw new IllegalArgumentException("A bilateral block cannot be added to a Dirty ER block collection!");
+        }
+
+        try {
+            noOfEntitiesD1 = writeEntities(outputD1, entities1, offsetsD1, noOfEntitiesD1);
+            noOfEntitiesD2 = writeEntities(outputD2, entities2, offsetsD2, noOfEntitiesD2);
+        } catch (IOException ex) {
+            Log.error("Writing the block collection file failed!", ex);
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            if (cleanCleanER) {
+                outputD2.close();
+                try (InputStream input = new BufferedInputStream(new FileInputStream(fileD2))) {
+                    final byte[] buffer = new byte[1 << 16];
+                    for (int length = input.read(buffer); 0 < length; length = input.read(buffer)) {
+                        outputD1.write(buffer, 0, length);
+                    }
+                }
+            }
+
+            writeOffsets(offsetsD1);
+            if (cleanCleanER) {
+                writeOffsets(offsetsD2);
+            }
+            outputD1.close();
+
+            try (RandomAccessFile file = new RandomAccessFile(outputPath, "rw")) {
+                file.writeInt(MAGIC);
+                file.writeInt(VERSION);
+                file.writeInt(cleanCleanER ? 1 : 0);
+                file.writeInt(offsetsD1.size() - 1);
+                file.writeInt(noOfEntitiesD1);
+                file.writeInt(noOfEntitiesD2);
+                file.writeLong(offsetsD1.get(offsetsD1.size() - 1));
+                file.writeLong(cleanCleanER ? offsetsD2.get(offsetsD2.size() - 1) : 0);
+            }
+        } catch (IOException ex) {
+            Log.error("Finalizing the block collection file failed!", ex);
+            throw new IllegalStateException(ex);
+        } finally {
+            if (fileD2 != null && !fileD2.delete()) {
+                Log.warn("Could not delete temporary file " + fileD2.getAbsolutePath());
+            }
+        }
+    }
+
+    public static void write(BlockCollection blocks, String outputPath) {
+        try (BlockCollectionWriter writer = new BlockCollectionWriter(outputPath, blocks.isCleanCleanER())) {
+            for (int blockId = 0; blockId < blocks.getNoOfBlocks(); blockId++) {
+                if (blocks.isCleanCleanER()) {
+                    writer.addBlock(blocks.getEntities(blockId, 0), blocks.getEntities(blockId, 1));
+                } else {
+                    writer.addBlock(blocks.getEntities(blockId, 0));
+                }
+            }
+        }
+    }
+
+    public static void write(List<AbstractBlock> blocks, String outputPath) {
+        final boolean ccER = !blocks.isEmpty() && blocks.get(0) instanceof BilateralBlock;
+        try (BlockCollectionWriter writer = new BlockCollectionWriter(outputPath, ccER)) {
+            for (AbstractBlock block : blocks) {
+                writer.addBlock(block);
+            }
+        }
+    }
+
+    private int writeEntities(DataOutputStream output, int[] entities, TIntList offsets, int noOfEntities) throws IOException {
+        final int lastOffset = offsets.get(offsets.size() - 1);
+        if (MAX_INTS_PER_SECTION - entities.length < lastOffset) {
+            throw new IOException("The block collection exceeds the maximum number of entity ids per dataset!");
+        }
+        if (MAX_INTS_PER_SECTION <= offsets.size()) {
+            throw new IOException("The block collection exceeds the maximum number of blocks!");
+        }
+
+        for (int entityId : entities) {
+            output.writeInt(entityId);
+            noOfEntities = Math.max(noOfEntities, entityId + 1);
+        }
+        offsets.add(lastOffset + entities.length);
+        return noOfEntities;
+    }
+
+    private void writeOffsets(TIntList offsets) throws IOException {
+        for (int i = 0; i < offsets.size(); i++) {
+            outputD1.writeInt(offsets.get(i));
+        }
+    }
+}
@@ -18,6 +18,7 @@ package org.scify.jedai.entitymatching;
 import org.scify.jedai.datamodel.AbstractBlock;
 import org.scify.jedai.datamodel.EntityProfile;
 import org.scify.jedai.datamodel.SimilarityPairs;
+import org.scify.jedai.utilities.datastructures.TokenStore;
 import org.scify.jedai.utilities.enumerations.RepresentationModel;
 import org.scify.jedai.utilities.enumerations.SimilarityMetric;
 
@@ -39,6 +40,7 @@ public abstract class AbstractEntityMatching implements IEntityMatching {
     protected final List<RepModelSimMetricCombo> modelMetricCombinations;
     protected RepresentationModel representationModel;
     protected SimilarityMetric simMetric;
+    protected TokenStore tokenStore;
 
     public AbstractEntityMatching(RepresentationModel model, SimilarityMetric sMetric) {
         representationModel = model;
@@ -82,4 +84,9 @@ public abstract class AbstractEntityMatching implements IEntityMatching {
         representationModel = selectedCombo.getRepModel();
         simMetric = selectedCombo.getSimMetric();
     }
+
+    @Override
+    public void setTokenStore(TokenStore store) {
+        tokenStore = store;
+    }
 }
@@ -131,14 +131,21 @@ public class GroupLinkage extends AbstractEntityMatching {
             validAttributes = profile.getAttributes().stream().filter((attribute) -> (!attribute.getValue().isEmpty())).map((_item) -> 1).reduce(validAttributes, Integer::sum);
             
             int counter = 0;
+            int attributeIndex = 0;
+            final String[][] valueTokens = tokenStore == null ? null : tokenStore.getValueTokens(profile);
             ModelsList[entityCounter] = new ITextModel[validAttributes];
             for (Attribute attribute : profile.getAttributes()) {
                 if (!attribute.getValue().isEmpty()) {
                     ModelsList[entityCounter][counter] = RepresentationModel.getModel(datasetId, representationModel, simMetric, attribute.getName());
-                    ModelsList[entityCounter][counter].updateModel(attribute.getValue());
+                    if (valueTokens == null || !ModelsList[entityCounter][counter].supportsTokens()) {
+                        ModelsList[entityCounter][counter].updateModel(attribute.getValue());
+                    } else {
+                        ModelsList[entityCounter][counter].updateModel(valueTokens[attributeIndex]);
+                    }
                     ModelsList[entityCounter][counter].finalizeModel();
                     counter++;
                 } 
+                attributeIndex++;
             }
             entityCounter++;
         }
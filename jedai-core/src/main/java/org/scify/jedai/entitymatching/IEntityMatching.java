@@ -19,6 +19,7 @@ import org.scify.jedai.datamodel.AbstractBlock;
 import org.scify.jedai.datamodel.EntityProfile;
 import org.scify.jedai.datamodel.SimilarityPairs;
 import org.scify.jedai.utilities.IDocumentation;
+import org.scify.jedai.utilities.datastructures.TokenStore;
 import java.util.List;
 import org.scify.jedai.configuration.IConfiguration;
 
@@ -35,4 +36,7 @@ public interface IEntityMatching extends IConfiguration, IDocumentation {
 
     public SimilarityPairs executeComparisons(List<AbstractBlock> blocks, List<EntityProfile> profilesD1, List<EntityProfile> profilesD2);
 
+    //a no-op for the methods that cannot use a token store
+    public default void setTokenStore(TokenStore tokenStore) {
+    }
 }
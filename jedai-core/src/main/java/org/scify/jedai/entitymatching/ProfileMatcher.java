@@ -107,8 +107,12 @@ public class ProfileMatcher extends AbstractEntityMatching {
         RepresentationModel.resetGlobalValues(datasetId, representationModel);
         for (EntityProfile profile : profiles) {
             models[counter] = RepresentationModel.getModel(datasetId, representationModel, simMetric, profile.getEntityUrl());
-            for (Attribute attribute : profile.getAttributes()) {
-                models[counter].updateModel(attribute.getValue());
+            if (tokenStore == null) {
+                for (Attribute attribute : profile.getAttributes()) {
+                    models[counter].updateModel(attribute.getValue());
+                }
+            } else {
+                tokenStore.updateModel(models[counter], profile);
             }
             models[counter].finalizeModel();
             counter++;
@@ -35,6 +35,7 @@ import org.scify.jedai.datamodel.EntityProfile;
 import org.scify.jedai.datamodel.RepModelSimMetricCombo;
 import org.scify.jedai.configuration.randomsearch.IntRandomSearchConfiguration;
 import org.scify.jedai.textmodels.ITextModel;
+import org.scify.jedai.utilities.datastructures.TokenStore;
 import org.scify.jedai.utilities.enumerations.RepresentationModel;
 import org.scify.jedai.utilities.enumerations.SimilarityMetric;
 import org.scify.jedai.utilities.graph.ConnectedComponents;
@@ -60,6 +61,7 @@ public abstract class AbstractAttributeClustering implements ISchemaClustering {
     protected RepresentationModel repModel;
     protected SimilarityMetric simMetric;
     protected TObjectIntMap<String> attrNameIndex;
+    protected TokenStore tokenStore;
 
     public AbstractAttributeClustering(RepresentationModel model, SimilarityMetric metric) {
         repModel = model;
@@ -88,8 +90,11 @@ public abstract class AbstractAttributeClustering implements ISchemaClustering {
         }
 
         for (EntityProfile profile : profiles) {
+            final String[][] valueTokens = tokenStore == null ? null : tokenStore.getValueTokens(profile);
+
+            int attributeIndex = 0;
             for (Attribute attribute : profile.getAttributes()) {
-                updateModel(datasetId, attribute);
+                updateModel(datasetId, attribute, valueTokens == null ? null : valueTokens[attributeIndex++]);
             }
         }
 
@@ -278,6 +283,13 @@ public abstract class AbstractAttributeClustering implements ISchemaClustering {
                 + "2)" + getParameterDescription(1) + ".";
     }
 
+    protected String[] getNameTokens(String attributeName) {
+        if (tokenStore == null) {
+            return null;
+        }
+        return tokenStore.getNameTokens(attributeName);
+    }
+
     @Override
     public int getNumberOfGridConfigurations() {
         return gridCombo.getNumberOfConfigurations();
@@ -357,5 +369,20 @@ public abstract class AbstractAttributeClustering implements ISchemaClustering {
         simMetric = selectedCombo.getSimMetric();
     }
 
-    protected abstract void updateModel(int datasetId, Attribute attribute);
+    @Override
+    public void setTokenStore(TokenStore store) {
+        tokenStore = store;
+    }
+
+    //the value tokens are null, unless a token store is used
+    protected abstract void updateModel(int datasetId, Attribute attribute, String[] valueTokens);
+
+    //the character-based models are always updated with the original text
+    protected void updateModel(ITextModel model, String text, String[] tokens) {
+        if (tokens == null || !model.supportsTokens()) {
+            model.updateModel(text);
+        } else {
+            model.updateModel(tokens);
+        }
+    }
 }
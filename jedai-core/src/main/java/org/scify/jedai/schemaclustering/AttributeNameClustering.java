@@ -30,9 +30,9 @@ public class AttributeNameClustering extends AbstractAttributeClustering {
     }
 
     @Override
-    protected void updateModel(int datasetId, Attribute attribute) {
+    protected void updateModel(int datasetId, Attribute attribute, String[] valueTokens) {
         int attributeId = attrNameIndex.get(attribute.getName()) - 1;
-        attributeModels[datasetId][attributeId].updateModel(attribute.getName());
+        updateModel(attributeModels[datasetId][attributeId], attribute.getName(), getNameTokens(attribute.getName()));
     }
 
     @Override
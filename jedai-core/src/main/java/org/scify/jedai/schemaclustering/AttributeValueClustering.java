@@ -31,9 +31,9 @@ public class AttributeValueClustering extends AbstractAttributeClustering {
     }
     
     @Override
-    protected void updateModel(int datasetId, Attribute attribute) {
+    protected void updateModel(int datasetId, Attribute attribute, String[] valueTokens) {
         int attributeId = attrNameIndex.get(attribute.getName()) - 1;
-        attributeModels[datasetId][attributeId].updateModel(attribute.getValue());
+        updateModel(attributeModels[datasetId][attributeId], attribute.getValue(), valueTokens);
     }
     
         @Override
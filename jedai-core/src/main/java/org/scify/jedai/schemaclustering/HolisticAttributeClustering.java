@@ -30,10 +30,10 @@ public class HolisticAttributeClustering extends AbstractAttributeClustering {
     }
 
     @Override
-    protected void updateModel(int datasetId, Attribute attribute) {
+    protected void updateModel(int datasetId, Attribute attribute, String[] valueTokens) {
         int attributeId = attrNameIndex.get(attribute.getName()) - 1;
-        attributeModels[datasetId][attributeId].updateModel(attribute.getName());
-        attributeModels[datasetId][attributeId].updateModel(attribute.getValue());
+        updateModel(attributeModels[datasetId][attributeId], attribute.getName(), getNameTokens(attribute.getName()));
+        updateModel(attributeModels[datasetId][attributeId], attribute.getValue(), valueTokens);
     }
 
     @Override
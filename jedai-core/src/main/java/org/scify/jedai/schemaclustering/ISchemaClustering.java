@@ -20,6 +20,7 @@ import java.util.List;
 import org.scify.jedai.configuration.IConfiguration;
 import org.scify.jedai.datamodel.EntityProfile;
 import org.scify.jedai.utilities.IDocumentation;
+import org.scify.jedai.utilities.datastructures.TokenStore;
 
 /**
  *
@@ -34,4 +35,8 @@ public interface ISchemaClustering extends IConfiguration, IDocumentation {
     
     public TObjectIntMap<String>[] getClusters(List<EntityProfile> profilesD1, List<EntityProfile> profilesD2);
     
+    //a no-op for the methods that cannot use a token store
+    public default void setTokenStore(TokenStore tokenStore) {
+    }
+    
 }
@@ -85,6 +85,11 @@ public class CharacterNGramsWithGlobalWeights extends CharacterNGrams {
         return Math.log10(NO_OF_DOCUMENTS[datasetId] / (1 + frequency));
     }
 
+    //the weight of the given key in the TF-IDF vector of this model, which is 0 for the keys it does not contain
+    public double getTfIdfWeight(String keyValue) {
+        return itemsFrequency.get(keyValue) / noOfTotalTerms * getIdfWeight(keyValue);
+    }
+
     protected double getSigmaSimilarity(CharacterNGramsWithGlobalWeights oModel) {
         double totalTerms2 = oModel.getNoOfTotalTerms();
         final TObjectIntMap<String> itemVector2 = oModel.getItemsFrequency();
@@ -34,5 +34,15 @@ public interface ITextModel {
     
     public Set<String> getSignatures();
     
+    public default boolean supportsTokens() {
+        return false;
+    }
+    
     public void updateModel(String text);
+    
+    //the given tokens are lower-cased and produced by TokenStore.tokenize; the models that do not support tokens
+    //are updated with the tokens joined into a single text
+    public default void updateModel(String[] tokens) {
+        updateModel(String.join(" ", tokens));
+    }
 }
@@ -59,9 +59,18 @@ public class MinHashUnigrams extends TokenNGramsWithGlobalWeights {
         return termIds;
     }
     
+    @Override
+    public boolean supportsTokens() {
+        return true;
+    }
+    
     @Override
     public void updateModel(String text) {
-        final String[] tokens = text.toLowerCase().split("[\\W_]");
+        updateModel(text.toLowerCase().split("[\\W_]"));
+    }
+    
+    @Override
+    public void updateModel(String[] tokens) {
         for (int j = 0; j < tokens.length; j++) {
             int counter = 0;
             String currentTerm;
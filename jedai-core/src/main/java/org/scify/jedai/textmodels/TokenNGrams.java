@@ -31,10 +31,18 @@ public class TokenNGrams extends BagModel {
         NO_OF_DOCUMENTS[datasetId]++;
     }
     
+    @Override
+    public boolean supportsTokens() {
+        return true;
+    }
+    
     @Override
     public void updateModel(String text) {
-        final String[] tokens = text.toLowerCase().split("[\\W_]");
-        
+        updateModel(text.toLowerCase().split("[\\W_]"));
+    }
+    
+    @Override
+    public void updateModel(String[] tokens) {
         int noOfTokens = tokens.length;
         noOfTotalTerms += noOfTokens;
         for (int j = 0; j <= noOfTokens-nSize; j++) { // misses the last token without "="
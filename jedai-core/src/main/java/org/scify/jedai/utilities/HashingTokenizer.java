@@ -0,0 +1,238 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package org.scify.jedai.utilities;
+
+import java.util.function.LongConsumer;
+
+/**
+ *
+ * @author gap2
+ */
+public class HashingTokenizer {
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final long HASH_BASE = 0x100000001B3L;
+
+    private static final ThreadLocal<HashingTokenizer> INSTANCES = ThreadLocal.withInitial(HashingTokenizer::new);
+
+    private int length;
+    private char[] buffer;
+    private int[] combination;
+    private long[] prefixHashes;
+    private long[] qGramHashes;
+
+    private HashingTokenizer() {
+        length = 0;
+        buffer = new char[INITIAL_CAPACITY];
+        combination = new int[0];
+        prefixHashes = new long[1];
+        qGramHashes = new long[0];
+    }
+
+    // every thread reuses its own instance, so that no buffer is allocated per attribute value
+    public static HashingTokenizer getInstance() {
+        return INSTANCES.get();
+    }
+
+    // enumerates iteratively the combinations of q-grams of the token in buffer[start...end-1], from the largest to the
+    // smallest ones and in lexicographic order of q-gram positions; returns the number of combinations that were emitted
+    private int emitCombinations(int start, int end, int q, double threshold, int maxQGrams, int maxCombinations, LongConsumer keyConsumer) {
+        final int noOfQGrams = Math.min(maxQGrams, end - start - q + 1);
+        if (qGramHashes.length < noOfQGrams) {
+            combination = new int[noOfQGrams];
+            prefixHashes = new long[noOfQGrams + 1];
+            qGramHashes = new long[noOfQGrams];
+        }
+
+        long power = 1;
+        for (int i = 0; i < q; i++) {
+            power *= HASH_BASE;
+        }
+        for (int i = 0; i < noOfQGrams; i++) {
+            qGramHashes[i] = getHash(start + i, start + i + q);
+        }
+
+        int noOfCombinations = 0;
+        int minimumLength = (int) Math.max(1, Math.floor(noOfQGrams * threshold));
+        for (int size = noOfQGrams; minimumLength <= size; size--) {
+            int changedPosition = 0;
+            for (int i = 0; i < size; i++) {
+                combination[i] = i;
+            }
+
+            while (true) {
+                // the hash of a concatenation is composed from the hashes of its parts: h(xy) = h(x) * B^|y| + h(y)
+                for (int i = changedPosition; i < size; i++) {
+                    prefixHashes[i + 1] = prefixHashes[i] * power + qGramHashes[combination[i]];
+                }
+                keyConsumer.accept(mix(prefixHashes[size]));
+                if (maxCombinations <= ++noOfCombinations) {
+                    return noOfCombinations;
+                }
+
+                changedPosition = size - 1;
+                while (0 <= changedPosition && combination[changedPosition] == noOfQGrams - size + changedPosition) {
+                    changedPosition--;
+                }
+                if (changedPosition < 0) {
+                    break;
+                }
+
+                combination[changedPosition]++;
+                for (int i = changedPosition + 1; i < size; i++) {
+                    combination[i] = combination[i - 1] + 1;
+                }
+            }
+        }
+        return noOfCombinations;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (buffer.length < capacity) {
+            buffer = new char[Math.max(capacity, 2 * buffer.length)];
+        }
+    }
+
+    private long getHash(int start, int end) {
+        long hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = hash * HASH_BASE + buffer[i];
+        }
+        return hash;
+    }
+
+    // the hash of an entire blocking key, as it is, i.e., without tokenizing or lower-casing it
+    public static long hash(CharSequence key) {
+        long hash = 0;
+        for (int i = 0; i < key.length(); i++) {
+            hash = hash * HASH_BASE + key.charAt(i);
+        }
+        return mix(hash);
+    }
+
+    // the tokens consist of the characters that are not matched by the regular expression [\W_]
+    private static boolean isTokenCharacter(char c) {
+        return ('a' <= c && c <= 'z') || ('0' <= c && c <= '9') || ('A' <= c && c <= 'Z');
+    }
+
+    // lower-cases the given value into the buffer; the non-ASCII values are lower-cased by String,
+    // because the lower case of some non-ASCII characters contains ASCII ones
+    private void loadValue(CharSequence value) {
+        length = value.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (127 < c) {
+                final String lowerCaseValue = value.toString().toLowerCase();
+                length = lowerCaseValue.length();
+                ensureCapacity(length);
+                lowerCaseValue.getChars(0, length, buffer, 0);
+                return;
+            }
+
+            if ('A' <= c && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            buffer[i] = c;
+        }
+    }
+
+    // the finalizer of MurmurHash3 (fmix64), which spreads every input bit over all output bits;
+    // the polynomial hash allows for rolling the hash of q-grams, but its low bits are weak, hence the final mixing
+    public static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    // emits the hash of every combination of at least floor(threshold * k) out of the first k (<= maxQGrams) q-grams
+    // of every token, or of the token itself, if it does not exceed q characters; at most maxCombinations keys are
+    // emitted per token
+    public void qGramCombinations(CharSequence value, int q, double threshold, int maxQGrams, int maxCombinations, LongConsumer keyConsumer) {
+        loadValue(value);
+
+        int position = 0;
+        while (position < length) {
+            final int start = position;
+            while (position < length && isTokenCharacter(buffer[position])) {
+                position++;
+            }
+
+            if (start < position) {
+                if (position - start <= q) {
+                    keyConsumer.accept(mix(getHash(start, position)));
+                } else {
+                    emitCombinations(start, position, q, threshold, maxQGrams, maxCombinations, keyConsumer);
+                }
+            }
+            position++;
+        }
+    }
+
+    // emits the hash of every q-gram of every token, or of the token itself, if it is shorter than q
+    public void qGrams(CharSequence value, int q, LongConsumer keyConsumer) {
+        loadValue(value);
+
+        long power = 1;
+        for (int i = 1; i < q; i++) {
+            power *= HASH_BASE;
+        }
+
+        int position = 0;
+        while (position < length) {
+            final int start = position;
+            while (position < length && isTokenCharacter(buffer[position])) {
+                position++;
+            }
+
+            if (start < position) {
+                if (position - start <= q) {
+                    keyConsumer.accept(mix(getHash(start, position)));
+                } else {
+                    long hash = getHash(start, start + q);
+                    keyConsumer.accept(mix(hash));
+                    for (int i = start + q; i < position; i++) {
+                        hash = (hash - buffer[i - q] * power) * HASH_BASE + buffer[i];
+                        keyConsumer.accept(mix(hash));
+                    }
+                }
+            }
+            position++;
+        }
+    }
+
+    // emits the hash of every token, i.e., of every key of Standard Blocking
+    public void tokens(CharSequence value, LongConsumer keyConsumer) {
+        loadValue(value);
+
+        int position = 0;
+        while (position < length) {
+            final int start = position;
+            while (position < length && isTokenCharacter(buffer[position])) {
+                position++;
+            }
+
+            if (start < position) {
+                keyConsumer.accept(mix(getHash(start, position)));
+            }
+            position++;
+        }
+    }
+}
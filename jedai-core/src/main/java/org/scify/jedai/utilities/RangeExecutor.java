@@ -0,0 +1,91 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+ */
+package org.scify.jedai.utilities;
+
+import com.esotericsoftware.minlog.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ *
+ * @author gap2
+ */
+public class RangeExecutor {
+
+    //with too few items per thread, the overhead of the threads exceeds the gains of parallelism
+    public static boolean isParallel(int noOfItems, int noOfThreads) {
+        return 1 < noOfThreads && 2 * noOfThreads <= noOfItems;
+    }
+
+    //splits the items from firstItem (inclusive) to lastItem (exclusive) into one contiguous range per thread and
+    //returns the results of the given task in the order of the ranges, so that they are merged deterministically;
+    //if the items are too few for parallelism, the entire range is processed by the calling thread
+    public static <T> List<T> processRanges(int firstItem, int lastItem, int noOfThreads, String taskName, RangeTask<T> task) {
+        if (!isParallel(lastItem - firstItem, noOfThreads)) {
+            final List<T> results = new ArrayList<>();
+            results.add(task.process(firstItem, lastItem));
+            return results;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(noOfThreads);
+        try {
+            return processRanges(executor, firstItem, lastItem, noOfThreads, taskName, task);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    //the same as above, but on the threads of the given executor, which is reused by callers that process their items in chunks
+    public static <T> List<T> processRanges(ExecutorService executor, int firstItem, int lastItem, int noOfThreads, String taskName, RangeTask<T> task) {
+        final List<T> results = new ArrayList<>();
+        if (!isParallel(lastItem - firstItem, noOfThreads)) {
+            results.add(task.process(firstItem, lastItem));
+            return results;
+        }
+
+        final int rangeSize = (int) Math.ceil(((double) (lastItem - firstItem)) / noOfThreads);
+        try {
+            final List<Future<T>> partialResults = new ArrayList<>();
+            for (int rangeStart = firstItem; rangeStart < lastItem; rangeStart += rangeSize) {
+                final int currentStart = rangeStart;
+                final int currentEnd = Math.min(lastItem, rangeStart + rangeSize);
+                partialResults.add(executor.submit(() -> task.process(currentStart, currentEnd)));
+            }
+
+            for (Future<T> partialResult : partialResults) {
+                results.add(partialResult.get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            Log.error("Parallel " + taskName + " was interrupted!", ex);
+            throw new IllegalStateException(ex);
+        } catch (ExecutionException ex) {
+            Log.error("Parallel " + taskName + " failed!", ex);
+            throw new IllegalStateException(ex.getCause());
+        }
+        return results;
+    }
+
+    public interface RangeTask<T> {
+
+        T process(int rangeStart, int rangeEnd);
+    }
+}
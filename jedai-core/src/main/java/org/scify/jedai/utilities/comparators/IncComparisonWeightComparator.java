@@ -35,6 +35,8 @@ public class IncComparisonWeightComparator implements Comparator<Comparison> {
     * It is useful for PriorityQueues of fixed size, so that the lowest weighted 
     * comparison is placed at the head of the queue so that it is quickly 
     * removed with poll().
+    * Comparisons of equal weight are ordered by their entity ids, so that 
+    * the top-k comparisons do not depend on the order of insertion.
     */
     
     @Override
@@ -48,7 +50,10 @@ public class IncComparisonWeightComparator implements Comparator<Comparison> {
             return 1;
         }
 
-        return 0;
+        if (o1.getEntityId1() != o2.getEntityId1()) {
+            return Integer.compare(o1.getEntityId1(), o2.getEntityId1());
+        }
+        return Integer.compare(o1.getEntityId2(), o2.getEntityId2());
     }
     
     public static void main (String[] args) {
@@ -0,0 +1,124 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package org.scify.jedai.utilities.datastructures;
+
+import gnu.trove.impl.Constants;
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import java.io.Serializable;
+
+/**
+ *
+ * @author gap2
+ */
+public class BlockingKeyDictionary implements Serializable {
+
+    private static final long serialVersionUID = 7365241093476520118L;
+
+    private static final int NO_ENTRY = -1;
+
+    private boolean readOnly;
+
+    private int noOfKeys;
+    private int noOfTokens;
+
+    private final TLongIntMap compositeKeyIds;
+    private final TLongIntMap hashedKeyIds;
+    private final TLongIntMap hashedTokenIds;
+    private final TObjectIntMap<String> keyIds;
+    private final TObjectIntMap<String> tokenIds;
+
+    public BlockingKeyDictionary() {
+        noOfKeys = 0;
+        noOfTokens = 0;
+        readOnly = false;
+        compositeKeyIds = new TLongIntHashMap(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, NO_ENTRY, NO_ENTRY);
+        hashedKeyIds = new TLongIntHashMap(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, NO_ENTRY, NO_ENTRY);
+        hashedTokenIds = new TLongIntHashMap(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, NO_ENTRY, NO_ENTRY);
+        keyIds = new TObjectIntHashMap<>(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, NO_ENTRY);
+        tokenIds = new TObjectIntHashMap<>(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, NO_ENTRY);
+    }
+
+    // returns the id of the given key, after assigning a new one, if it is the first time it is encountered
+    public int getKeyId(String key) {
+        int keyId = keyIds.get(key);
+        if (keyId == NO_ENTRY && !readOnly) {
+            keyId = noOfKeys++;
+            keyIds.put(key, keyId);
+        }
+        return keyId;
+    }
+
+    // the hashed keys are produced by HashingTokenizer without materializing the key strings;
+    // two distinct keys share the same id only in the unlikely case of a collision of their 64-bit hashes
+    public int getKeyId(long keyHash) {
+        int keyId = hashedKeyIds.get(keyHash);
+        if (keyId == NO_ENTRY && !readOnly) {
+            keyId = noOfKeys++;
+            hashedKeyIds.put(keyHash, keyId);
+        }
+        return keyId;
+    }
+
+    public int getKeyId(long tokenHash, int clusterId) {
+        int tokenId = hashedTokenIds.get(tokenHash);
+        if (tokenId == NO_ENTRY) {
+            if (readOnly) {
+                return NO_ENTRY;
+            }
+            tokenId = noOfTokens++;
+            hashedTokenIds.put(tokenHash, tokenId);
+        }
+        return getCompositeKeyId(tokenId, clusterId);
+    }
+
+    // the key of an attribute value that belongs to a schema cluster is encoded as the pair (token id, cluster id),
+    // so that every distinct token is stored once, regardless of the number of clusters it appears in
+    public int getKeyId(String token, int clusterId) {
+        int tokenId = tokenIds.get(token);
+        if (tokenId == NO_ENTRY) {
+            if (readOnly) {
+                return NO_ENTRY;
+            }
+            tokenId = noOfTokens++;
+            tokenIds.put(token, tokenId);
+        }
+        return getCompositeKeyId(tokenId, clusterId);
+    }
+
+    private int getCompositeKeyId(int tokenId, int clusterId) {
+        long compositeKey = (((long) tokenId) << 32) | (clusterId & 0xFFFFFFFFL);
+        int keyId = compositeKeyIds.get(compositeKey);
+        if (keyId == NO_ENTRY && !readOnly) {
+            keyId = noOfKeys++;
+            compositeKeyIds.put(compositeKey, keyId);
+        }
+        return keyId;
+    }
+
+    public int getNoOfKeys() {
+        return noOfKeys;
+    }
+
+    // a read-only dictionary assigns no new ids and returns a negative one for every key it does not contain
+    public void setReadOnly(boolean locked) {
+        readOnly = locked;
+    }
+}
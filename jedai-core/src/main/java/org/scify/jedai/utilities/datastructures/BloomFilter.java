@@ -0,0 +1,70 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package org.scify.jedai.utilities.datastructures;
+
+import org.scify.jedai.utilities.HashingTokenizer;
+
+import java.io.Serializable;
+
+/**
+ *
+ * @author gap2
+ */
+public class BloomFilter implements Serializable {
+
+    private static final long serialVersionUID = 8051937462517390214L;
+
+    private final int noOfHashFunctions;
+    private final long noOfBits;
+
+    private final long[] bits;
+
+    // the number of bits and hash functions are optimal for the given number of keys and false positive rate
+    public BloomFilter(long expectedKeys, double falsePositiveRate) {
+        final double ln2 = Math.log(2);
+        long optimalBits = (long) Math.ceil(-Math.max(1, expectedKeys) * Math.log(falsePositiveRate) / (ln2 * ln2));
+        bits = new long[(int) Math.max(1, (optimalBits + Long.SIZE - 1) / Long.SIZE)];
+        noOfBits = (long) bits.length * Long.SIZE;
+        noOfHashFunctions = Math.max(1, (int) Math.round(((double) noOfBits) / Math.max(1, expectedKeys) * ln2));
+    }
+
+    public void add(long key) {
+        final long hash = HashingTokenizer.mix(key);
+        for (int i = 0; i < noOfHashFunctions; i++) {
+            long bit = getBit(hash, i);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    // double hashing derives the i-th bit from the two halves of the mixed key
+    private long getBit(long hash, int i) {
+        return Math.floorMod((hash >>> 32) + i * (hash & 0xFFFFFFFFL) + i * i, noOfBits);
+    }
+
+    // there are no false negatives
+    public boolean mightContain(long key) {
+        final long hash = HashingTokenizer.mix(key);
+        for (int i = 0; i < noOfHashFunctions; i++) {
+            long bit = getBit(hash, i);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
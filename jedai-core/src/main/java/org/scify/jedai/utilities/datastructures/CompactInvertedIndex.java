@@ -0,0 +1,147 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package org.scify.jedai.utilities.datastructures;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ *
+ * @author gap2
+ */
+public class CompactInvertedIndex implements Serializable {
+
+    private static final long serialVersionUID = 4715390382546702213L;
+
+    private static final int INITIAL_CAPACITY = 2;
+    private static final int[] NO_POSTINGS = new int[0];
+
+    private int maxPostings;
+    private int noOfPostings;
+
+    // the postings of the key with id k are stored in postings[k][0...sizes[k]-1];
+    // the arrays grow by doubling while postings are added and are trimmed when the index is finalized.
+    // Unlike a CSR layout, every key costs an array header, a reference and a size (about 24 bytes), but the postings
+    // are written in a single pass, even from an iterator, without buffering (key, entity) pairs or copying the index
+    private int[] sizes;
+    private int[][] postings;
+
+    public CompactInvertedIndex() {
+        maxPostings = Integer.MAX_VALUE;
+        noOfPostings = 0;
+        sizes = new int[0];
+        postings = new int[0][];
+    }
+
+    // entities should be added in increasing order of their ids, so that all postings are sorted
+    public void addPosting(int keyId, int entityId) {
+        if (sizes.length <= keyId) {
+            int newLength = Math.max(keyId + 1, 2 * sizes.length);
+            sizes = Arrays.copyOf(sizes, newLength);
+            postings = Arrays.copyOf(postings, newLength);
+        }
+
+        // the postings of oversized keys are released as soon as they exceed the maximum, as they are dropped anyway
+        final int keySize = sizes[keyId];
+        if (maxPostings <= keySize) {
+            if (keySize == maxPostings) {
+                noOfPostings -= keySize;
+                postings[keyId] = null;
+                sizes[keyId]++;
+            }
+            return;
+        }
+
+        int[] keyPostings = postings[keyId];
+        if (keyPostings == null) {
+            keyPostings = new int[INITIAL_CAPACITY];
+            postings[keyId] = keyPostings;
+        } else if (keyPostings.length == keySize) {
+            keyPostings = Arrays.copyOf(keyPostings, (int) Math.min(maxPostings, 2L * keySize));
+            postings[keyId] = keyPostings;
+        }
+        keyPostings[keySize] = entityId;
+        sizes[keyId]++;
+        noOfPostings++;
+    }
+
+    // copies the postings of the given key into the destination array and returns their number
+    public int copyPostings(int keyId, int[] destination, int position) {
+        final int keySize = getPostingsSize(keyId);
+        if (0 < keySize) {
+            System.arraycopy(postings[keyId], 0, destination, position, keySize);
+        }
+        return keySize;
+    }
+
+    // trims the posting list of every key to its actual size, one list at a time,
+    // and drops the lists of the keys that exceeded the maximum number of postings
+    public void finalizeIndex(int noOfKeys) {
+        if (sizes.length != noOfKeys) {
+            sizes = Arrays.copyOf(sizes, noOfKeys);
+            postings = Arrays.copyOf(postings, noOfKeys);
+        }
+
+        for (int keyId = 0; keyId < noOfKeys; keyId++) {
+            if (maxPostings < sizes[keyId]) {
+                sizes[keyId] = 0;
+                postings[keyId] = null;
+            } else if (postings[keyId] != null && postings[keyId].length != sizes[keyId]) {
+                postings[keyId] = Arrays.copyOf(postings[keyId], sizes[keyId]);
+            }
+        }
+    }
+
+    public int getNoOfKeys() {
+        return sizes.length;
+    }
+
+    public int getNoOfPostings() {
+        return noOfPostings;
+    }
+
+    // after finalizeIndex, the trimmed array of the key is returned without copying, so it should not be modified
+    public int[] getPostings(int keyId) {
+        final int keySize = getPostingsSize(keyId);
+        if (keySize == 0) {
+            return NO_POSTINGS;
+        }
+
+        final int[] keyPostings = postings[keyId];
+        if (keyPostings.length == keySize) {
+            return keyPostings;
+        }
+        return Arrays.copyOf(keyPostings, keySize);
+    }
+
+    public int getPostingsSize(int keyId) {
+        if (getNoOfKeys() <= keyId || maxPostings < sizes[keyId]) {
+            return 0;
+        }
+        return sizes[keyId];
+    }
+
+    // true if the key has more postings than the maximum, in which case it is excluded from the index
+    public boolean isOversized(int keyId) {
+        return keyId < getNoOfKeys() && maxPostings < sizes[keyId];
+    }
+
+    // should be set before adding any posting
+    public void setMaxPostings(int postings) {
+        maxPostings = Math.max(1, postings);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package org.scify.jedai.utilities.datastructures;
+
+import org.scify.jedai.utilities.HashingTokenizer;
+
+import java.io.Serializable;
+
+/**
+ *
+ * @author gap2
+ */
+public class CountMinSketch implements Serializable {
+
+    private static final long serialVersionUID = 2319456780127734568L;
+
+    private final int depth;
+    private final int widthMask;
+
+    private final int[][] counters;
+
+    // the width is rounded up to a power of two; every estimate exceeds the actual count
+    // by at most e * (total count) / width with probability 1 - exp(-depth)
+    public CountMinSketch(int width, int depth) {
+        this.depth = Math.max(1, depth);
+        int actualWidth = Integer.highestOneBit(Math.max(1, width - 1)) << 1;
+        widthMask = actualWidth - 1;
+        counters = new int[this.depth][actualWidth];
+    }
+
+    // conservative update: only the smallest counters are incremented, which reduces the overestimation
+    public void add(long key) {
+        final long hash = HashingTokenizer.mix(key);
+        int estimate = estimate(hash);
+        for (int row = 0; row < depth; row++) {
+            int column = getColumn(hash, row);
+            if (counters[row][column] == estimate) {
+                counters[row][column]++;
+            }
+        }
+    }
+
+    private int estimate(long hash) {
+        int minimum = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            minimum = Math.min(minimum, counters[row][getColumn(hash, row)]);
+        }
+        return minimum;
+    }
+
+    public int getCount(long key) {
+        return estimate(HashingTokenizer.mix(key));
+    }
+
+    // double hashing derives the column of every row from the two halves of the mixed key
+    private int getColumn(long hash, int row) {
+        return (int) (hash + row * (hash >>> 32)) & widthMask;
+    }
+}
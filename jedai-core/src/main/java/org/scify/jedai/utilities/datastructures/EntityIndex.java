@@ -18,9 +18,11 @@ package org.scify.jedai.utilities.datastructures;
 
 import org.scify.jedai.datamodel.AbstractBlock;
 import org.scify.jedai.datamodel.BilateralBlock;
+import org.scify.jedai.datamodel.BlockCollection;
 import org.scify.jedai.datamodel.DecomposedBlock;
 import org.scify.jedai.datamodel.UnilateralBlock;
 import java.io.Serializable;
+import java.nio.IntBuffer;
 import java.util.List;
 
 /**
@@ -41,6 +43,7 @@ public class EntityIndex implements Serializable {
     private int[][] entityBlocks;
     
     private BilateralBlock[] bBlocks;
+    private BlockCollection blockCollection;
     private UnilateralBlock[] uBlocks;
 
     public EntityIndex(List<AbstractBlock> blocks) {
@@ -63,6 +66,26 @@ public class EntityIndex implements Serializable {
         }
     }
 
+    //the entities are indexed directly from the columnar arrays; the block objects are created only on demand
+    public EntityIndex(BlockCollection blocks) {
+        if (blocks.getNoOfBlocks() == 0) {
+            System.err.println("Entity index received an empty block collection as input!");
+            return;
+        }
+
+        blockCollection = blocks;
+        cleanCleanER = blocks.isCleanCleanER();
+        noOfBlocks = blocks.getNoOfBlocks();
+        if (cleanCleanER) {
+            datasetLimit = blocks.getNoOfEntities(0);
+            noOfEntities = datasetLimit + blocks.getNoOfEntities(1);
+        } else {
+            datasetLimit = 0;
+            noOfEntities = blocks.getNoOfEntities(0);
+        }
+        indexBlockCollection();
+    }
+
     private void firstPass(List<AbstractBlock> blocks) {
         int counter = 0;
         noOfBlocks = blocks.size();
@@ -107,9 +130,19 @@ public class EntityIndex implements Serializable {
     }
     
     public BilateralBlock[] getBilateralBlocks() {
+        if (bBlocks == null && blockCollection != null && cleanCleanER) {
+            bBlocks = new BilateralBlock[noOfBlocks];
+            for (int blockId = 0; blockId < noOfBlocks; blockId++) {
+                bBlocks[blockId] = (BilateralBlock) blockCollection.getBlock(blockId);
+            }
+        }
         return bBlocks;
     }
 
+    public BlockCollection getBlockCollection() {
+        return blockCollection;
+    }
+
     public int getDatasetLimit() {
         return datasetLimit;
     }
@@ -140,6 +173,12 @@ public class EntityIndex implements Serializable {
     }
 
     public UnilateralBlock[] getUnilateralBlocks() {
+        if (uBlocks == null && blockCollection != null && !cleanCleanER) {
+            uBlocks = new UnilateralBlock[noOfBlocks];
+            for (int blockId = 0; blockId < noOfBlocks; blockId++) {
+                uBlocks[blockId] = (UnilateralBlock) blockCollection.getBlock(blockId);
+            }
+        }
         return uBlocks;
     }
     
@@ -147,6 +186,45 @@ public class EntityIndex implements Serializable {
         return entityBlocks;
     }
     
+    private void indexBlockCollection() {
+        //count blocks & comparisons per entity
+        final int[] counters = new int[noOfEntities];
+        entityComparisons = new double[noOfEntities];
+        final int noOfDatasets = cleanCleanER ? 2 : 1;
+        for (int datasetId = 0; datasetId < noOfDatasets; datasetId++) {
+            final int entityOffset = datasetId * datasetLimit;
+            final IntBuffer entityIds = blockCollection.getEntityIds(datasetId);
+            final IntBuffer offsets = blockCollection.getOffsets(datasetId);
+            for (int blockId = 0; blockId < noOfBlocks; blockId++) {
+                int comparisons = cleanCleanER ? blockCollection.getInnerBlockSize(blockId, 1 - datasetId) : blockCollection.getInnerBlockSize(blockId, 0) - 1;
+                for (int i = offsets.get(blockId); i < offsets.get(blockId + 1); i++) {
+                    counters[entityOffset + entityIds.get(i)]++;
+                    entityComparisons[entityOffset + entityIds.get(i)] += comparisons;
+                }
+            }
+        }
+
+        //initialize inverted index
+        entityBlocks = new int[noOfEntities][];
+        for (int i = 0; i < noOfEntities; i++) {
+            entityBlocks[i] = new int[counters[i]];
+            counters[i] = 0;
+        }
+
+        //build inverted index
+        for (int datasetId = 0; datasetId < noOfDatasets; datasetId++) {
+            final int entityOffset = datasetId * datasetLimit;
+            final IntBuffer entityIds = blockCollection.getEntityIds(datasetId);
+            final IntBuffer offsets = blockCollection.getOffsets(datasetId);
+            for (int blockId = 0; blockId < noOfBlocks; blockId++) {
+                for (int i = offsets.get(blockId); i < offsets.get(blockId + 1); i++) {
+                    int entityId = entityOffset + entityIds.get(i);
+                    entityBlocks[entityId][counters[entityId]++] = blockId;
+                }
+            }
+        }
+    }
+
     private void indexBilateralEntities() {
         final int[] counters = new int[noOfEntities];
         entityComparisons = new double[noOfEntities];
@@ -0,0 +1,378 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package org.scify.jedai.utilities.datastructures;
+
+import com.esotericsoftware.minlog.Log;
+
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ *
+ * @author gap2
+ */
+public class ExternalInvertedIndex implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_OPEN_RUNS = 64;
+
+    private int bufferedPostings;
+    private final int maxBufferedPostings;
+
+    private final List<File> runFiles;
+    private final List<PostingsRun> openRuns;
+    private Map<String, TIntList> buffer;
+    private PriorityQueue<PostingsRun> mergeQueue;
+
+    private String currentKey;
+    private final TIntList currentPostings;
+
+    public ExternalInvertedIndex(int maxPostings) {
+        bufferedPostings = 0;
+        maxBufferedPostings = Math.max(1, maxPostings);
+
+        buffer = new HashMap<>();
+        currentPostings = new TIntArrayList();
+        openRuns = new ArrayList<>();
+        runFiles = new ArrayList<>();
+    }
+
+    // entities should be added in increasing order of their ids, so that all postings are sorted
+    public void addPosting(String key, int entityId) {
+        TIntList entityList = buffer.get(key);
+        if (entityList == null) {
+            entityList = new TIntArrayList();
+            buffer.put(key, entityList);
+        }
+        entityList.add(entityId);
+
+        bufferedPostings++;
+        if (maxBufferedPostings <= bufferedPostings) {
+            spillBuffer();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (PostingsRun run : openRuns) {
+            run.close();
+        }
+        openRuns.clear();
+        for (File runFile : runFiles) {
+            if (!runFile.delete()) {
+                Log.warn("Could not delete temporary file " + runFile.getAbsolutePath());
+            }
+        }
+        runFiles.clear();
+        buffer = null;
+        mergeQueue = null;
+    }
+
+    public String getKey() {
+        return currentKey;
+    }
+
+    public int getNoOfRuns() {
+        return runFiles.size();
+    }
+
+    public int[] getPostings() {
+        return currentPostings.toArray();
+    }
+
+    public int getPostingsSize() {
+        return currentPostings.size();
+    }
+
+    // merges the sorted runs and moves to the next key in lexicographic order; returns false after the last key
+    public boolean nextKey() {
+        if (mergeQueue == null) {
+            startMerging();
+        }
+
+        currentPostings.clear();
+        if (mergeQueue.isEmpty()) {
+            currentKey = null;
+            return false;
+        }
+
+        currentKey = pollNextKey(mergeQueue, currentPostings);
+        return true;
+    }
+
+    private PriorityQueue<PostingsRun> initializeQueue() {
+        return new PriorityQueue<>((r1, r2) -> {
+            int comparison = r1.key.compareTo(r2.key);
+            if (comparison == 0) {
+                return Integer.compare(r1.runId, r2.runId);
+            }
+            return comparison;
+        });
+    }
+
+    // merges consecutive groups of runs until they can all be opened at the same time
+    private void mergeRuns() {
+        while (MAX_OPEN_RUNS < runFiles.size()) {
+            final List<File> mergedFiles = new ArrayList<>();
+            for (int i = 0; i < runFiles.size(); i += MAX_OPEN_RUNS) {
+                final List<File> group = runFiles.subList(i, Math.min(runFiles.size(), i + MAX_OPEN_RUNS));
+                if (group.size() == 1) {
+                    mergedFiles.add(group.get(0));
+                    continue;
+                }
+
+                final PriorityQueue<PostingsRun> queue = initializeQueue();
+                final List<PostingsRun> groupRuns = new ArrayList<>();
+                for (File runFile : group) {
+                    final PostingsRun run = new FilePostingsRun(groupRuns.size(), runFile);
+                    groupRuns.add(run);
+                    if (run.advance()) {
+                        queue.add(run);
+                    }
+                }
+
+                try {
+                    final File mergedFile = createRunFile();
+                    try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(mergedFile), BUFFER_SIZE))) {
+                        final TIntList postings = new TIntArrayList();
+                        while (!queue.isEmpty()) {
+                            postings.clear();
+                            writePostings(output, pollNextKey(queue, postings), postings);
+                        }
+                    }
+                    mergedFiles.add(mergedFile);
+                } catch (IOException ex) {
+                    Log.error("Merging the spilled inverted index failed!", ex);
+                    throw new IllegalStateException(ex);
+                } finally {
+                    for (PostingsRun run : groupRuns) {
+                        run.close();
+                    }
+                }
+
+                for (File runFile : group) {
+                    if (!runFile.delete()) {
+                        Log.warn("Could not delete temporary file " + runFile.getAbsolutePath());
+                    }
+                }
+            }
+            runFiles.clear();
+            runFiles.addAll(mergedFiles);
+        }
+    }
+
+    // runs holding the same key are polled in the order of their creation, i.e., in increasing order of entity ids
+    private String pollNextKey(PriorityQueue<PostingsRun> queue, TIntList postings) {
+        final String key = queue.peek().key;
+        while (!queue.isEmpty() && queue.peek().key.equals(key)) {
+            final PostingsRun run = queue.poll();
+            postings.addAll(run.postings);
+            if (run.advance()) {
+                queue.add(run);
+            }
+        }
+        return key;
+    }
+
+    private File createRunFile() throws IOException {
+        final File runFile = File.createTempFile("jedaiIndexRun", ".bin");
+        runFile.deleteOnExit();
+        return runFile;
+    }
+
+    private void spillBuffer() {
+        if (buffer.isEmpty()) {
+            return;
+        }
+
+        final String[] sortedKeys = buffer.keySet().toArray(new String[buffer.size()]);
+        Arrays.sort(sortedKeys);
+
+        try {
+            final File runFile = createRunFile();
+            runFiles.add(runFile);
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(runFile), BUFFER_SIZE))) {
+                for (String key : sortedKeys) {
+                    writePostings(output, key, buffer.get(key));
+                }
+            }
+        } catch (IOException ex) {
+            Log.error("Spilling the inverted index to disk failed!", ex);
+            throw new IllegalStateException(ex);
+        }
+
+        buffer = new HashMap<>();
+        bufferedPostings = 0;
+    }
+
+    private void startMerging() {
+        // the last buffer is merged in memory, unless the index was spilled at least once
+        if (!runFiles.isEmpty()) {
+            spillBuffer();
+            mergeRuns();
+        }
+
+        mergeQueue = initializeQueue();
+
+        for (File runFile : runFiles) {
+            final PostingsRun run = new FilePostingsRun(openRuns.size(), runFile);
+            openRuns.add(run);
+            if (run.advance()) {
+                mergeQueue.add(run);
+            }
+        }
+
+        if (!buffer.isEmpty()) {
+            final PostingsRun run = new MemoryPostingsRun(openRuns.size(), buffer);
+            openRuns.add(run);
+            if (run.advance()) {
+                mergeQueue.add(run);
+            }
+        }
+        buffer = new HashMap<>();
+        bufferedPostings = 0;
+    }
+
+    private void writePostings(DataOutputStream output, String key, TIntList entityList) throws IOException {
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(keyBytes.length);
+        output.write(keyBytes);
+
+        output.writeInt(entityList.size());
+        for (int i = 0; i < entityList.size(); i++) {
+            output.writeInt(entityList.get(i));
+        }
+    }
+
+    private abstract static class PostingsRun {
+
+        protected final int runId;
+
+        protected String key;
+        protected int[] postings;
+
+        PostingsRun(int id) {
+            runId = id;
+        }
+
+        abstract boolean advance();
+
+        void close() {
+        }
+    }
+
+    private static class FilePostingsRun extends PostingsRun {
+
+        private DataInputStream input;
+
+        FilePostingsRun(int id, File runFile) {
+            super(id);
+            try {
+                input = new DataInputStream(new BufferedInputStream(new FileInputStream(runFile), BUFFER_SIZE));
+            } catch (IOException ex) {
+                Log.error("Opening the spilled inverted index failed!", ex);
+                throw new IllegalStateException(ex);
+            }
+        }
+
+        @Override
+        boolean advance() {
+            if (input == null) {
+                return false;
+            }
+
+            try {
+                final int keyLength;
+                try {
+                    keyLength = input.readInt();
+                } catch (EOFException ex) {
+                    close();
+                    return false;
+                }
+
+                final byte[] keyBytes = new byte[keyLength];
+                input.readFully(keyBytes);
+                key = new String(keyBytes, StandardCharsets.UTF_8);
+
+                postings = new int[input.readInt()];
+                for (int i = 0; i < postings.length; i++) {
+                    postings[i] = input.readInt();
+                }
+                return true;
+            } catch (IOException ex) {
+                Log.error("Reading the spilled inverted index failed!", ex);
+                throw new IllegalStateException(ex);
+            }
+        }
+
+        @Override
+        void close() {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException ex) {
+                    Log.error("Closing the spilled inverted index failed!", ex);
+                }
+                input = null;
+            }
+        }
+    }
+
+    private static class MemoryPostingsRun extends PostingsRun {
+
+        private int keyIndex;
+        private final Map<String, TIntList> index;
+        private final String[] sortedKeys;
+
+        MemoryPostingsRun(int id, Map<String, TIntList> buffer) {
+            super(id);
+            index = buffer;
+            keyIndex = 0;
+            sortedKeys = buffer.keySet().toArray(new String[buffer.size()]);
+            Arrays.sort(sortedKeys);
+        }
+
+        @Override
+        boolean advance() {
+            if (sortedKeys.length <= keyIndex) {
+                return false;
+            }
+
+            key = sortedKeys[keyIndex++];
+            postings = index.get(key).toArray();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,387 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package org.scify.jedai.utilities.datastructures;
+
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.set.TIntSet;
+import gnu.trove.set.hash.TIntHashSet;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.BilateralBlock;
+import org.scify.jedai.datamodel.UnilateralBlock;
+
+/**
+ *
+ * @author gap2
+ */
+public class GeneralizedSuffixArray {
+
+    private static final int INSERTION_SORT_LIMIT = 12;
+
+    private final boolean cleanCleanER;
+    private final boolean substrings;
+
+    private final int maximumBlockSize;
+    private final int minimumLength;
+
+    private final BlockingKeyDictionary tokenDictionary;
+    private final List<char[]> tokens;
+    private final List<TIntList> postingsD1;
+    private final List<TIntList> postingsD2;
+    private final TIntList tokenClusters;
+
+    // the leaves of the current cluster, i.e., (token id, offset) pairs
+    private int[] leafTokens;
+    private int[] leafOffsets;
+
+    // if substrings is false, the blocking keys are the suffixes of the tokens (Suffix Arrays Blocking);
+    // otherwise, they are all their substrings (Extended Suffix Arrays Blocking)
+    public GeneralizedSuffixArray(boolean allSubstrings, int minLength, int maxBlockSize, boolean ccER) {
+        cleanCleanER = ccER;
+        maximumBlockSize = maxBlockSize;
+        minimumLength = Math.max(1, minLength);
+        substrings = allSubstrings;
+
+        tokenDictionary = new BlockingKeyDictionary();
+        tokens = new ArrayList<>();
+        postingsD1 = new ArrayList<>();
+        postingsD2 = new ArrayList<>();
+        tokenClusters = new TIntArrayList();
+    }
+
+    // entities should be added in increasing order of their ids; clusterId is negative in the absence of schema clusters
+    public void addToken(String token, int clusterId, int datasetId, int entityId) {
+        if (token.isEmpty()) {
+            return;
+        }
+
+        int tokenId = clusterId < 0 ? tokenDictionary.getKeyId(token) : tokenDictionary.getKeyId(token, clusterId);
+        if (tokenId == tokens.size()) {
+            tokens.add(token.toCharArray());
+            tokenClusters.add(clusterId);
+            postingsD1.add(new TIntArrayList());
+            if (cleanCleanER) {
+                postingsD2.add(new TIntArrayList());
+            }
+        }
+
+        final TIntList postings = datasetId == 0 ? postingsD1.get(tokenId) : postingsD2.get(tokenId);
+        if (postings.isEmpty() || postings.get(postings.size() - 1) != entityId) {
+            postings.add(entityId);
+        }
+    }
+
+    private void addBlock(List<AbstractBlock> blocks, int[] entitiesD1, int[] entitiesD2) {
+        if (!cleanCleanER) {
+            if (1 < entitiesD1.length) {
+                blocks.add(new UnilateralBlock(entitiesD1));
+            }
+        } else if (0 < entitiesD1.length && 0 < entitiesD2.length) {
+            blocks.add(new BilateralBlock(entitiesD1, entitiesD2));
+        }
+    }
+
+    // adds one block per key of length in (lowerLength, upperLength], as all these keys share the same entities
+    private void addBlocks(List<AbstractBlock> blocks, EntitySet entities, int lowerLength, int upperLength) {
+        int firstLength = Math.max(lowerLength + 1, minimumLength);
+        if (upperLength < firstLength || entities.oversized) {
+            return;
+        }
+
+        final int[] entitiesD1 = entities.entitiesD1.toArray();
+        Arrays.sort(entitiesD1);
+        int[] entitiesD2 = null;
+        if (cleanCleanER) {
+            entitiesD2 = entities.entitiesD2.toArray();
+            Arrays.sort(entitiesD2);
+        }
+
+        for (int length = firstLength; length <= upperLength; length++) {
+            addBlock(blocks, entitiesD1.clone(), cleanCleanER ? entitiesD2.clone() : null);
+        }
+    }
+
+    private void addLeafBlocks(List<AbstractBlock> blocks, int tokenId, int lowerLength, int upperLength) {
+        int firstLength = Math.max(lowerLength + 1, minimumLength);
+        if (upperLength < firstLength || maximumBlockSize < getTotalPostings(tokenId)) {
+            return;
+        }
+
+        for (int length = firstLength; length <= upperLength; length++) {
+            addBlock(blocks, postingsD1.get(tokenId).toArray(), cleanCleanER ? postingsD2.get(tokenId).toArray() : null);
+        }
+    }
+
+    // the keys that are shorter than the minimum length are the tokens themselves
+    private void addShortTokenBlocks(List<AbstractBlock> blocks) {
+        for (int tokenId = 0; tokenId < tokens.size(); tokenId++) {
+            if (tokens.get(tokenId).length < minimumLength && getTotalPostings(tokenId) <= maximumBlockSize) {
+                addBlock(blocks, postingsD1.get(tokenId).toArray(), cleanCleanER ? postingsD2.get(tokenId).toArray() : null);
+            }
+        }
+    }
+
+    // emits the blocks of all keys, except for those with more than maximumBlockSize entities
+    public void getBlocks(List<AbstractBlock> blocks) {
+        addShortTokenBlocks(blocks);
+
+        // the keys of different schema clusters never share any entities, so every cluster is processed separately
+        final TIntObjectMap<TIntList> clusterTokens = new TIntObjectHashMap<>();
+        for (int tokenId = 0; tokenId < tokens.size(); tokenId++) {
+            if (minimumLength <= tokens.get(tokenId).length) {
+                TIntList tokenIds = clusterTokens.get(tokenClusters.get(tokenId));
+                if (tokenIds == null) {
+                    tokenIds = new TIntArrayList();
+                    clusterTokens.put(tokenClusters.get(tokenId), tokenIds);
+                }
+                tokenIds.add(tokenId);
+            }
+        }
+
+        final int[] clusterIds = clusterTokens.keys();
+        Arrays.sort(clusterIds);
+        for (int clusterId : clusterIds) {
+            initializeLeaves(clusterTokens.get(clusterId));
+            final int[] sortedLeaves = new int[leafTokens.length];
+            for (int i = 0; i < sortedLeaves.length; i++) {
+                sortedLeaves[i] = i;
+            }
+            sort(sortedLeaves, 0, sortedLeaves.length - 1, 0);
+            traverseIntervals(blocks, sortedLeaves);
+        }
+    }
+
+    // the character of the leaf at the given depth, or -1 after its end; in the case of suffixes, the tokens are
+    // reversed, so that all tokens ending with the same suffix are adjacent in the sorted array
+    private int getCharacter(int leaf, int depth) {
+        final char[] token = tokens.get(leafTokens[leaf]);
+        int position = leafOffsets[leaf] + depth;
+        if (token.length <= position) {
+            return -1;
+        }
+        return substrings ? token[position] : token[token.length - 1 - position];
+    }
+
+    private int getLeafLength(int leaf) {
+        return tokens.get(leafTokens[leaf]).length - leafOffsets[leaf];
+    }
+
+    private int getLongestCommonPrefix(int leaf1, int leaf2) {
+        int maxLength = Math.min(getLeafLength(leaf1), getLeafLength(leaf2));
+        int length = 0;
+        while (length < maxLength && getCharacter(leaf1, length) == getCharacter(leaf2, length)) {
+            length++;
+        }
+        return length;
+    }
+
+    private int getTotalPostings(int tokenId) {
+        int totalPostings = postingsD1.get(tokenId).size();
+        if (cleanCleanER) {
+            totalPostings += postingsD2.get(tokenId).size();
+        }
+        return totalPostings;
+    }
+
+    private void initializeLeaves(TIntList tokenIds) {
+        final TIntList leafTokenList = new TIntArrayList();
+        final TIntList leafOffsetList = new TIntArrayList();
+        for (int i = 0; i < tokenIds.size(); i++) {
+            int tokenId = tokenIds.get(i);
+            int lastOffset = substrings ? tokens.get(tokenId).length - minimumLength : 0;
+            for (int offset = 0; offset <= lastOffset; offset++) {
+                leafTokenList.add(tokenId);
+                leafOffsetList.add(offset);
+            }
+        }
+        leafTokens = leafTokenList.toArray();
+        leafOffsets = leafOffsetList.toArray();
+    }
+
+    private int compare(int leaf1, int leaf2, int depth) {
+        while (true) {
+            int char1 = getCharacter(leaf1, depth);
+            int char2 = getCharacter(leaf2, depth);
+            if (char1 != char2) {
+                return Integer.compare(char1, char2);
+            }
+            if (char1 < 0) {
+                return 0;
+            }
+            depth++;
+        }
+    }
+
+    // multikey quicksort: the leaves in sortedLeaves[lo...hi] share their first depth characters
+    private void sort(int[] sortedLeaves, int lo, int hi, int depth) {
+        while (INSERTION_SORT_LIMIT < hi - lo) {
+            swap(sortedLeaves, lo, lo + (hi - lo) / 2);
+            int pivot = getCharacter(sortedLeaves[lo], depth);
+
+            int lessThan = lo;
+            int greaterThan = hi;
+            int i = lo + 1;
+            while (i <= greaterThan) {
+                int character = getCharacter(sortedLeaves[i], depth);
+                if (character < pivot) {
+                    swap(sortedLeaves, lessThan++, i++);
+                } else if (pivot < character) {
+                    swap(sortedLeaves, i, greaterThan--);
+                } else {
+                    i++;
+                }
+            }
+
+            sort(sortedLeaves, lo, lessThan - 1, depth);
+            if (0 <= pivot) {
+                sort(sortedLeaves, lessThan, greaterThan, depth + 1);
+            }
+            lo = greaterThan + 1;
+        }
+
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; lo < j && compare(sortedLeaves[j], sortedLeaves[j - 1], depth) < 0; j--) {
+                swap(sortedLeaves, j, j - 1);
+            }
+        }
+    }
+
+    private void swap(int[] array, int i, int j) {
+        int temp = array[i];
+        array[i] = array[j];
+        array[j] = temp;
+    }
+
+    // bottom-up traversal of the lcp-intervals of the sorted leaves, i.e., of the nodes of the generalized suffix tree;
+    // every node corresponds to the keys of length in (lcp of its parent, its lcp] and to the union of its leaves' entities
+    private void traverseIntervals(List<AbstractBlock> blocks, int[] sortedLeaves) {
+        final Deque<LcpInterval> stack = new ArrayDeque<>();
+        stack.push(new LcpInterval(0, new EntitySet()));
+
+        int previousLcp = 0;
+        for (int i = 0; i < sortedLeaves.length; i++) {
+            int leaf = sortedLeaves[i];
+            int nextLcp = i + 1 < sortedLeaves.length ? getLongestCommonPrefix(leaf, sortedLeaves[i + 1]) : 0;
+            addLeafBlocks(blocks, leafTokens[leaf], Math.max(previousLcp, nextLcp), getLeafLength(leaf));
+
+            EntitySet lastEntities = null;
+            while (nextLcp < stack.peek().lcp) {
+                final LcpInterval interval = stack.pop();
+                if (lastEntities == null) {
+                    interval.entities.addPostings(leafTokens[leaf]);
+                } else {
+                    interval.entities.addAll(lastEntities);
+                }
+                addBlocks(blocks, interval.entities, Math.max(nextLcp, stack.peek().lcp), interval.lcp);
+                lastEntities = interval.entities;
+            }
+
+            if (stack.peek().lcp < nextLcp) {
+                if (lastEntities == null) {
+                    lastEntities = new EntitySet();
+                    lastEntities.addPostings(leafTokens[leaf]);
+                }
+                stack.push(new LcpInterval(nextLcp, lastEntities));
+            } else if (0 < stack.peek().lcp) {
+                if (lastEntities == null) {
+                    stack.peek().entities.addPostings(leafTokens[leaf]);
+                } else {
+                    stack.peek().entities.addAll(lastEntities);
+                }
+            }
+            previousLcp = nextLcp;
+        }
+    }
+
+    private class EntitySet {
+
+        private boolean oversized;
+        private TIntSet entitiesD1;
+        private TIntSet entitiesD2;
+
+        EntitySet() {
+            oversized = false;
+            entitiesD1 = new TIntHashSet();
+            entitiesD2 = cleanCleanER ? new TIntHashSet() : null;
+        }
+
+        void addAll(EntitySet other) {
+            if (oversized) {
+                return;
+            }
+            if (other.oversized) {
+                setOversized();
+                return;
+            }
+
+            entitiesD1.addAll(other.entitiesD1);
+            if (cleanCleanER) {
+                entitiesD2.addAll(other.entitiesD2);
+            }
+            checkSize();
+        }
+
+        void addPostings(int tokenId) {
+            if (oversized) {
+                return;
+            }
+
+            entitiesD1.addAll(postingsD1.get(tokenId));
+            if (cleanCleanER) {
+                entitiesD2.addAll(postingsD2.get(tokenId));
+            }
+            checkSize();
+        }
+
+        // the entities of a node include those of its children, so an oversized node has only oversized ancestors
+        private void checkSize() {
+            int size = entitiesD1.size();
+            if (cleanCleanER) {
+                size += entitiesD2.size();
+            }
+            if (maximumBlockSize < size) {
+                setOversized();
+            }
+        }
+
+        private void setOversized() {
+            oversized = true;
+            entitiesD1 = null;
+            entitiesD2 = null;
+        }
+    }
+
+    private static class LcpInterval {
+
+        private final int lcp;
+        private final EntitySet entities;
+
+        LcpInterval(int lcp, EntitySet entities) {
+            this.lcp = lcp;
+            this.entities = entities;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+
+package org.scify.jedai.utilities.datastructures;
+
+import org.scify.jedai.datamodel.Attribute;
+import org.scify.jedai.datamodel.EntityProfile;
+import org.scify.jedai.textmodels.ITextModel;
+
+import gnu.trove.impl.Constants;
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ *
+ * @author gap2
+ */
+public class TokenStore {
+
+    private static final int NO_ENTRY = -1;
+
+    private int noOfTokens;
+
+    private volatile String[] tokens;
+
+    private final Map<EntityProfile, int[][]> profileTokenIds;
+    private final Map<EntityProfile, String[][]> profileTokens;
+    private final Map<String, String[]> nameTokens;
+    private final TObjectIntMap<String> tokenIds;
+
+    public TokenStore() {
+        noOfTokens = 0;
+        tokens = new String[Constants.DEFAULT_CAPACITY];
+        nameTokens = new ConcurrentHashMap<>();
+        profileTokenIds = new ConcurrentHashMap<>();
+        profileTokens = new ConcurrentHashMap<>();
+        tokenIds = new TObjectIntHashMap<>(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, NO_ENTRY);
+    }
+
+    // tokenizes all profiles that are not contained in the store; it should precede any concurrent access to them
+    public void addProfiles(List<EntityProfile> profiles) {
+        if (profiles == null) {
+            return;
+        }
+
+        for (EntityProfile profile : profiles) {
+            getTokenIds(profile);
+        }
+    }
+
+    private synchronized int[] encode(String text) {
+        final String[] textTokens = tokenize(text);
+        final int[] textTokenIds = new int[textTokens.length];
+        for (int i = 0; i < textTokens.length; i++) {
+            int tokenId = tokenIds.get(textTokens[i]);
+            if (tokenId == NO_ENTRY) {
+                if (tokens.length == noOfTokens) {
+                    tokens = Arrays.copyOf(tokens, 2 * noOfTokens);
+                }
+                tokenId = noOfTokens++;
+                tokens[tokenId] = textTokens[i];
+                tokenIds.put(textTokens[i], tokenId);
+            }
+            textTokenIds[i] = tokenId;
+        }
+        return textTokenIds;
+    }
+
+    // the returned arrays are cached and shared by all callers, so they should not be modified
+    public String[] getNameTokens(String attributeName) {
+        String[] attributeTokens = nameTokens.get(attributeName);
+        if (attributeTokens == null) {
+            attributeTokens = getTokens(encode(attributeName));
+            nameTokens.put(attributeName, attributeTokens);
+        }
+        return attributeTokens;
+    }
+
+    public int getNoOfProfiles() {
+        return profileTokenIds.size();
+    }
+
+    public synchronized int getNoOfTokens() {
+        return noOfTokens;
+    }
+
+    public String getToken(int tokenId) {
+        return tokens[tokenId];
+    }
+
+    public synchronized int getTokenId(String token) {
+        return tokenIds.get(token);
+    }
+
+    // returns the token ids of every attribute value in the iteration order of the profile's attributes;
+    // a profile is tokenized anew if attributes have been added to it after it was stored
+    public int[][] getTokenIds(EntityProfile profile) {
+        int[][] valueTokens = profileTokenIds.get(profile);
+        if (valueTokens == null || valueTokens.length != profile.getProfileSize()) {
+            int counter = 0;
+            valueTokens = new int[profile.getProfileSize()][];
+            for (Attribute attribute : profile.getAttributes()) {
+                valueTokens[counter++] = encode(attribute.getValue());
+            }
+            profileTokenIds.put(profile, valueTokens);
+        }
+        return valueTokens;
+    }
+
+    public String[] getTokens(int[] textTokenIds) {
+        final String[] allTokens = tokens;
+        final String[] textTokens = new String[textTokenIds.length];
+        for (int i = 0; i < textTokenIds.length; i++) {
+            textTokens[i] = allTokens[textTokenIds[i]];
+        }
+        return textTokens;
+    }
+
+    // the tokens of every profile are decoded once and point to the dictionary's strings;
+    // the returned arrays are cached and shared by all callers, so they should not be modified
+    public String[][] getValueTokens(EntityProfile profile) {
+        String[][] valueTokens = profileTokens.get(profile);
+        if (valueTokens == null || valueTokens.length != profile.getProfileSize()) {
+            final int[][] valueTokenIds = getTokenIds(profile);
+            valueTokens = new String[valueTokenIds.length][];
+            for (int i = 0; i < valueTokenIds.length; i++) {
+                valueTokens[i] = getTokens(valueTokenIds[i]);
+            }
+            profileTokens.put(profile, valueTokens);
+        }
+        return valueTokens;
+    }
+
+    // the same tokenization is applied by the block builders and the token-based representation models
+    public static String[] tokenize(String text) {
+        return text.toLowerCase().split("[\\W_]");
+    }
+
+    // the models that require the original text, e.g., the character-based ones, are updated with the attribute values
+    public void updateModel(ITextModel model, EntityProfile profile) {
+        if (!model.supportsTokens()) {
+            for (Attribute attribute : profile.getAttributes()) {
+                model.updateModel(attribute.getValue());
+            }
+            return;
+        }
+
+        for (String[] valueTokens : getValueTokens(profile)) {
+            model.updateModel(valueTokens);
+        }
+    }
+}
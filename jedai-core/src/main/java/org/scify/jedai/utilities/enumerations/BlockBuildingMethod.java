@@ -15,6 +15,7 @@
  */
 package org.scify.jedai.utilities.enumerations;
 
+import org.scify.jedai.blockbuilding.AdaptiveSortedNeighborhoodBlocking;
 import org.scify.jedai.blockbuilding.ExtendedQGramsBlocking;
 import org.scify.jedai.blockbuilding.ExtendedSortedNeighborhoodBlocking;
 import org.scify.jedai.blockbuilding.ExtendedSuffixArraysBlocking;
@@ -44,7 +45,8 @@ public enum BlockBuildingMethod {
     Q_GRAMS_BLOCKING,
     SORTED_NEIGHBORHOOD,
     STANDARD_BLOCKING,
-    SUFFIX_ARRAYS;
+    SUFFIX_ARRAYS,
+    ADAPTIVE_SORTED_NEIGHBORHOOD;
 
     public static IBlockBuilding getDefaultConfiguration(BlockBuildingMethod blbuMethod) {
         switch (blbuMethod) {
@@ -64,6 +66,8 @@ public enum BlockBuildingMethod {
                 return new SortedNeighborhoodBlocking();
             case SUFFIX_ARRAYS:
                 return new SuffixArraysBlocking();
+            case ADAPTIVE_SORTED_NEIGHBORHOOD:
+                return new AdaptiveSortedNeighborhoodBlocking();
             case STANDARD_BLOCKING:
             default:
                 return new StandardBlocking();
@@ -84,6 +88,8 @@ public enum BlockBuildingMethod {
                 return null;
             case SUFFIX_ARRAYS:
                 return null;
+            case ADAPTIVE_SORTED_NEIGHBORHOOD:
+                return null;
             case STANDARD_BLOCKING:
             default:
                 return new BlockFiltering(0.55);
@@ -104,6 +110,9 @@ public enum BlockBuildingMethod {
                 return new ComparisonPropagation();
             case SUFFIX_ARRAYS:
                 return new ComparisonPropagation();
+            case ADAPTIVE_SORTED_NEIGHBORHOOD:
+                //its candidate pairs are already distinct
+                return null;
             case STANDARD_BLOCKING:
             default:
                 return new WeightedEdgePruning(WeightingScheme.CBS);
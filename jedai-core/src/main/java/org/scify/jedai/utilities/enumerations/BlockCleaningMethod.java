@@ -18,7 +18,9 @@ package org.scify.jedai.utilities.enumerations;
 
 import org.scify.jedai.blockprocessing.blockcleaning.BlockFiltering;
 import org.scify.jedai.blockprocessing.blockcleaning.ComparisonsBasedBlockPurging;
+import org.scify.jedai.blockprocessing.blockcleaning.RedundantBlockCollapsing;
 import org.scify.jedai.blockprocessing.blockcleaning.SizeBasedBlockPurging;
+import org.scify.jedai.blockprocessing.blockcleaning.SizeBasedPurgingAndFiltering;
 import org.scify.jedai.blockprocessing.IBlockProcessing;
 
 /**
@@ -29,7 +31,9 @@ import org.scify.jedai.blockprocessing.IBlockProcessing;
 public enum BlockCleaningMethod {
     BLOCK_FILTERING,
     COMPARISON_BASED_BLOCK_PURGING,
-    SIZE_BASED_BLOCK_PURGING;
+    SIZE_BASED_BLOCK_PURGING,
+    REDUNDANT_BLOCK_COLLAPSING,
+    SIZE_BASED_PURGING_AND_FILTERING;
     
     public static IBlockProcessing getDefaultConfiguration(BlockCleaningMethod blclMethod) {
         switch (blclMethod) {
@@ -39,6 +43,10 @@ public enum BlockCleaningMethod {
                 return new ComparisonsBasedBlockPurging();
             case SIZE_BASED_BLOCK_PURGING:
                 return new SizeBasedBlockPurging();
+            case REDUNDANT_BLOCK_COLLAPSING:
+                return new RedundantBlockCollapsing();
+            case SIZE_BASED_PURGING_AND_FILTERING:
+                return new SizeBasedPurgingAndFiltering();
             default:
                 return new BlockFiltering();
         }
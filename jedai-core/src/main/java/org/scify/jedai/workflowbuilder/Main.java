@@ -15,7 +15,6 @@
  */
 package org.scify.jedai.workflowbuilder;
 
-import gnu.trove.iterator.TIntIterator;
 import gnu.trove.list.TIntList;
 import gnu.trove.list.array.TIntArrayList;
 import java.io.File;
@@ -70,8 +69,12 @@ public class Main {
     private final static String[] ER_TYPES = {"Clean-clean Entity Resolution", "Dirty Entity Resolution"};
     private final static String[] CCER_DATASETS = {"Abt-Buy", "DBLP-ACM", "DBLP-Scholar", "Amazon-Google Products", "IMDB-DBPedia Movies"};
     private final static String[] DER_DATASETS = {"Restaurant", "Census", "Cora", "CdDb", "Abt-By", "DBLP-ACM", "DBLP-Scholar", "Amazon-Google Products", "Movies"};
-    private final static String[] BLOCK_BUILDING_METHODS = {"Extended Q-Grams Blocking", "Extended Sorted Neighborhood", "Extended Suffix Arrays Blocking", "Q-Grams Blocking", "Sorted Neighborhood", "Standard/Token Blocking", "Suffix Arrays Blocking"};
-    private final static String[] BLOCK_CLEANING_METHODS = {"Block Filtering", "Comparison-based Block Purging", "Size-based Block Purging"};
+    private final static String[] BLOCK_BUILDING_METHODS = {"Extended Q-Grams Blocking", "Extended Sorted Neighborhood", "Extended Suffix Arrays Blocking", "LSH MinHash Blocking", "LSH SuperBit Blocking", "Q-Grams Blocking", "Sorted Neighborhood", "Standard/Token Blocking", "Suffix Arrays Blocking", "Adaptive Sorted Neighborhood"};
+    private final static String[] BLOCK_CLEANING_METHODS = {"Block Filtering", "Comparison-based Block Purging", "Size-based Block Purging", "Redundant Block Collapsing", "Size-based Block Purging and Block Filtering"};
+    //the selected block cleaning methods are applied in this order: blocks are purged, then filtered and finally the redundant ones are collapsed,
+    //because purging and filtering would otherwise discard the larger blocks that cover the collapsed ones
+    private final static BlockCleaningMethod[] BLOCK_CLEANING_ORDER = {BlockCleaningMethod.SIZE_BASED_BLOCK_PURGING, BlockCleaningMethod.COMPARISON_BASED_BLOCK_PURGING,
+        BlockCleaningMethod.SIZE_BASED_PURGING_AND_FILTERING, BlockCleaningMethod.BLOCK_FILTERING, BlockCleaningMethod.REDUNDANT_BLOCK_COLLAPSING};
     private final static String[] COMPARISON_CLEANING_METHODS = {"Cardinality Edge Pruning", "Cardinality Node Pruning", "Comparison Propagation", "Reciprocal Cardinality Node Pruning", "Reciprocal Weighed Node Pruning", "Weighed Edge Pruning", "Weighed Node Pruning"};
     private final static String[] ENTITY_MATCHING_METHODS = {"Group Linkage", "Profile Matcher"};
     private final static String[] DIRTY_ER_ENTITY_CLUSTERING_METHODS = {"Center Clustering", "Connected Components Clustering", "Cut Clustering", "Markov Clustering", "Merge-Center Clustering", "Ricochet SR Clustering"};
@@ -283,13 +286,14 @@ public class Main {
         // Block Cleaning
         final TIntList bcMethodIds = getBlockCleaningMethod();
         if (!bcMethodIds.isEmpty()) {
-            bcMethodIds.sort();
-            bcMethodIds.reverse();
-            final TIntIterator iterator = bcMethodIds.iterator();
-            while (iterator.hasNext()) {
+            for (BlockCleaningMethod bcMethod : BLOCK_CLEANING_ORDER) {
+                if (!bcMethodIds.contains(bcMethod.ordinal() + 1)) {
+                    continue;
+                }
+
                 double time3 = System.currentTimeMillis();
 
-                final IBlockProcessing blockCleaningMethod = BlockCleaningMethod.getDefaultConfiguration(BlockCleaningMethod.values()[iterator.next() - 1]);
+                final IBlockProcessing blockCleaningMethod = BlockCleaningMethod.getDefaultConfiguration(bcMethod);
                 blocks = blockCleaningMethod.refineBlocks(blocks);
 
                 double time4 = System.currentTimeMillis();
@@ -0,0 +1,84 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+ */
+package org.scify.jedai.blockbuilding;
+
+import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.EntityProfile;
+import org.scify.jedai.utilities.EquivalenceTests;
+import org.scify.jedai.utilities.enumerations.BlockBuildingMethod;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.log4j.BasicConfigurator;
+
+/**
+ * Compares the blocks of a block building method with caching enabled, which is called repeatedly for all its grid
+ * configurations as in grid search, with those of a new instance without caching for every configuration.
+ * The cached method is finally applied to a different input, whose blocks must not be affected by the cache.
+ *
+ * @author G.A.P. II
+ */
+public class TestCachedIndexing {
+
+    public static void main(String[] args) {
+        BasicConfigurator.configure();
+
+        EquivalenceTests.compareOnDatasets(TestCachedIndexing::compareCaching);
+    }
+
+    private static void compareCaching(List<EntityProfile> profiles1, List<EntityProfile> profiles2) {
+        for (BlockBuildingMethod blbuMethod : BlockBuildingMethod.values()) {
+            if (blbuMethod == BlockBuildingMethod.LSH_MINHASH_BLOCKING || blbuMethod == BlockBuildingMethod.LSH_SUPERBIT_BLOCKING) {
+                continue;
+            }
+
+            System.out.println("\n\nCurrent blocking method\t:\t" + blbuMethod);
+            IBlockBuilding cachedMethod = BlockBuildingMethod.getDefaultConfiguration(blbuMethod);
+            cachedMethod.setCaching(true);
+
+            double cachedTime = 0;
+            double uncachedTime = 0;
+            for (int i = 0; i < cachedMethod.getNumberOfGridConfigurations(); i++) {
+                double time1 = System.currentTimeMillis();
+                cachedMethod.setNumberedGridConfiguration(i);
+                List<AbstractBlock> cachedBlocks = cachedMethod.getBlocks(profiles1, profiles2);
+                double time2 = System.currentTimeMillis();
+
+                IBlockBuilding uncachedMethod = BlockBuildingMethod.getDefaultConfiguration(blbuMethod);
+                uncachedMethod.setNumberedGridConfiguration(i);
+                List<AbstractBlock> uncachedBlocks = uncachedMethod.getBlocks(profiles1, profiles2);
+                double time3 = System.currentTimeMillis();
+
+                cachedTime += time2 - time1;
+                uncachedTime += time3 - time2;
+                EquivalenceTests.assertIdentical("blocks of configuration " + i, EquivalenceTests.getSortedBlockSignatures(uncachedBlocks),
+                        EquivalenceTests.getSortedBlockSignatures(cachedBlocks));
+            }
+            System.out.println("Cached grid search\t:\t" + cachedTime + " ms");
+            System.out.println("Uncached grid search\t:\t" + uncachedTime + " ms");
+
+            //a new list with part of the profiles, which has to be indexed anew
+            List<EntityProfile> otherProfiles1 = new ArrayList<>(profiles1.subList(0, profiles1.size() / 2));
+            List<AbstractBlock> cachedBlocks = cachedMethod.getBlocks(otherProfiles1, profiles2);
+            IBlockBuilding uncachedMethod = BlockBuildingMethod.getDefaultConfiguration(blbuMethod);
+            if (0 < cachedMethod.getNumberOfGridConfigurations()) {
+                uncachedMethod.setNumberedGridConfiguration(cachedMethod.getNumberOfGridConfigurations() - 1);
+            }
+            List<AbstractBlock> uncachedBlocks = uncachedMethod.getBlocks(otherProfiles1, profiles2);
+            EquivalenceTests.assertIdentical("blocks of a different input", EquivalenceTests.getSortedBlockSignatures(uncachedBlocks),
+                    EquivalenceTests.getSortedBlockSignatures(cachedBlocks));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+ */
+package org.scify.jedai.blockbuilding;
+
+import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.EntityProfile;
+import org.scify.jedai.utilities.EquivalenceTests;
+import org.scify.jedai.utilities.enumerations.BlockBuildingMethod;
+import java.util.List;
+import org.apache.log4j.BasicConfigurator;
+
+/**
+ * Compares the blocks of the compact index, i.e., the dictionary-encoded keys with primitive posting lists,
+ * with those of the map-based index for all block building methods that support compact indexing.
+ *
+ * @author G.A.P. II
+ */
+public class TestCompactIndexing {
+
+    public static void main(String[] args) {
+        BasicConfigurator.configure();
+
+        EquivalenceTests.compareOnDatasets(TestCompactIndexing::compareIndices);
+    }
+
+    private static void compareIndices(List<EntityProfile> profiles1, List<EntityProfile> profiles2) {
+        for (BlockBuildingMethod blbuMethod : BlockBuildingMethod.values()) {
+            switch (blbuMethod) {
+                case LSH_MINHASH_BLOCKING:
+                case LSH_SUPERBIT_BLOCKING:
+                case ADAPTIVE_SORTED_NEIGHBORHOOD:
+                case EXTENDED_SORTED_NEIGHBORHOOD:
+                case SORTED_NEIGHBORHOOD:
+                    continue;
+            }
+
+            System.out.println("\n\nCurrent blocking method\t:\t" + blbuMethod);
+            AbstractBlockBuilding mapMethod = (AbstractBlockBuilding) BlockBuildingMethod.getDefaultConfiguration(blbuMethod);
+            double time1 = System.currentTimeMillis();
+            List<AbstractBlock> mapBlocks = mapMethod.getBlocks(profiles1, profiles2);
+            double time2 = System.currentTimeMillis();
+
+            AbstractBlockBuilding compactMethod = (AbstractBlockBuilding) BlockBuildingMethod.getDefaultConfiguration(blbuMethod);
+            compactMethod.setCompactIndexing(true);
+            List<AbstractBlock> compactBlocks = compactMethod.getBlocks(profiles1, profiles2);
+            double time3 = System.currentTimeMillis();
+
+            System.out.println("Map index blocks\t:\t" + mapBlocks.size() + "\t(" + (time2 - time1) + " ms)");
+            System.out.println("Compact index blocks\t:\t" + compactBlocks.size() + "\t(" + (time3 - time2) + " ms)");
+            EquivalenceTests.assertIdentical("blocks", EquivalenceTests.getSortedBlockSignatures(mapBlocks),
+                    EquivalenceTests.getSortedBlockSignatures(compactBlocks));
+        }
+    }
+}
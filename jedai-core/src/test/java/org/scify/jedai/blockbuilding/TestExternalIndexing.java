@@ -0,0 +1,99 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+ */
+package org.scify.jedai.blockbuilding;
+
+import java.io.File;
+import java.io.IOException;
+import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.EntityProfile;
+import org.scify.jedai.datareader.BlockCollectionReader;
+import org.scify.jedai.datawriter.BlockCollectionWriter;
+import org.scify.jedai.utilities.EquivalenceTests;
+import org.scify.jedai.utilities.enumerations.BlockBuildingMethod;
+import java.util.List;
+import org.apache.log4j.BasicConfigurator;
+
+/**
+ * Compares the blocks of the external index, which is spilled to temporary files, with those of the in-memory one
+ * for all block building methods that support external indexing; the small budget forces several spills per dataset.
+ * The blocks that are streamed from the external index to a block collection file are compared, too.
+ *
+ * @author G.A.P. II
+ */
+public class TestExternalIndexing {
+
+    private final static int MAX_POSTINGS_IN_MEMORY = 10000;
+
+    public static void main(String[] args) {
+        BasicConfigurator.configure();
+
+        EquivalenceTests.compareOnDatasets(TestExternalIndexing::compareIndices);
+    }
+
+    private static void compareIndices(List<EntityProfile> profiles1, List<EntityProfile> profiles2) {
+        for (BlockBuildingMethod blbuMethod : BlockBuildingMethod.values()) {
+            switch (blbuMethod) {
+                case LSH_MINHASH_BLOCKING:
+                case LSH_SUPERBIT_BLOCKING:
+                case ADAPTIVE_SORTED_NEIGHBORHOOD:
+                case EXTENDED_SORTED_NEIGHBORHOOD:
+                case SORTED_NEIGHBORHOOD:
+                    continue;
+            }
+
+            System.out.println("\n\nCurrent blocking method\t:\t" + blbuMethod);
+            AbstractBlockBuilding inMemoryMethod = (AbstractBlockBuilding) BlockBuildingMethod.getDefaultConfiguration(blbuMethod);
+            double time1 = System.currentTimeMillis();
+            List<AbstractBlock> inMemoryBlocks = inMemoryMethod.getBlocks(profiles1, profiles2);
+            double time2 = System.currentTimeMillis();
+
+            AbstractBlockBuilding externalMethod = (AbstractBlockBuilding) BlockBuildingMethod.getDefaultConfiguration(blbuMethod);
+            externalMethod.setExternalIndexing(MAX_POSTINGS_IN_MEMORY);
+            List<AbstractBlock> externalBlocks = externalMethod.getBlocks(profiles1, profiles2);
+            double time3 = System.currentTimeMillis();
+
+            System.out.println("In-memory index blocks\t:\t" + inMemoryBlocks.size() + "\t(" + (time2 - time1) + " ms)");
+            System.out.println("External index blocks\t:\t" + externalBlocks.size() + "\t(" + (time3 - time2) + " ms)");
+            EquivalenceTests.assertIdentical("blocks", EquivalenceTests.getSortedBlockSignatures(inMemoryBlocks),
+                    EquivalenceTests.getSortedBlockSignatures(externalBlocks));
+
+            List<AbstractBlock> streamedBlocks = getStreamedBlocks(blbuMethod, profiles1, profiles2);
+            System.out.println("Streamed blocks\t:\t" + streamedBlocks.size());
+            EquivalenceTests.assertIdentical("streamed blocks", EquivalenceTests.getSortedBlockSignatures(inMemoryBlocks),
+                    EquivalenceTests.getSortedBlockSignatures(streamedBlocks));
+        }
+    }
+
+    //the merged blocks are written straight to a block collection file, which is then mapped back into memory
+    private static List<AbstractBlock> getStreamedBlocks(BlockBuildingMethod blbuMethod, List<EntityProfile> profiles1, List<EntityProfile> profiles2) {
+        File blocksFile = null;
+        try {
+            blocksFile = File.createTempFile("jedaiStreamedBlocks", ".bin");
+            AbstractBlockBuilding streamingMethod = (AbstractBlockBuilding) BlockBuildingMethod.getDefaultConfiguration(blbuMethod);
+            streamingMethod.setExternalIndexing(MAX_POSTINGS_IN_MEMORY);
+            try (BlockCollectionWriter writer = new BlockCollectionWriter(blocksFile.getAbsolutePath(), profiles2 != null)) {
+                streamingMethod.writeBlocks(profiles1.iterator(), profiles2 == null ? null : profiles2.iterator(), null, writer);
+            }
+            return new BlockCollectionReader(blocksFile.getAbsolutePath()).getBlockCollection().toBlocks();
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            if (blocksFile != null) {
+                blocksFile.delete();
+            }
+        }
+    }
+}
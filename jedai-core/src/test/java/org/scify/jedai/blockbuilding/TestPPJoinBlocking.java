@@ -0,0 +1,118 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+ */
+package org.scify.jedai.blockbuilding;
+
+import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.Attribute;
+import org.scify.jedai.datamodel.DecomposedBlock;
+import org.scify.jedai.datamodel.EntityProfile;
+import org.scify.jedai.textmodels.ITextModel;
+import org.scify.jedai.utilities.EquivalenceTests;
+import org.scify.jedai.utilities.enumerations.RepresentationModel;
+import org.scify.jedai.utilities.enumerations.SimilarityMetric;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.log4j.BasicConfigurator;
+
+/**
+ * Compares the candidate pairs of PPJoin Blocking with all pairs whose token sets reach the threshold in Jaccard similarity,
+ * as computed by a brute-force comparison of all entities.
+ *
+ * @author G.A.P. II
+ */
+public class TestPPJoinBlocking {
+
+    private final static double EPSILON = 1e-9;
+    private final static double[] THRESHOLDS = {0.3, 0.5, 0.7, 0.9};
+    private final static String[][] CLEAN_CLEAN_ER_DATASETS = {{"abt", "buy"}};
+
+    public static void main(String[] args) {
+        BasicConfigurator.configure();
+
+        EquivalenceTests.compareOnDatasets(EquivalenceTests.DIRTY_ER_DATASETS, CLEAN_CLEAN_ER_DATASETS, TestPPJoinBlocking::compareJoins);
+    }
+
+    private static void compareJoins(List<EntityProfile> profiles1, List<EntityProfile> profiles2) {
+        final List<Set<String>> tokenSets1 = getTokenSets(0, profiles1);
+        final List<Set<String>> tokenSets2 = profiles2 == null ? tokenSets1 : getTokenSets(1, profiles2);
+        for (double threshold : THRESHOLDS) {
+            System.out.println("\n\nCurrent threshold\t:\t" + threshold);
+            double time1 = System.currentTimeMillis();
+            final IBlockBuilding ppJoin = new PPJoinBlocking(threshold);
+            final List<AbstractBlock> blocks = ppJoin.getBlocks(profiles1, profiles2);
+            double time2 = System.currentTimeMillis();
+
+            final Set<Long> joinPairs = new HashSet<>();
+            for (AbstractBlock block : blocks) {
+                final DecomposedBlock decomposedBlock = (DecomposedBlock) block;
+                for (int i = 0; i < decomposedBlock.getEntities1().length; i++) {
+                    joinPairs.add(getPairId(decomposedBlock.getEntities1()[i], decomposedBlock.getEntities2()[i]));
+                }
+            }
+
+            final Set<Long> bruteForcePairs = new HashSet<>();
+            for (int i = 0; i < tokenSets1.size(); i++) {
+                int firstId = profiles2 == null ? i + 1 : 0;
+                for (int j = firstId; j < tokenSets2.size(); j++) {
+                    if (threshold - EPSILON <= getJaccardSimilarity(tokenSets1.get(i), tokenSets2.get(j))) {
+                        bruteForcePairs.add(getPairId(i, j));
+                    }
+                }
+            }
+            double time3 = System.currentTimeMillis();
+
+            System.out.println("PPJoin pairs\t:\t" + joinPairs.size() + "\t(" + (time2 - time1) + " ms)");
+            System.out.println("Brute-force pairs\t:\t" + bruteForcePairs.size() + "\t(" + (time3 - time2) + " ms)");
+            EquivalenceTests.assertIdentical("pairs", bruteForcePairs, joinPairs);
+        }
+    }
+
+    //the empty token sets are similar to no other set, as in PPJoin Blocking
+    private static double getJaccardSimilarity(Set<String> tokens1, Set<String> tokens2) {
+        if (tokens1.isEmpty() || tokens2.isEmpty()) {
+            return 0;
+        }
+
+        int overlap = 0;
+        for (String token : tokens1) {
+            if (tokens2.contains(token)) {
+                overlap++;
+            }
+        }
+        return ((double) overlap) / (tokens1.size() + tokens2.size() - overlap);
+    }
+
+    private static long getPairId(int entityId1, int entityId2) {
+        return (((long) entityId1) << 32) | entityId2;
+    }
+
+    //the token sets are built with the same representation model as in PPJoin Blocking
+    private static List<Set<String>> getTokenSets(int datasetId, List<EntityProfile> profiles) {
+        final List<Set<String>> tokenSets = new ArrayList<>();
+        RepresentationModel.resetGlobalValues(datasetId, RepresentationModel.TOKEN_UNIGRAMS);
+        for (EntityProfile profile : profiles) {
+            final ITextModel model = RepresentationModel.getModel(datasetId, RepresentationModel.TOKEN_UNIGRAMS, SimilarityMetric.JACCARD_SIMILARITY, profile.getEntityUrl());
+            for (Attribute attribute : profile.getAttributes()) {
+                model.updateModel(attribute.getValue());
+            }
+            model.finalizeModel();
+            tokenSets.add(new HashSet<>(model.getSignatures()));
+        }
+        return tokenSets;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+ */
+package org.scify.jedai.blockbuilding;
+
+import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.EntityProfile;
+import org.scify.jedai.utilities.EquivalenceTests;
+import org.scify.jedai.utilities.enumerations.BlockBuildingMethod;
+import java.util.List;
+import org.apache.log4j.BasicConfigurator;
+
+/**
+ * Compares the blocks of the parallel indexing with those of the sequential one for all block building methods
+ * with a deterministic output, i.e., all methods except for LSH, whose random functions differ between runs.
+ *
+ * @author G.A.P. II
+ */
+public class TestParallelIndexing {
+
+    private final static int NO_OF_THREADS = 4;
+
+    public static void main(String[] args) {
+        BasicConfigurator.configure();
+
+        EquivalenceTests.compareOnDatasets(TestParallelIndexing::compareIndexing);
+    }
+
+    private static void compareIndexing(List<EntityProfile> profiles1, List<EntityProfile> profiles2) {
+        for (BlockBuildingMethod blbuMethod : BlockBuildingMethod.values()) {
+            if (blbuMethod == BlockBuildingMethod.LSH_MINHASH_BLOCKING || blbuMethod == BlockBuildingMethod.LSH_SUPERBIT_BLOCKING) {
+                continue;
+            }
+
+            System.out.println("\n\nCurrent blocking method\t:\t" + blbuMethod);
+            AbstractBlockBuilding sequentialMethod = (AbstractBlockBuilding) BlockBuildingMethod.getDefaultConfiguration(blbuMethod);
+            double time1 = System.currentTimeMillis();
+            List<AbstractBlock> sequentialBlocks = sequentialMethod.getBlocks(profiles1, profiles2);
+            double time2 = System.currentTimeMillis();
+
+            AbstractBlockBuilding parallelMethod = (AbstractBlockBuilding) BlockBuildingMethod.getDefaultConfiguration(blbuMethod);
+            parallelMethod.setNoOfThreads(NO_OF_THREADS);
+            List<AbstractBlock> parallelBlocks = parallelMethod.getBlocks(profiles1, profiles2);
+            double time3 = System.currentTimeMillis();
+
+            System.out.println("Sequential blocks\t:\t" + sequentialBlocks.size() + "\t(" + (time2 - time1) + " ms)");
+            System.out.println("Parallel blocks\t:\t" + parallelBlocks.size() + "\t(" + (time3 - time2) + " ms)");
+            EquivalenceTests.assertIdentical("blocks", EquivalenceTests.getSortedBlockSignatures(sequentialBlocks),
+                    EquivalenceTests.getSortedBlockSignatures(parallelBlocks));
+        }
+    }
+}
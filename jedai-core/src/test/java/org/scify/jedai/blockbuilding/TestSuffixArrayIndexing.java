@@ -0,0 +1,60 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+ */
+package org.scify.jedai.blockbuilding;
+
+import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.EntityProfile;
+import org.scify.jedai.utilities.EquivalenceTests;
+import org.scify.jedai.utilities.enumerations.BlockBuildingMethod;
+import java.util.List;
+import org.apache.log4j.BasicConfigurator;
+
+/**
+ * Compares the blocks of the generalized suffix array with those of the inverted index over the suffixes,
+ * or substrings, of every token for Suffix Arrays and Extended Suffix Arrays Blocking.
+ *
+ * @author G.A.P. II
+ */
+public class TestSuffixArrayIndexing {
+
+    private final static BlockBuildingMethod[] METHODS = {BlockBuildingMethod.SUFFIX_ARRAYS, BlockBuildingMethod.EXTENDED_SUFFIX_ARRAYS};
+
+    public static void main(String[] args) {
+        BasicConfigurator.configure();
+
+        EquivalenceTests.compareOnDatasets(TestSuffixArrayIndexing::compareIndices);
+    }
+
+    private static void compareIndices(List<EntityProfile> profiles1, List<EntityProfile> profiles2) {
+        for (BlockBuildingMethod blbuMethod : METHODS) {
+            System.out.println("\n\nCurrent blocking method\t:\t" + blbuMethod);
+            SuffixArraysBlocking suffixesMethod = (SuffixArraysBlocking) BlockBuildingMethod.getDefaultConfiguration(blbuMethod);
+            double time1 = System.currentTimeMillis();
+            List<AbstractBlock> suffixesBlocks = suffixesMethod.getBlocks(profiles1, profiles2);
+            double time2 = System.currentTimeMillis();
+
+            SuffixArraysBlocking suffixArrayMethod = (SuffixArraysBlocking) BlockBuildingMethod.getDefaultConfiguration(blbuMethod);
+            suffixArrayMethod.setSuffixArrayIndexing(true);
+            List<AbstractBlock> suffixArrayBlocks = suffixArrayMethod.getBlocks(profiles1, profiles2);
+            double time3 = System.currentTimeMillis();
+
+            System.out.println("String suffixes blocks\t:\t" + suffixesBlocks.size() + "\t(" + (time2 - time1) + " ms)");
+            System.out.println("Suffix array blocks\t:\t" + suffixArrayBlocks.size() + "\t(" + (time3 - time2) + " ms)");
+            EquivalenceTests.assertIdentical("blocks", EquivalenceTests.getSortedBlockSignatures(suffixesBlocks),
+                    EquivalenceTests.getSortedBlockSignatures(suffixArrayBlocks));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+ */
+package org.scify.jedai.blockprocessing.blockcleaning;
+
+import org.scify.jedai.blockbuilding.IBlockBuilding;
+import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.EntityProfile;
+import org.scify.jedai.utilities.EquivalenceTests;
+import org.scify.jedai.utilities.enumerations.BlockBuildingMethod;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.log4j.BasicConfigurator;
+
+/**
+ * Compares the blocks retained by the parallel Block Filtering with those of the sequential one, including their order,
+ * which determines the entities retained in every block.
+ *
+ * @author G.A.P. II
+ */
+public class TestParallelBlockFiltering {
+
+    private final static int NO_OF_THREADS = 4;
+    private final static BlockBuildingMethod[] METHODS = {BlockBuildingMethod.STANDARD_BLOCKING, BlockBuildingMethod.Q_GRAMS_BLOCKING};
+
+    public static void main(String[] args) {
+        BasicConfigurator.configure();
+
+        EquivalenceTests.compareOnDatasets(TestParallelBlockFiltering::compareFiltering);
+    }
+
+    private static void compareFiltering(List<EntityProfile> profiles1, List<EntityProfile> profiles2) {
+        for (BlockBuildingMethod blbuMethod : METHODS) {
+            System.out.println("\n\nCurrent blocking method\t:\t" + blbuMethod);
+            IBlockBuilding blockBuildingMethod = BlockBuildingMethod.getDefaultConfiguration(blbuMethod);
+            List<AbstractBlock> blocks = blockBuildingMethod.getBlocks(profiles1, profiles2);
+            System.out.println("Original blocks\t:\t" + blocks.size());
+
+            //Block Filtering sorts its input, hence every run receives a copy of the original blocks
+            double time1 = System.currentTimeMillis();
+            List<AbstractBlock> sequentialBlocks = new BlockFiltering().refineBlocks(new ArrayList<>(blocks));
+            double time2 = System.currentTimeMillis();
+
+            BlockFiltering parallelFiltering = new BlockFiltering();
+            parallelFiltering.setNoOfThreads(NO_OF_THREADS);
+            List<AbstractBlock> parallelBlocks = parallelFiltering.refineBlocks(new ArrayList<>(blocks));
+            double time3 = System.currentTimeMillis();
+
+            System.out.println("Sequential blocks\t:\t" + sequentialBlocks.size() + "\t(" + (time2 - time1) + " ms)");
+            System.out.println("Parallel blocks\t:\t" + parallelBlocks.size() + "\t(" + (time3 - time2) + " ms)");
+            EquivalenceTests.assertIdentical("blocks", EquivalenceTests.getBlockSignatures(sequentialBlocks),
+                    EquivalenceTests.getBlockSignatures(parallelBlocks));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+ */
+package org.scify.jedai.blockprocessing.blockcleaning;
+
+import org.scify.jedai.blockbuilding.IBlockBuilding;
+import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.EntityProfile;
+import org.scify.jedai.utilities.EquivalenceTests;
+import org.scify.jedai.utilities.enumerations.BlockBuildingMethod;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.log4j.BasicConfigurator;
+
+/**
+ * Compares the blocks retained by the fused Size-based Purging and Filtering with those of Size-based Block Purging
+ * followed by Block Filtering, including their order.
+ *
+ * @author G.A.P. II
+ */
+public class TestPurgingAndFiltering {
+
+    private final static double PURGING_FACTOR = 0.005;
+    private final static double FILTERING_RATIO = 0.8;
+    private final static BlockBuildingMethod[] METHODS = {BlockBuildingMethod.STANDARD_BLOCKING, BlockBuildingMethod.Q_GRAMS_BLOCKING};
+
+    public static void main(String[] args) {
+        BasicConfigurator.configure();
+
+        EquivalenceTests.compareOnDatasets(TestPurgingAndFiltering::compareCleaning);
+    }
+
+    private static void compareCleaning(List<EntityProfile> profiles1, List<EntityProfile> profiles2) {
+        for (BlockBuildingMethod blbuMethod : METHODS) {
+            System.out.println("\n\nCurrent blocking method\t:\t" + blbuMethod);
+            IBlockBuilding blockBuildingMethod = BlockBuildingMethod.getDefaultConfiguration(blbuMethod);
+            List<AbstractBlock> blocks = blockBuildingMethod.getBlocks(profiles1, profiles2);
+            System.out.println("Original blocks\t:\t" + blocks.size());
+
+            //Block Filtering sorts its input, hence every run receives a copy of the original blocks
+            double time1 = System.currentTimeMillis();
+            List<AbstractBlock> purgedBlocks = new SizeBasedBlockPurging(PURGING_FACTOR).refineBlocks(new ArrayList<>(blocks));
+            List<AbstractBlock> twoStepBlocks = new BlockFiltering(FILTERING_RATIO).refineBlocks(purgedBlocks);
+            double time2 = System.currentTimeMillis();
+
+            List<AbstractBlock> fusedBlocks = new SizeBasedPurgingAndFiltering(PURGING_FACTOR, FILTERING_RATIO).refineBlocks(new ArrayList<>(blocks));
+            double time3 = System.currentTimeMillis();
+
+            System.out.println("Two-step blocks\t:\t" + twoStepBlocks.size() + "\t(" + (time2 - time1) + " ms)");
+            System.out.println("Fused blocks\t:\t" + fusedBlocks.size() + "\t(" + (time3 - time2) + " ms)");
+            EquivalenceTests.assertIdentical("blocks", EquivalenceTests.getBlockSignatures(twoStepBlocks),
+                    EquivalenceTests.getBlockSignatures(fusedBlocks));
+        }
+    }
+}
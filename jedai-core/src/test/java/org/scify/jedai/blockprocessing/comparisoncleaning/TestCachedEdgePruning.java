@@ -0,0 +1,74 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+ */
+package org.scify.jedai.blockprocessing.comparisoncleaning;
+
+import org.scify.jedai.blockbuilding.IBlockBuilding;
+import org.scify.jedai.blockprocessing.IBlockProcessing;
+import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.EntityProfile;
+import org.scify.jedai.utilities.EquivalenceTests;
+import org.scify.jedai.utilities.enumerations.BlockBuildingMethod;
+import org.scify.jedai.utilities.enumerations.WeightingScheme;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.log4j.BasicConfigurator;
+
+/**
+ * Compares the comparisons retained by Weighted Edge Pruning with cached edge weights with those of the two-pass version,
+ * including their order; the edges are cached either entirely or up to a small limit, so that some entities are processed again.
+ *
+ * @author G.A.P. II
+ */
+public class TestCachedEdgePruning {
+
+    private final static long[] MAX_CACHED_EDGES = {Integer.MAX_VALUE, 10000};
+
+    public static void main(String[] args) {
+        BasicConfigurator.configure();
+
+        EquivalenceTests.compareOnDatasets(TestCachedEdgePruning::comparePruning);
+    }
+
+    private static void comparePruning(List<EntityProfile> profiles1, List<EntityProfile> profiles2) {
+        IBlockBuilding blockBuildingMethod = BlockBuildingMethod.getDefaultConfiguration(BlockBuildingMethod.STANDARD_BLOCKING);
+        List<AbstractBlock> blocks = blockBuildingMethod.getBlocks(profiles1, profiles2);
+        IBlockProcessing blockCleaningMethod = BlockBuildingMethod.getDefaultBlockCleaning(BlockBuildingMethod.STANDARD_BLOCKING);
+        if (blockCleaningMethod != null) {
+            blocks = blockCleaningMethod.refineBlocks(blocks);
+        }
+        System.out.println("Cleaned blocks\t:\t" + blocks.size());
+
+        for (WeightingScheme wScheme : WeightingScheme.values()) {
+            System.out.println("\n\nCurrent weighting scheme\t:\t" + wScheme);
+            double time1 = System.currentTimeMillis();
+            List<AbstractBlock> twoPassBlocks = new WeightedEdgePruning(wScheme).refineBlocks(new ArrayList<>(blocks));
+            double time2 = System.currentTimeMillis();
+            System.out.println("Two-pass comparisons\t:\t" + EquivalenceTests.getComparisons(twoPassBlocks).size() + "\t(" + (time2 - time1) + " ms)");
+
+            for (long maxEdges : MAX_CACHED_EDGES) {
+                time1 = System.currentTimeMillis();
+                WeightedEdgePruning cachedPruning = new WeightedEdgePruning(wScheme);
+                cachedPruning.setMaxCachedEdges(maxEdges);
+                List<AbstractBlock> cachedBlocks = cachedPruning.refineBlocks(new ArrayList<>(blocks));
+                time2 = System.currentTimeMillis();
+
+                System.out.println("Cached comparisons (" + maxEdges + " edges)\t:\t" + EquivalenceTests.getComparisons(cachedBlocks).size() + "\t(" + (time2 - time1) + " ms)");
+                EquivalenceTests.assertIdentical("comparisons", EquivalenceTests.getComparisons(twoPassBlocks),
+                        EquivalenceTests.getComparisons(cachedBlocks));
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+ */
+package org.scify.jedai.blockprocessing.comparisoncleaning;
+
+import org.scify.jedai.blockbuilding.IBlockBuilding;
+import org.scify.jedai.blockprocessing.IBlockProcessing;
+import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.EntityProfile;
+import org.scify.jedai.utilities.EquivalenceTests;
+import org.scify.jedai.utilities.enumerations.BlockBuildingMethod;
+import org.scify.jedai.utilities.enumerations.ComparisonCleaningMethod;
+import org.scify.jedai.utilities.enumerations.WeightingScheme;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.log4j.BasicConfigurator;
+
+/**
+ * Compares the comparisons retained by the multi-threaded meta-blocking methods with those of the single-threaded ones
+ * for every weighting scheme. The weighted methods retain the same comparisons in the same order; the cardinality methods
+ * retain the same comparisons, but in the order of their top-k queues, which depends on the merge of the partial queues.
+ *
+ * @author G.A.P. II
+ */
+public class TestParallelMetablocking {
+
+    private final static int NO_OF_THREADS = 4;
+    private final static ComparisonCleaningMethod[] METHODS = {ComparisonCleaningMethod.WEIGHTED_EDGE_PRUNING,
+        ComparisonCleaningMethod.WEIGHTED_NODE_PRUNING, ComparisonCleaningMethod.RECIPROCAL_WEIGHTING_NODE_PRUNING,
+        ComparisonCleaningMethod.CARDINALITY_EDGE_PRUNING, ComparisonCleaningMethod.CARDINALITY_NODE_PRUNING,
+        ComparisonCleaningMethod.RECIPROCAL_CARDINALITY_NODE_PRUNING};
+
+    public static void main(String[] args) {
+        BasicConfigurator.configure();
+
+        EquivalenceTests.compareOnDatasets(TestParallelMetablocking::comparePruning);
+    }
+
+    private static void comparePruning(List<EntityProfile> profiles1, List<EntityProfile> profiles2) {
+        IBlockBuilding blockBuildingMethod = BlockBuildingMethod.getDefaultConfiguration(BlockBuildingMethod.STANDARD_BLOCKING);
+        List<AbstractBlock> blocks = blockBuildingMethod.getBlocks(profiles1, profiles2);
+        IBlockProcessing blockCleaningMethod = BlockBuildingMethod.getDefaultBlockCleaning(BlockBuildingMethod.STANDARD_BLOCKING);
+        if (blockCleaningMethod != null) {
+            blocks = blockCleaningMethod.refineBlocks(blocks);
+        }
+        System.out.println("Cleaned blocks\t:\t" + blocks.size());
+
+        for (ComparisonCleaningMethod coclMethod : METHODS) {
+            for (WeightingScheme wScheme : WeightingScheme.values()) {
+                System.out.println("\n\nCurrent method\t:\t" + coclMethod + "\t" + wScheme);
+                double time1 = System.currentTimeMillis();
+                List<AbstractBlock> sequentialBlocks = getMethod(coclMethod, wScheme).refineBlocks(new ArrayList<>(blocks));
+                double time2 = System.currentTimeMillis();
+
+                //every worker is a clone of this instance, which merges their partial results
+                AbstractMetablocking parallelMethod = getMethod(coclMethod, wScheme);
+                parallelMethod.setNoOfThreads(NO_OF_THREADS);
+                List<AbstractBlock> parallelBlocks = parallelMethod.refineBlocks(new ArrayList<>(blocks));
+                double time3 = System.currentTimeMillis();
+
+                List<String> sequentialComparisons = EquivalenceTests.getComparisons(sequentialBlocks);
+                List<String> parallelComparisons = EquivalenceTests.getComparisons(parallelBlocks);
+                System.out.println("Sequential comparisons\t:\t" + sequentialComparisons.size() + "\t(" + (time2 - time1) + " ms)");
+                System.out.println("Parallel comparisons\t:\t" + parallelComparisons.size() + "\t(" + (time3 - time2) + " ms)");
+                if (parallelMethod instanceof CardinalityEdgePruning) {
+                    EquivalenceTests.assertIdentical("comparisons", EquivalenceTests.getSortedComparisons(sequentialBlocks),
+                            EquivalenceTests.getSortedComparisons(parallelBlocks));
+                } else {
+                    EquivalenceTests.assertIdentical("comparisons", sequentialComparisons, parallelComparisons);
+                }
+            }
+        }
+    }
+
+    private static AbstractMetablocking getMethod(ComparisonCleaningMethod coclMethod, WeightingScheme wScheme) {
+        switch (coclMethod) {
+            case CARDINALITY_EDGE_PRUNING:
+                return new CardinalityEdgePruning(wScheme);
+            case CARDINALITY_NODE_PRUNING:
+                return new CardinalityNodePruning(wScheme);
+            case RECIPROCAL_CARDINALITY_NODE_PRUNING:
+                return new ReciprocalCardinalityNodePruning(wScheme);
+            case RECIPROCAL_WEIGHTING_NODE_PRUNING:
+                return new ReciprocalWeightedNodePruning(wScheme);
+            case WEIGHTED_NODE_PRUNING:
+                return new WeightedNodePruning(wScheme);
+            default:
+                return new WeightedEdgePruning(wScheme);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+ */
+package org.scify.jedai.utilities;
+
+import java.io.File;
+import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.BilateralBlock;
+import org.scify.jedai.datamodel.DecomposedBlock;
+import org.scify.jedai.datamodel.EntityProfile;
+import org.scify.jedai.datamodel.UnilateralBlock;
+import org.scify.jedai.datareader.entityreader.IEntityReader;
+import org.scify.jedai.datareader.entityreader.EntitySerializationReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Shared by the drivers that compare an optimized version of a method with the original one: it runs a comparison
+ * over the bundled datasets and fails as soon as the two outputs differ.
+ *
+ * @author G.A.P. II
+ */
+public class EquivalenceTests {
+
+    public final static String[] DIRTY_ER_DATASETS = {"abtBuy", "census", "cora", "restaurant"};
+    public final static String[][] CLEAN_CLEAN_ER_DATASETS = {{"abt", "buy"}, {"dblp", "acm"}};
+
+    //the second list of profiles is null for Dirty ER
+    public static void compareOnDatasets(BiConsumer<List<EntityProfile>, List<EntityProfile>> comparison) {
+        compareOnDatasets(DIRTY_ER_DATASETS, CLEAN_CLEAN_ER_DATASETS, comparison);
+    }
+
+    public static void compareOnDatasets(String[] dirtyErDatasets, String[][] cleanCleanErDatasets,
+            BiConsumer<List<EntityProfile>, List<EntityProfile>> comparison) {
+        String mainDirectory = "data" + File.separator + "dirtyErDatasets" + File.separator;
+        for (String dataset : dirtyErDatasets) {
+            System.out.println("\n\n\n\nCurrent dataset\t:\t" + dataset);
+
+            List<EntityProfile> profiles = readProfiles(mainDirectory + dataset + "Profiles");
+            comparison.accept(profiles, null);
+        }
+
+        String cleanCleanDirectory = "data" + File.separator + "cleanCleanErDatasets" + File.separator;
+        for (String[] datasetPair : cleanCleanErDatasets) {
+            System.out.println("\n\n\n\nCurrent datasets\t:\t" + datasetPair[0] + "-" + datasetPair[1]);
+
+            List<EntityProfile> profiles1 = readProfiles(cleanCleanDirectory + datasetPair[0] + "Profiles");
+            List<EntityProfile> profiles2 = readProfiles(cleanCleanDirectory + datasetPair[1] + "Profiles");
+            comparison.accept(profiles1, profiles2);
+        }
+    }
+
+    //throws an exception on the first difference, so that the driver terminates with a non-zero exit code
+    public static void assertIdentical(String description, Object expected, Object actual) {
+        final boolean identical = expected.equals(actual);
+        System.out.println("Identical " + description + "\t:\t" + identical);
+        if (!identical) {
+            throw new IllegalStateException("The " + description + " of the two versions differ!");
+        }
+    }
+
+    //every block is represented by its entity ids in their original order, and the blocks retain their order, too
+    public static List<String> getBlockSignatures(List<AbstractBlock> blocks) {
+        final List<String> signatures = new ArrayList<>();
+        for (AbstractBlock block : blocks) {
+            if (block instanceof BilateralBlock) {
+                final BilateralBlock bilBlock = (BilateralBlock) block;
+                signatures.add(Arrays.toString(bilBlock.getIndex1Entities()) + Arrays.toString(bilBlock.getIndex2Entities()));
+            } else {
+                signatures.add(Arrays.toString(((UnilateralBlock) block).getEntities()));
+            }
+        }
+        return signatures;
+    }
+
+    //every comparison of the decomposed blocks is represented by its entity ids, in the order they are retained
+    public static List<String> getComparisons(List<AbstractBlock> blocks) {
+        final List<String> comparisons = new ArrayList<>();
+        for (AbstractBlock block : blocks) {
+            final DecomposedBlock decomposedBlock = (DecomposedBlock) block;
+            for (int i = 0; i < decomposedBlock.getEntities1().length; i++) {
+                comparisons.add(decomposedBlock.getEntities1()[i] + "-" + decomposedBlock.getEntities2()[i]);
+            }
+        }
+        return comparisons;
+    }
+
+    //the comparisons are sorted, so that only the retained comparisons matter, not their order
+    public static List<String> getSortedComparisons(List<AbstractBlock> blocks) {
+        final List<String> comparisons = getComparisons(blocks);
+        Collections.sort(comparisons);
+        return comparisons;
+    }
+
+    //every block is represented by its sorted entity ids, and the blocks are sorted, so that their order does not matter
+    public static List<String> getSortedBlockSignatures(List<AbstractBlock> blocks) {
+        final List<String> signatures = new ArrayList<>();
+        for (AbstractBlock block : blocks) {
+            if (block instanceof BilateralBlock) {
+                final BilateralBlock bilBlock = (BilateralBlock) block;
+                signatures.add(getSortedIds(bilBlock.getIndex1Entities()) + getSortedIds(bilBlock.getIndex2Entities()));
+            } else {
+                signatures.add(getSortedIds(((UnilateralBlock) block).getEntities()));
+            }
+        }
+        Collections.sort(signatures);
+        return signatures;
+    }
+
+    private static String getSortedIds(int[] entityIds) {
+        final int[] sortedIds = entityIds.clone();
+        Arrays.sort(sortedIds);
+        return Arrays.toString(sortedIds);
+    }
+
+    private static List<EntityProfile> readProfiles(String filePath) {
+        IEntityReader eReader = new EntitySerializationReader(filePath);
+        List<EntityProfile> profiles = eReader.getEntityProfiles();
+        System.out.println("Input Entity Profiles\t:\t" + profiles.size());
+        return profiles;
+    }
+}